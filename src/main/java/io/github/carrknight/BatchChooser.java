@@ -0,0 +1,38 @@
+package io.github.carrknight;
+
+/**
+ * a chooser that can learn from many observations and then make many decisions (one per context) in a single call.
+ * Options are returned as indices (to avoid allocating an array of O); getOption turns them back into options
+ * @param <O> the class of the options available
+ * @param <R> the class describing the experiment result
+ * @param <C> the class describing the context in which the decision or reward was observed
+ */
+public interface BatchChooser<O,R,C> extends Chooser<O,R,C> {
+
+
+    /**
+     * learn from all the observations in the batch, then make one decision for each context
+     * @param observations observations to learn from (null entries are ignored)
+     * @param contexts one context per decision to make
+     * @param choices where the index of each decision is written; choices[i] is the option to play in contexts.get(i)
+     */
+    void updateAndChooseBatch(
+            ObservationBatch<O,R,C> observations,
+            ContextBatch<C> contexts,
+            int[] choices);
+
+
+    /**
+     * @param index index written by updateAndChooseBatch
+     * @return the option it stands for
+     */
+    O getOption(int index);
+
+
+    /**
+     * @return how many options there are (indices go from 0 to this minus one)
+     */
+    int getNumberOfOptions();
+
+
+}
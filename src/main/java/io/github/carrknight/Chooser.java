@@ -29,6 +29,21 @@ public interface Chooser<O,R,C> {
                       Observation<O,R,C>... additionalObservations);
 
 
+    /**
+     * same as the varargs updateAndChoose, but the additional observations come as a slice of somebody else's buffer
+     * so that nothing needs allocating each step. Choosers should implement this natively: the default just copies
+     * the slice into an array
+     *
+     * @param observation the reward and action taken last (can be null if experiment wasn't valid)
+     * @param additionalObservations additional action-rewards observed (by imitation or whatever)
+     * @return O chosen to play next
+     */
+    default O updateAndChoose(@Nullable Observation<O,R,C> observation,
+                              ObservationSlice<O,R,C> additionalObservations){
+        return updateAndChoose(observation, additionalObservations.toArray());
+    }
+
+
     /**
      * this is a simple getter that returns what the last choice made was. *this does not update choices*
      * @return
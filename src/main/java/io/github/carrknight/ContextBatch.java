@@ -0,0 +1,68 @@
+package io.github.carrknight;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * a reusable buffer of contexts, one per decision a BatchChooser has to make.
+ * Choosers amortize work over consecutive decisions that share the same context, so it pays to add them grouped.
+ * The backing array only grows (doubling)
+ * @param <C> the class describing the context in which the decision is made
+ */
+public class ContextBatch<C> {
+
+
+    private Object[] contexts;
+
+    private int size = 0;
+
+
+    public ContextBatch() {
+        this(16);
+    }
+
+    public ContextBatch(int initialCapacity) {
+        contexts = new Object[Math.max(initialCapacity,1)];
+    }
+
+
+    /**
+     * add one decision to make, in this context
+     * @param context the context (can be null)
+     */
+    public void add(@Nullable C context){
+        if(size == contexts.length)
+            contexts = Arrays.copyOf(contexts, contexts.length*2);
+        contexts[size++] = context;
+    }
+
+    /**
+     * add many decisions to make, all in the same context
+     * @param context the context (can be null)
+     * @param decisions how many decisions
+     */
+    public void add(@Nullable C context, int decisions){
+        for(int i=0; i<decisions; i++)
+            add(context);
+    }
+
+    /**
+     * empties the batch (keeping the memory around) so it can be filled again
+     */
+    public void clear(){
+        Arrays.fill(contexts, 0, size, null);
+        size = 0;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public C get(int index){
+        assert index < size;
+        return (C) contexts[index];
+    }
+
+    public int size(){
+        return size;
+    }
+}
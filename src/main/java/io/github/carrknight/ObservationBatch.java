@@ -0,0 +1,67 @@
+package io.github.carrknight;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * a reusable buffer of observations: fill it, hand it to a BatchChooser, clear it and fill it again.
+ * The backing array only grows (doubling), so a buffer that is reused every step stops allocating after the first few
+ * @param <O> the class of the options available
+ * @param <R> the class describing the experiment result
+ * @param <C> the class describing the context in which the decision or reward was observed
+ */
+public class ObservationBatch<O,R,C> {
+
+
+    private Observation<O,R,C>[] observations;
+
+    private int size = 0;
+
+
+    public ObservationBatch() {
+        this(16);
+    }
+
+    public ObservationBatch(int initialCapacity) {
+        observations = newArray(Math.max(initialCapacity,1));
+    }
+
+
+    /**
+     * arrays of a generic type can't be created directly; this is the only unchecked cast of the class
+     */
+    @SuppressWarnings("unchecked")
+    private static <O,R,C> Observation<O,R,C>[] newArray(int length){
+        return (Observation<O,R,C>[]) new Observation<?,?,?>[length];
+    }
+
+
+    /**
+     * add an observation at the end of the batch (null observations are allowed and will be ignored by choosers)
+     * @param observation the observation to add
+     */
+    public void add(@Nullable Observation<O,R,C> observation){
+        if(size == observations.length)
+            observations = Arrays.copyOf(observations, observations.length*2);
+        observations[size++] = observation;
+    }
+
+    /**
+     * empties the batch (keeping the memory around) so it can be filled again
+     */
+    public void clear(){
+        Arrays.fill(observations, 0, size, null);
+        size = 0;
+    }
+
+    @Nullable
+    public Observation<O,R,C> get(int index){
+        assert index < size;
+        return observations[index];
+    }
+
+    public int size(){
+        return size;
+    }
+}
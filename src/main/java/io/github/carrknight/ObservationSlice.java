@@ -0,0 +1,114 @@
+package io.github.carrknight;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * a read-only window (offset and length) over an array or a list of observations that somebody else owns.
+ * Callers keep one slice per chooser and re-point it every step, so that delivering neighbor observations
+ * allocates nothing (unlike varargs, which need a fresh array every call).
+ * Slices are mutable views: don't hold on to them (or to the observations they show) after the call returns
+ * @param <O> the class of the options available
+ * @param <R> the class describing the experiment result
+ * @param <C> the class describing the context in which the decision or reward was observed
+ */
+public class ObservationSlice<O,R,C> {
+
+
+    @Nullable
+    private Observation<O,R,C>[] array;
+
+    @Nullable
+    private List<? extends Observation<O,R,C>> list;
+
+    private int offset = 0;
+
+    private int length = 0;
+
+
+    /**
+     * an empty slice
+     */
+    public ObservationSlice() {
+    }
+
+
+    /**
+     * point the slice to part of an array
+     * @param array the array (not copied!)
+     * @param offset first observation in the slice
+     * @param length number of observations in the slice
+     * @return this slice
+     */
+    public ObservationSlice<O,R,C> set(Observation<O,R,C>[] array, int offset, int length){
+        Preconditions.checkArgument(offset >= 0 && length >= 0 && offset + length <= array.length);
+        this.array = array;
+        this.list = null;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    /**
+     * point the slice to part of a list
+     * @param list the list (not copied!)
+     * @param offset first observation in the slice
+     * @param length number of observations in the slice
+     * @return this slice
+     */
+    public ObservationSlice<O,R,C> set(List<? extends Observation<O,R,C>> list, int offset, int length){
+        Preconditions.checkArgument(offset >= 0 && length >= 0 && offset + length <= list.size());
+        this.array = null;
+        this.list = list;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    /**
+     * point the slice to nothing
+     * @return this slice
+     */
+    public ObservationSlice<O,R,C> clear(){
+        this.array = null;
+        this.list = null;
+        this.offset = 0;
+        this.length = 0;
+        return this;
+    }
+
+    public Observation<O,R,C> get(int index){
+        assert index >= 0 && index < length;
+        return array != null ? array[offset + index] : list.get(offset + index);
+    }
+
+    public int size(){
+        return length;
+    }
+
+    public boolean isEmpty(){
+        return length == 0;
+    }
+
+    /**
+     * copies the slice in a new array; this is what the old varargs methods need
+     * @return a new array with the observations in the slice
+     */
+    public Observation<O,R,C>[] toArray(){
+        Observation<O,R,C>[] copy = newArray(length);
+        for(int i=0; i<length; i++)
+            copy[i] = get(i);
+        return copy;
+    }
+
+
+    /**
+     * arrays of a generic type can't be created directly; this is the only unchecked cast of the class
+     */
+    @SuppressWarnings("unchecked")
+    private static <O,R,C> Observation<O,R,C>[] newArray(int length){
+        return (Observation<O,R,C>[]) new Observation<?,?,?>[length];
+    }
+}
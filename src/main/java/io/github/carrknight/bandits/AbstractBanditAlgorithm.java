@@ -2,11 +2,15 @@ package io.github.carrknight.bandits;
 
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.BiMap;
-import com.google.common.collect.ImmutableBiMap;
-import io.github.carrknight.Chooser;
+import com.google.common.collect.ImmutableMap;
+import io.github.carrknight.BatchChooser;
+import io.github.carrknight.ContextBatch;
 import io.github.carrknight.Observation;
+import io.github.carrknight.ObservationBatch;
+import io.github.carrknight.ObservationSlice;
 import io.github.carrknight.heatmaps.BeliefState;
+import io.github.carrknight.heatmaps.IndexedBeliefView;
+import io.github.carrknight.heatmaps.regression.FilterSpace;
 import io.github.carrknight.heatmaps.regression.LocalFilterSpace;
 import io.github.carrknight.heatmaps.regression.OneDimensionalFilter;
 import io.github.carrknight.heatmaps.regression.distance.Similarity;
@@ -15,26 +19,34 @@ import io.github.carrknight.utils.averager.IterativeAverageFilter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Objects;
 import java.util.SplittableRandom;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
  * complicated name, simple class: it's an abstract class tagging and implementing the basics
- * of bandit algorithms that do not use context (which at least initially is all the bandit algorithms I have)
+ * of bandit algorithms that do not use context (which at least initially is all the bandit algorithms I have).
+ * The actual choosing is done by an IntBandit delegate; this class only translates options to indices and back
  * @param <O> the class of the options available (say, FishingSpot if we are modelling a fisher deciding where to go next);
  * @param <R> the class describing the reward object (say, FishCaught if we are modelling the fisher judging the spot they have just been to)
 
  */
-public abstract class AbstractBanditAlgorithm<O,R,C> implements Chooser<O, R, C> {
+public abstract class AbstractBanditAlgorithm<O,R,C> implements BatchChooser<O, R, C> {
 
 
 
     /**
-     * A bimap describing all the options available to the bandit algorithm;
-     * is a bimap really necessary? wouldn't two arrays do it?
+     * all the options available to the bandit algorithm; arm i of the delegate is optionsAvailable[i]
      */
     @NotNull
-    private final BiMap<O,Integer> optionsAvailable;
+    private final O[] optionsAvailable;
+
+    /**
+     * the inverse of optionsAvailable: from option to its arm index
+     */
+    @NotNull
+    private final ImmutableMap<O,Integer> optionIndex;
 
     /**
      * object storing current knowledge
@@ -47,26 +59,27 @@ public abstract class AbstractBanditAlgorithm<O,R,C> implements Chooser<O, R, C>
     private BanditImitationPolicy<O,R,C>  imitationPolicy =
             new IgnoreBanditImitationPolicy<>();
 
-
     /**
-     * last time we updated, this was our choice
+     * the int arms view of the banditState the delegate reads from
      */
-    private O lastChoice;
+    private final BeliefStateArms<O,R,C> arms;
 
-    final private int[] timesPlayed;
-
-    private int numberOfObservations=0;
+    /**
+     * the primitive bandit doing all the choosing and keeping all the counts
+     */
+    private final IntBandit delegate;
 
     /**
-     * the randomizer to use
+     * re-pointed at each varargs call, so that the varargs method can share the slice implementation
      */
-    private final SplittableRandom randomizer;
+    private final ObservationSlice<O,R,C> varargsView = new ObservationSlice<>();
+
 
     /**
      * An array describing all the options available to the bandit algorithm
      * @param rewardExtractor transformer from R to double
      * @param optionsAvailable what kind of options are available
-     * @param randomSeed random seed
+     * @param delegateMaker given the int view of the bandit state, builds the bandit doing the choosing
      */
     public AbstractBanditAlgorithm(
             @NotNull
@@ -74,11 +87,12 @@ public abstract class AbstractBanditAlgorithm<O,R,C> implements Chooser<O, R, C>
                     RewardFunction<O,R,C > rewardExtractor,
             @NotNull
 
-                    O[] optionsAvailable, long randomSeed) {
+                    O[] optionsAvailable,
+            @NotNull
+                    Function<IndexedBeliefView,? extends IntBandit> delegateMaker) {
 
         this(
                 optionsAvailable,
-                new SplittableRandom(randomSeed),
                 //by default just keep separate memories for everything
                 new LocalFilterSpace<>(
                         optionsAvailable,
@@ -86,7 +100,8 @@ public abstract class AbstractBanditAlgorithm<O,R,C> implements Chooser<O, R, C>
                         () -> new IterativeAverageFilter(0d),
                         rewardExtractor,
                         null
-                ));
+                ),
+                delegateMaker);
 
 
     }
@@ -96,22 +111,22 @@ public abstract class AbstractBanditAlgorithm<O,R,C> implements Chooser<O, R, C>
 
     public AbstractBanditAlgorithm(
             @NotNull O[] optionsAvailable,
-            SplittableRandom randomizer, final LocalFilterSpace<O, R, C> banditState) {
+            final BeliefState<O, R, C> banditState,
+            @NotNull Function<IndexedBeliefView,? extends IntBandit> delegateMaker) {
         Preconditions.checkArgument(optionsAvailable.length>0,
                                     "Given no options!");
 
-        //turn array into bimap
-        ImmutableBiMap.Builder<O, Integer> builder = ImmutableBiMap.builder();
+        this.optionsAvailable = optionsAvailable.clone();
+        //turn array into an index
+        ImmutableMap.Builder<O, Integer> builder = ImmutableMap.builder();
         for(int i=0; i<optionsAvailable.length; i++)
             builder.put(optionsAvailable[i],i);
-
-        this.optionsAvailable = builder.build();
+        this.optionIndex = builder.build();
 
         this.banditState = banditState;
-
-        this.randomizer = randomizer;
-        this.lastChoice = optionsAvailable[randomizer.nextInt(optionsAvailable.length)];
-        timesPlayed = new int[optionsAvailable.length];
+        this.arms = new BeliefStateArms<>(this.optionsAvailable, banditState);
+        this.delegate = delegateMaker.apply(arms);
+        Preconditions.checkArgument(delegate.getNumberOfArms()==optionsAvailable.length);
 
     }
 
@@ -127,17 +142,40 @@ public abstract class AbstractBanditAlgorithm<O,R,C> implements Chooser<O, R, C>
      * @return O chosen to play next
      */
     @SafeVarargs
+    @SuppressWarnings("varargs") //the array is only read, through the slice, and released on return
     @Override
     public final O updateAndChoose(
             Observation<O, R, C> observation,
             Observation<O, R, C>... additionalObservations) {
+        try {
+            return updateAndChoose(observation,
+                                   varargsView.set(additionalObservations, 0, additionalObservations.length));
+        }
+        finally {
+            //don't keep the caller's array (and its observations) alive until the next call
+            varargsView.clear();
+        }
+    }
+
+
+    /**
+     * as the varargs updateAndChoose, but reads the additional observations from a slice without copying them
+     *
+     * @param observation            the reward and action taken last
+     * @param additionalObservations additional action-rewards observed (by imitation or whatever)
+     * @return O chosen to play next
+     */
+    @Override
+    public final O updateAndChoose(
+            Observation<O, R, C> observation,
+            ObservationSlice<O, R, C> additionalObservations) {
         //learn from the last observation
         if(observation!=null)
             learnFromObservation(observation);
         //decide whether to learn from additional observations
-        for (Observation<O, R, C> additional : additionalObservations) {
+        for (int i = 0; i < additionalObservations.size(); i++) {
             Observation<O, R, C> filtered =
-                    imitationPolicy.decideOnAdditionalInformation(additional,
+                    imitationPolicy.decideOnAdditionalInformation(additionalObservations.get(i),
                                                                   banditState);
             if(filtered!=null)
                 learnFromObservation(filtered);
@@ -145,38 +183,71 @@ public abstract class AbstractBanditAlgorithm<O,R,C> implements Chooser<O, R, C>
         }
 
         //now pick new option
-        lastChoice = choose(banditState,
-                            optionsAvailable,
-                            observation,
-                            lastChoice);
-        return lastChoice;
+        arms.setContext(observation == null ? null : observation.getContext());
+        return optionsAvailable[delegate.choose()];
+
+    }
+
+
+
+    /**
+     * learns from every observation in the batch (imitation policies are not consulted: these are all our own
+     * observations) and then makes one decision per context. Consecutive decisions in the same context
+     * (same object or equal) are handed together to the int bandit, which computes predictions, tie sets or
+     * softmax weights once for all of them
+     *
+     * @param observations observations to learn from (null entries are ignored)
+     * @param contexts     one context per decision to make
+     * @param choices      where the index of each decision is written
+     */
+    @Override
+    public void updateAndChooseBatch(
+            ObservationBatch<O, R, C> observations,
+            ContextBatch<C> contexts,
+            int[] choices) {
+        Preconditions.checkArgument(choices.length >= contexts.size(), "not enough room for all the choices");
+        for(int i=0; i<observations.size(); i++)
+        {
+            Observation<O, R, C> observation = observations.get(i);
+            if(observation!=null)
+                learnFromObservation(observation);
+        }
 
+        int from = 0;
+        while(from < contexts.size())
+        {
+            C context = contexts.get(from);
+            int to = from + 1;
+            while(to < contexts.size() && Objects.equals(context, contexts.get(to)))
+                to++;
+            arms.setContext(context);
+            delegate.chooseBatch(choices, from, to);
+            from = to;
+        }
     }
 
+    @Override
+    public O getOption(int index) {
+        return optionsAvailable[index];
+    }
 
+    @Override
+    public int getNumberOfOptions() {
+        return optionsAvailable.length;
+    }
 
     private void learnFromObservation(Observation<O, R, C> observation) {
-        timesPlayed[optionsAvailable.get(observation.getChoiceMade())]++;
-        numberOfObservations++;
+        delegate.recordPlay(optionIndex.get(observation.getChoiceMade()));
         banditState.observe(observation);
     }
 
 
     /**
-     * to implement by subclasses; make a decision about what to play next AFTER learning has been done
-     * @param state
-     * @param lastObservation
-     * @return
+     * the int bandit doing the choosing; subclasses know which kind it is
      */
-    @NotNull
-    abstract protected O choose(
-            BeliefState<O,R,C> state,
-            @NotNull
-                    BiMap<O,Integer> optionsAvailable,
-            @Nullable
-                    Observation<O,R,C> lastObservation,
-            O lastChoice
-    ) ;
+    protected IntBandit getDelegate() {
+        return delegate;
+    }
 
     /**
      * this is a simple getter that returns what the last choice made was. *this does not update choices*
@@ -185,7 +256,7 @@ public abstract class AbstractBanditAlgorithm<O,R,C> implements Chooser<O, R, C>
      */
     @Override
     public O getLastChoice() {
-        return lastChoice;
+        return optionsAvailable[delegate.getLastChoice()];
     }
 
 
@@ -205,6 +276,7 @@ public abstract class AbstractBanditAlgorithm<O,R,C> implements Chooser<O, R, C>
      */
     public void setBanditState(BeliefState<O, R, C> banditState) {
         this.banditState = banditState;
+        this.arms.setBelief(banditState);
     }
 
     /**
@@ -233,11 +305,11 @@ public abstract class AbstractBanditAlgorithm<O,R,C> implements Chooser<O, R, C>
      * @return Value for property 'randomizer'.
      */
     public SplittableRandom getRandomizer() {
-        return randomizer;
+        return delegate.getRandomizer();
     }
 
     public int getNumberOfTimesPlayed(O choice){
-        return timesPlayed[optionsAvailable.get(choice)];
+        return delegate.getNumberOfTimesPlayed(optionIndex.get(choice));
 
     }
 
@@ -247,29 +319,120 @@ public abstract class AbstractBanditAlgorithm<O,R,C> implements Chooser<O, R, C>
      * @return Value for property 'numberOfObservations'.
      */
     public int getNumberOfObservations() {
-        return numberOfObservations;
+        return delegate.getNumberOfObservations();
     }
 
 
     /**
      * utility method to change quickly the BeliefState to another 1D filter method. Will only work
-     * if the current BeliefState is also simple
+     * if the current BeliefState is also simple (a FilterSpace)
      */
     public void resetStateUsingThisFilter(Supplier<? extends OneDimensionalFilter> filter)
     {
-        Preconditions.checkArgument(banditState instanceof LocalFilterSpace,
-                                    "you must have changed the bandit state away from LocalFilterSpace, now you can't call reset; just set the new state directly");
-        assert banditState instanceof LocalFilterSpace;
-        ((LocalFilterSpace) banditState).resetFilter(filter);
+        Preconditions.checkArgument(banditState instanceof FilterSpace,
+                                    "you must have changed the bandit state away from FilterSpace, now you can't call reset; just set the new state directly");
+        ((FilterSpace<O,R,C>) banditState).resetFilter(filter);
     }
 
 
     public void resetSimilarityIndex(Similarity<O,C> similarity)
     {
-        Preconditions.checkArgument(banditState instanceof LocalFilterSpace,
-                                    "you must have changed the bandit state away from LocalFilterSpace, now you can't call reset; just set the new state directly");
-        assert banditState instanceof LocalFilterSpace;
-        ((LocalFilterSpace) banditState).setOptionSimilarity(similarity);
+        Preconditions.checkArgument(banditState instanceof FilterSpace,
+                                    "you must have changed the bandit state away from FilterSpace, now you can't call reset; just set the new state directly");
+        ((FilterSpace<O,R,C>) banditState).setOptionSimilarity(similarity);
+    }
+
+
+
+    /**
+     * reads the generic belief state as if its options were just indices. It is read-only: observations carry objects
+     * the int bandit doesn't know about, so they are fed to the BeliefState directly.
+     * When the belief is a FilterSpace over the same options in the same order it is read directly by index,
+     * never touching the options objects
+     */
+    private static class BeliefStateArms<O,R,C> implements IndexedBeliefView
+    {
+
+        private final O[] optionsAvailable;
+
+        private BeliefState<O,R,C> belief;
+
+        /**
+         * the belief itself when it can be read by our indices, null otherwise
+         */
+        @Nullable
+        private IndexedBeliefView indexed;
+
+        /**
+         * context of the last observation, used for predictions
+         */
+        @Nullable
+        private C context;
+
+        private BeliefStateArms(
+                O[] optionsAvailable,
+                BeliefState<O, R, C> belief) {
+            this.optionsAvailable = optionsAvailable;
+            setBelief(belief);
+        }
+
+        @Override
+        public double predict(int arm) {
+            if(indexed != null)
+                return indexed.predict(arm);
+            return belief.predict(optionsAvailable[arm], context);
+        }
+
+        @Override
+        public int getNumberOfArms() {
+            return optionsAvailable.length;
+        }
+
+        /**
+         * an indexed belief already knows its best option (and ignores context); everything else gets scanned
+         */
+        @Override
+        public int getBestArm(SplittableRandom randomizer) {
+            if(indexed != null)
+                return indexed.getBestArm(randomizer);
+            return IndexedBeliefView.super.getBestArm(randomizer);
+        }
+
+        @Override
+        public boolean isBestArmIndexed() {
+            return indexed != null && indexed.isBestArmIndexed();
+        }
+
+        /**
+         * a LocalFilterSpace can draw from its posteriors; other beliefs are certain of their predictions
+         */
+        @Override
+        public double sample(int arm, SplittableRandom randomizer) {
+            if(indexed != null)
+                return indexed.sample(arm, randomizer);
+            if(belief instanceof LocalFilterSpace)
+                return ((LocalFilterSpace<O, R, C>) belief).sample(optionsAvailable[arm], randomizer);
+            return predict(arm);
+        }
+
+        private void setBelief(BeliefState<O, R, C> belief) {
+            this.belief = belief;
+            this.indexed = null;
+            if(belief instanceof FilterSpace)
+            {
+                FilterSpace<O, R, C> space = (FilterSpace<O, R, C>) belief;
+                if(space.getNumberOfArms() != optionsAvailable.length)
+                    return;
+                for(int arm=0; arm<optionsAvailable.length; arm++)
+                    if(!optionsAvailable[arm].equals(space.getOption(arm)))
+                        return;
+                this.indexed = space;
+            }
+        }
+
+        private void setContext(@Nullable C context) {
+            this.context = context;
+        }
     }
 
 }
@@ -0,0 +1,221 @@
+package io.github.carrknight.bandits;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.heatmaps.IndexedBeliefState;
+import io.github.carrknight.heatmaps.IndexedBeliefView;
+import io.github.carrknight.utils.DiscreteChoosersUtilities;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.SplittableRandom;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * the primitive engine behind all bandit algorithms: arms are the indices 0,1,...,n-1 and rewards are plain doubles.
+ * Nothing gets boxed and nothing gets allocated in updateAndChoose, which matters when you step hundreds of thousands
+ * of these each turn. The generic AbstractBanditAlgorithm is just a translation layer O <---> int on top of this.
+ */
+public abstract class IntBandit {
+
+
+    /**
+     * pass this as arm to updateAndChoose when there is nothing to learn from
+     */
+    public static final int NO_OBSERVATION = -1;
+
+    /**
+     * object storing current knowledge
+     */
+    @NotNull
+    private IndexedBeliefView state;
+
+    final private int[] timesPlayed;
+
+    private int numberOfObservations=0;
+
+    /**
+     * last time we updated, this was our choice
+     */
+    private int lastChoice;
+
+    /**
+     * the randomizer to use
+     */
+    private final SplittableRandom randomizer;
+
+    /**
+     * reads whatever the current state is; stored here so that the argmax scans don't create a new lambda each step
+     */
+    private final IntToDoubleFunction prediction = arm -> getState().predict(arm);
+
+
+    public IntBandit(
+            @NotNull IndexedBeliefView state,
+            SplittableRandom randomizer) {
+        Preconditions.checkArgument(state.getNumberOfArms()>0,
+                                    "Given no options!");
+        this.state = state;
+        this.randomizer = randomizer;
+        this.timesPlayed = new int[state.getNumberOfArms()];
+        this.lastChoice = randomizer.nextInt(state.getNumberOfArms());
+    }
+
+
+    /**
+     * the main method of the bandit: learn from the last arm played and pick a new one.
+     * @param arm the arm played last (or NO_OBSERVATION)
+     * @param reward the reward obtained by playing it (ignored if there is no observation)
+     * @return the arm to play next
+     */
+    public final int updateAndChoose(int arm, double reward){
+        if(arm != NO_OBSERVATION)
+            observe(arm, reward);
+        return choose();
+    }
+
+
+    /**
+     * learn from a reward without choosing (useful for imitation: call it for each additional observation).
+     * The state must be able to learn by index (an IndexedBeliefState): read-only views are fed by their owner, who
+     * only calls recordPlay here
+     * @param arm arm played
+     * @param reward reward obtained
+     */
+    public void observe(int arm, double reward){
+        Preconditions.checkState(state instanceof IndexedBeliefState,
+                                 "this bandit reads a view that can't learn by index; feed the belief it views");
+        recordPlay(arm);
+        ((IndexedBeliefState) state).observe(arm, reward, 1d);
+    }
+
+
+    /**
+     * pick next arm given what we know now
+     * @return the arm to play next
+     */
+    public final int choose(){
+        lastChoice = chooseArm(state);
+        return lastChoice;
+    }
+
+
+    /**
+     * make many decisions at once, all given what we know now (no learning happens in between).
+     * Bandits that can share work across the decisions (a single scan, a single tie set...) do so
+     * @param choices where to write the decisions
+     * @param from first cell of choices to fill
+     * @param to cell after the last one to fill
+     */
+    public final void chooseBatch(int[] choices, int from, int to){
+        if(from >= to)
+            return;
+        chooseArms(state, choices, from, to);
+        lastChoice = choices[to-1];
+    }
+
+
+    /**
+     * increase the play counters without feeding the belief state; this is for adapters
+     * that take care of the belief themselves
+     */
+    void recordPlay(int arm){
+        timesPlayed[arm]++;
+        numberOfObservations++;
+    }
+
+
+    /**
+     * to implement by subclasses; make a decision about what to play next AFTER learning has been done
+     * @param state current memory of the bandit algorithm
+     * @return the index of the arm to play
+     */
+    abstract protected int chooseArm(IndexedBeliefView state);
+
+
+    /**
+     * make many decisions given the same state; by default just call chooseArm over and over
+     * @param state current memory of the bandit algorithm
+     * @param choices where to write the decisions
+     * @param from first cell to fill
+     * @param to cell after the last one to fill
+     */
+    protected void chooseArms(IndexedBeliefView state, int[] choices, int from, int to){
+        for(int i=from; i<to; i++)
+            choices[i] = chooseArm(state);
+    }
+
+
+    /**
+     * returns the arm with highest fitness, splitting draws uniformly at random. Non finite fitness is ignored.
+     * @param fitness the fitness of each arm
+     * @return the best arm or -1 if no arm has a valid fitness
+     */
+    protected int getBestArm(IntToDoubleFunction fitness){
+        return DiscreteChoosersUtilities.getBestIndex(timesPlayed.length,
+                                                      fitness,
+                                                      randomizer,
+                                                      Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * the prediction of the current state as a function (no allocation needed)
+     */
+    protected IntToDoubleFunction getPrediction() {
+        return prediction;
+    }
+
+    /**
+     * Getter for property 'lastChoice'.
+     *
+     * @return Value for property 'lastChoice'.
+     */
+    public int getLastChoice() {
+        return lastChoice;
+    }
+
+    /**
+     * Getter for property 'state'.
+     *
+     * @return Value for property 'state'.
+     */
+    @NotNull
+    public IndexedBeliefView getState() {
+        return state;
+    }
+
+    /**
+     * Setter for property 'state'.
+     *
+     * @param state Value to set for property 'state'.
+     */
+    public void setState(@NotNull IndexedBeliefView state) {
+        Preconditions.checkArgument(state.getNumberOfArms()==timesPlayed.length,
+                                    "the new state has a different number of arms!");
+        this.state = state;
+    }
+
+    /**
+     * Getter for property 'randomizer'.
+     *
+     * @return Value for property 'randomizer'.
+     */
+    public SplittableRandom getRandomizer() {
+        return randomizer;
+    }
+
+    public int getNumberOfTimesPlayed(int arm){
+        return timesPlayed[arm];
+    }
+
+    /**
+     * Getter for property 'numberOfObservations'.
+     *
+     * @return Value for property 'numberOfObservations'.
+     */
+    public int getNumberOfObservations() {
+        return numberOfObservations;
+    }
+
+    public int getNumberOfArms(){
+        return timesPlayed.length;
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.carrknight.bandits;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.heatmaps.IndexedBeliefView;
+import io.github.carrknight.heatmaps.regression.IndexedFilterSpace;
+import io.github.carrknight.utils.DiscreteChoosersUtilities;
+import io.github.carrknight.utils.averager.IterativeAverageFilter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.SplittableRandom;
+
+/**
+ * e-greedy over int arms: with probability epsilon pick at random, otherwise pick the arm with highest expected reward
+ */
+public class IntEpsilonGreedyBandit extends IntBandit {
+
+
+    /**
+     * exploratory probability
+     */
+    private double epsilon;
+
+    /**
+     * scratch space for the arms tied at the top when choosing in batches; allocated the first time it's needed
+     */
+    private int[] bestArms;
+
+
+    /**
+     * generates the standard epsilon greedy algorithm with iterative averages
+     * @param numberOfArms number of options
+     * @param randomSeed random seed
+     * @param epsilon exploration rate
+     */
+    public IntEpsilonGreedyBandit(int numberOfArms, long randomSeed, double epsilon) {
+        this(new IndexedFilterSpace(numberOfArms,
+                                    () -> new IterativeAverageFilter(0d)),
+             new SplittableRandom(randomSeed),
+             epsilon);
+    }
+
+    public IntEpsilonGreedyBandit(
+            @NotNull IndexedBeliefView state,
+            SplittableRandom randomizer, double epsilon) {
+        super(state, randomizer);
+        setEpsilon(epsilon);
+    }
+
+    /**
+     * with probability epsilon, choose an option at random;
+     * otherwise exploit greedily (split at random if multiple arms have equal expected rewards)
+     *
+     * @param state current memory of the bandit algorithm
+     * @return new choice
+     */
+    @Override
+    protected int chooseArm(IndexedBeliefView state) {
+
+        int numberOfArms = getNumberOfArms();
+        //explore:
+        if(getRandomizer().nextDouble() < epsilon)
+            return getRandomizer().nextInt(numberOfArms);
+
+        int bestArm = state.getBestArm(getRandomizer());
+        //if nothing can be predicted, there is nothing to exploit
+        return bestArm >= 0 ? bestArm : getRandomizer().nextInt(numberOfArms);
+
+    }
+
+    /**
+     * same as calling chooseArm repeatedly, but when the best arm can only be found by scanning,
+     * the scan happens once and every greedy decision draws from the same tie set
+     */
+    @Override
+    protected void chooseArms(IndexedBeliefView state, int[] choices, int from, int to) {
+        if(state.isBestArmIndexed() || to - from < 2) {
+            super.chooseArms(state, choices, from, to);
+            return;
+        }
+
+        int numberOfArms = getNumberOfArms();
+        int ties = -1;
+        for(int i=from; i<to; i++)
+        {
+            if(getRandomizer().nextDouble() < epsilon) {
+                choices[i] = getRandomizer().nextInt(numberOfArms);
+                continue;
+            }
+            if(ties < 0) {
+                if(bestArms == null)
+                    bestArms = new int[numberOfArms];
+                ties = DiscreteChoosersUtilities.collectBestIndices(numberOfArms, getPrediction(), bestArms);
+            }
+            choices[i] = ties > 0 ? bestArms[getRandomizer().nextInt(ties)] : getRandomizer().nextInt(numberOfArms);
+        }
+    }
+
+    /**
+     * Getter for property 'epsilon'.
+     *
+     * @return Value for property 'epsilon'.
+     */
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * Setter for property 'epsilon'.
+     *
+     * @param epsilon Value to set for property 'epsilon'.
+     */
+    public void setEpsilon(double epsilon) {
+        Preconditions.checkArgument(epsilon>=0, "espilon cannot be lower than 0");
+        Preconditions.checkArgument(epsilon<=1, "epsilon cannot be higher than 1");
+        this.epsilon = epsilon;
+    }
+}
@@ -0,0 +1,226 @@
+package io.github.carrknight.bandits;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.heatmaps.IndexedBeliefView;
+import io.github.carrknight.heatmaps.regression.IndexedFilterSpace;
+import io.github.carrknight.utils.BoltzmannSampler;
+import io.github.carrknight.utils.FenwickBoltzmannSampler;
+import io.github.carrknight.utils.averager.IterativeAverageFilter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.SplittableRandom;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * softmax over int arms. Draws go through a BoltzmannSampler whose buffer is allocated once, so choosing creates no garbage.
+ * In incremental mode the preferences live instead in a FenwickBoltzmannSampler and only the arms played since the
+ * last decision are re-read, so each step costs O(log n) as long as the temperature stays put.
+ * That's only correct if the prediction of an arm changes just when it is played, which is why it's on by default
+ * only when the bandit builds its own belief.
+ */
+public class IntSoftmaxBandit extends IntBandit {
+
+
+    /**
+     * the higher the more it will randomize rather than going for the top
+     */
+    private double temperature;
+
+    /**
+     * called each time a decision is made, will update the temperature; This is useful if you want high exploration initially
+     * but you want it to go down after a while
+     */
+    private DoubleUnaryOperator temperatureUpdater;
+
+    /**
+     * owns the buffers used each step to draw
+     */
+    private final BoltzmannSampler sampler;
+
+    /**
+     * keeps the preferences between steps when incremental; null until needed
+     */
+    private FenwickBoltzmannSampler incrementalSampler;
+
+    private boolean incremental = false;
+
+    /**
+     * when true all preferences in the incremental sampler need to be read again
+     */
+    private boolean preferencesStale = true;
+
+    /**
+     * arms whose prediction might have changed since the last decision
+     */
+    private final PlayedArms playedSinceLastChoice;
+
+
+    /**
+     * creates a softmax bandit with temperature 1 that never decays
+     * @param numberOfArms number of options
+     * @param randomSeed random seed
+     * @param initialExpectedReward initial expected reward to simulate optimism or pessimism
+     */
+    public IntSoftmaxBandit(int numberOfArms, long randomSeed, double initialExpectedReward) {
+        this(new IndexedFilterSpace(numberOfArms,
+                                    () -> new IterativeAverageFilter(initialExpectedReward)),
+             new SplittableRandom(randomSeed),
+             1,
+             temperature -> temperature);
+        setIncremental(true);
+    }
+
+    public IntSoftmaxBandit(
+            @NotNull IndexedBeliefView state,
+            SplittableRandom randomizer,
+            double temperature,
+            DoubleUnaryOperator temperatureUpdater) {
+        super(state, randomizer);
+        setTemperature(temperature);
+        this.temperatureUpdater = temperatureUpdater;
+        this.sampler = new BoltzmannSampler(state.getNumberOfArms());
+        this.playedSinceLastChoice = new PlayedArms(state.getNumberOfArms());
+    }
+
+    /**
+     * sample an arm with probability proportional to exp(prediction/temperature)
+     */
+    @Override
+    protected int chooseArm(IndexedBeliefView state) {
+
+        assert temperature>=1;
+        int newChoice = prepareDistribution(state) ? drawArm() : -1;
+        //nothing to go on: pick at random
+        if(newChoice < 0)
+            newChoice = getRandomizer().nextInt(getNumberOfArms());
+
+        //before returning update temperature
+        setTemperature(temperatureUpdater.applyAsDouble(temperature));
+
+        return newChoice;
+    }
+
+    /**
+     * the same distribution (and temperature) serves every decision of the batch; the temperature updater is still
+     * called once per decision so the schedule moves as if the decisions were made one by one
+     */
+    @Override
+    protected void chooseArms(IndexedBeliefView state, int[] choices, int from, int to) {
+        assert temperature>=1;
+        boolean anythingToDraw = prepareDistribution(state);
+        for(int i=from; i<to; i++)
+        {
+            int arm = anythingToDraw ? drawArm() : -1;
+            choices[i] = arm >= 0 ? arm : getRandomizer().nextInt(getNumberOfArms());
+        }
+        for(int i=from; i<to; i++)
+            setTemperature(temperatureUpdater.applyAsDouble(temperature));
+    }
+
+    /**
+     * bring whichever sampler we are using up to date with the state and the temperature
+     * @return false if there is nothing to draw from (no finite prediction)
+     */
+    private boolean prepareDistribution(IndexedBeliefView state){
+        boolean anythingToDraw = true;
+        if(incremental)
+        {
+            if(preferencesStale)
+            {
+                for(int arm=0; arm<getNumberOfArms(); arm++)
+                    incrementalSampler.setPreference(arm, state.predict(arm));
+                preferencesStale = false;
+            }
+            else
+                for(int i=0; i<playedSinceLastChoice.size(); i++)
+                {
+                    int arm = playedSinceLastChoice.get(i);
+                    incrementalSampler.setPreference(arm, state.predict(arm));
+                }
+            incrementalSampler.setTemperature(temperature);
+        }
+        else
+            anythingToDraw = sampler.prepare(getPrediction(), temperature);
+        playedSinceLastChoice.clear();
+        return anythingToDraw;
+    }
+
+    private int drawArm(){
+        return incremental ?
+                incrementalSampler.sample(getRandomizer().nextDouble()) :
+                sampler.draw(getRandomizer().nextDouble());
+    }
+
+    @Override
+    void recordPlay(int arm) {
+        super.recordPlay(arm);
+        playedSinceLastChoice.add(arm);
+    }
+
+    @Override
+    public void setState(@NotNull IndexedBeliefView state) {
+        super.setState(state);
+        preferencesStale = true;
+    }
+
+    /**
+     * Getter for property 'incremental'.
+     *
+     * @return Value for property 'incremental'.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Setter for property 'incremental'. Only turn it on if the prediction of each arm changes only when
+     * that arm is played
+     *
+     * @param incremental Value to set for property 'incremental'.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        if(incremental && incrementalSampler == null)
+            incrementalSampler = new FenwickBoltzmannSampler(getNumberOfArms(), temperature);
+        preferencesStale = true;
+    }
+
+    /**
+     * Getter for property 'temperature'.
+     *
+     * @return Value for property 'temperature'.
+     */
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * Setter for property 'temperature'.
+     *
+     * @param temperature Value to set for property 'temperature'.
+     */
+    public void setTemperature(double temperature) {
+
+        Preconditions.checkArgument(temperature>=1, "temperature shouldn't go below 1");
+
+        this.temperature = temperature;
+    }
+
+    /**
+     * Getter for property 'temperatureUpdater'.
+     *
+     * @return Value for property 'temperatureUpdater'.
+     */
+    public DoubleUnaryOperator getTemperatureUpdater() {
+        return temperatureUpdater;
+    }
+
+    /**
+     * Setter for property 'temperatureUpdater'.
+     *
+     * @param temperatureUpdater Value to set for property 'temperatureUpdater'.
+     */
+    public void setTemperatureUpdater(DoubleUnaryOperator temperatureUpdater) {
+        this.temperatureUpdater = temperatureUpdater;
+    }
+}
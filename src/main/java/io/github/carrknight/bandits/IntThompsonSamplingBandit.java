@@ -0,0 +1,57 @@
+package io.github.carrknight.bandits;
+
+import io.github.carrknight.heatmaps.IndexedBeliefView;
+import io.github.carrknight.heatmaps.regression.IndexedFilterSpace;
+import io.github.carrknight.heatmaps.regression.OneDimensionalKalmanFilter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.SplittableRandom;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Thompson sampling over int arms: each step draw once from each arm posterior and play the arm with the highest draw.
+ * Posteriors are whatever the belief's sample(arm,randomizer) returns: Kalman filters give normal posteriors,
+ * BetaBernoulliFilters beta ones, GoodBadFilters a good/bad coin. Filters without a posterior just return their
+ * prediction, which turns this into a greedy bandit.
+ * It needs no counts nor exploration parameters: exploration comes from the width of the posteriors
+ */
+public class IntThompsonSamplingBandit extends IntBandit {
+
+
+    /**
+     * one posterior draw per arm; stored here so choosing creates no lambda
+     */
+    private final IntToDoubleFunction posteriorDraw = arm -> getState().sample(arm, getRandomizer());
+
+
+    /**
+     * Thompson sampling with a Kalman filter (no drift) per arm, so that every arm starts with a normal prior.
+     * Observations are assumed to have unit variance: rescale rewards (or provide your own belief) if they don't
+     * @param numberOfArms number of options
+     * @param randomSeed random seed
+     * @param priorMean prior mean reward of each arm
+     * @param priorVariance prior variance of the mean reward of each arm (the larger, the more initial exploration)
+     */
+    public IntThompsonSamplingBandit(
+            int numberOfArms, long randomSeed,
+            double priorMean, double priorVariance) {
+        this(new IndexedFilterSpace(numberOfArms,
+                                    () -> new OneDimensionalKalmanFilter(1, 1, priorVariance, priorMean, 0)),
+             new SplittableRandom(randomSeed));
+    }
+
+    public IntThompsonSamplingBandit(
+            @NotNull IndexedBeliefView state,
+            SplittableRandom randomizer) {
+        super(state, randomizer);
+    }
+
+    /**
+     * one draw per arm, pick the highest (ties broken at random)
+     */
+    @Override
+    protected int chooseArm(IndexedBeliefView state) {
+        int bestArm = getBestArm(posteriorDraw);
+        return bestArm >= 0 ? bestArm : getRandomizer().nextInt(getNumberOfArms());
+    }
+}
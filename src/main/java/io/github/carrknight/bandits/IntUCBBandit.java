@@ -0,0 +1,377 @@
+package io.github.carrknight.bandits;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.heatmaps.IndexedBeliefView;
+import io.github.carrknight.heatmaps.regression.IndexedFilterSpace;
+import io.github.carrknight.utils.DiscreteChoosersUtilities;
+import io.github.carrknight.utils.IndexedMaxHeap;
+import io.github.carrknight.utils.averager.IterativeAverageFilter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.SplittableRandom;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * the UCB1 algorithm over int arms; rewards are rescaled between 0 and 1 before being stored.
+ * log(t) is computed once per step and the sqrt(1/n) part of the bonus is read from a table.
+ * When lazy evaluation is on, arms are kept in a max-heap keyed by (upper bound - bonus multiplier) as of the last
+ * time they were evaluated: since sqrt(1/n) is at most 1 and the multiplier only grows with t, key + current multiplier
+ * is still an upper bound for arms that have not been played since, so only the arms that might win get re-evaluated.
+ * This is only correct if the prediction of an arm changes just when it is played (the default belief, but not
+ * similarity-based or drifting ones), which is why the flag is off unless you build the bandit with its own belief.
+ */
+public class IntUCBBandit extends IntBandit {
+
+
+    /**
+     * sqrt(1/n) for the small n; larger n are computed on the spot
+     */
+    private static final double[] INVERSE_SQUARE_ROOTS = new double[4096];
+    static {
+        INVERSE_SQUARE_ROOTS[0] = Double.POSITIVE_INFINITY;
+        for(int n=1; n<INVERSE_SQUARE_ROOTS.length; n++)
+            INVERSE_SQUARE_ROOTS[n] = Math.sqrt(1d/n);
+    }
+
+    private double sigma;
+
+    private final double minimumRewardExpected;
+
+    private final double maximumRewardExpected;
+
+    /**
+     * sigma * sqrt(2 log t); computed once per decision. The bonus of each arm is this times sqrt(1/n)
+     */
+    private double bonusMultiplier;
+
+    /**
+     * upper confidence bound of each arm given the current bonusMultiplier
+     */
+    private final IntToDoubleFunction upperConfidenceBound = arm -> upperConfidenceBound(
+            getState().predict(arm),
+            getNumberOfTimesPlayed(arm)
+    );
+
+    /**
+     * when true use the heap rather than scanning all arms each step
+     */
+    private boolean lazyEvaluation;
+
+    /**
+     * arms never played (swap-remove list: the first numberOfUnplayedArms cells are valid)
+     */
+    private final int[] unplayedArms;
+
+    /**
+     * where each arm is in unplayedArms (or -1 if it has been played)
+     */
+    private final int[] positionInUnplayed;
+
+    private int numberOfUnplayedArms;
+
+    /**
+     * upper confidence bound minus bonusMultiplier, as of the last evaluation
+     */
+    private final IndexedMaxHeap bounds;
+
+    /**
+     * exact upper confidence bound at the last evaluation
+     */
+    private final double[] lastBound;
+
+    /**
+     * the step at which each arm was last evaluated
+     */
+    private final long[] evaluatedAt;
+
+    private long step = 0;
+
+    /**
+     * arms played since the last decision; their keys are not upper bounds anymore
+     */
+    private final PlayedArms playedSinceLastChoice;
+
+    /**
+     * when true all keys need recomputing (lazy evaluation just turned on, sigma changed, new state...)
+     */
+    private boolean heapStale = true;
+
+    /**
+     * scratch space for arms that might tie at the top
+     */
+    private final int[] candidates;
+
+    private int armsEvaluatedLastStep = 0;
+
+
+    /**
+     * standard UCB1 with iterative averages (and lazy evaluation)
+     * @param numberOfArms number of options
+     * @param randomSeed random seed
+     * @param minimumRewardExpected the minimum reward that can be observed (will be mapped to 0)
+     * @param maximumRewardExpected the maximum reward that can be observed (will be mapped to 1)
+     */
+    public IntUCBBandit(
+            int numberOfArms, long randomSeed,
+            double minimumRewardExpected, double maximumRewardExpected) {
+        this(new IndexedFilterSpace(numberOfArms,
+                                    () -> new IterativeAverageFilter(0d)),
+             new SplittableRandom(randomSeed),
+             minimumRewardExpected,
+             maximumRewardExpected,
+             1d);
+        setLazyEvaluation(true);
+    }
+
+    public IntUCBBandit(
+            @NotNull IndexedBeliefView state,
+            SplittableRandom randomizer,
+            double minimumRewardExpected,
+            double maximumRewardExpected,
+            double sigma) {
+        super(state, randomizer);
+        Preconditions.checkArgument(maximumRewardExpected > minimumRewardExpected,
+                                    "maximum reward must be above minimum reward");
+        this.minimumRewardExpected = minimumRewardExpected;
+        this.maximumRewardExpected = maximumRewardExpected;
+        this.sigma = sigma;
+
+        int numberOfArms = state.getNumberOfArms();
+        unplayedArms = new int[numberOfArms];
+        positionInUnplayed = new int[numberOfArms];
+        for(int arm=0; arm<numberOfArms; arm++)
+        {
+            unplayedArms[arm] = arm;
+            positionInUnplayed[arm] = arm;
+        }
+        numberOfUnplayedArms = numberOfArms;
+        bounds = new IndexedMaxHeap(numberOfArms);
+        lastBound = new double[numberOfArms];
+        evaluatedAt = new long[numberOfArms];
+        playedSinceLastChoice = new PlayedArms(numberOfArms);
+        candidates = new int[numberOfArms];
+    }
+
+
+    /**
+     * rescales the reward between 0 and 1 before learning from it
+     */
+    @Override
+    public void observe(int arm, double reward) {
+        super.observe(arm, rescale(reward));
+    }
+
+    private double rescale(double reward) {
+        reward = Math.min(Math.max(reward, minimumRewardExpected), maximumRewardExpected);
+        return (reward - minimumRewardExpected) / (maximumRewardExpected - minimumRewardExpected);
+    }
+
+    /**
+     * keeps track of which arms have never been played and which need their bound recomputed
+     */
+    @Override
+    void recordPlay(int arm) {
+        super.recordPlay(arm);
+        //swap-remove from the unplayed list
+        int position = positionInUnplayed[arm];
+        if(position >= 0)
+        {
+            int last = unplayedArms[--numberOfUnplayedArms];
+            unplayedArms[position] = last;
+            positionInUnplayed[last] = position;
+            positionInUnplayed[arm] = -1;
+        }
+        playedSinceLastChoice.add(arm);
+    }
+
+    /**
+     * this is basically the bound generated by the Chernoff-Hoeffding inequality. The best explanation for it
+     * is probably here: http://jeremykun.com/2013/10/28/optimism-in-the-face-of-uncertainty-the-ucb1-algorithm/
+     */
+    private double upperConfidenceBound(double average,
+                                        int numberOfObservationsOnThisArm) {
+        assert numberOfObservationsOnThisArm > 0;
+        assert numberOfObservationsOnThisArm <= getNumberOfObservations();
+        return average + bonusMultiplier * inverseSquareRoot(numberOfObservationsOnThisArm);
+    }
+
+    private static double inverseSquareRoot(int n){
+        return n < INVERSE_SQUARE_ROOTS.length ? INVERSE_SQUARE_ROOTS[n] : Math.sqrt(1d/n);
+    }
+
+    /**
+     * plays each arm at least once (at random), then chooses the arm with the highest upper confidence bound
+     */
+    @Override
+    protected int chooseArm(IndexedBeliefView state) {
+
+        step++;
+        armsEvaluatedLastStep = 0;
+        //if there is an option without a single played game, play that first
+        if(numberOfUnplayedArms > 0)
+            return unplayedArms[getRandomizer().nextInt(numberOfUnplayedArms)];
+
+        //everything has been played at least once, proceed with standard UCB1 exploitation
+        bonusMultiplier = sigma * Math.sqrt(2 * Math.log(getNumberOfObservations()));
+        int bestArm;
+        if(lazyEvaluation)
+            bestArm = lazyBestArm();
+        else {
+            bestArm = getBestArm(upperConfidenceBound);
+            armsEvaluatedLastStep = getNumberOfArms();
+        }
+        playedSinceLastChoice.clear();
+        return bestArm >= 0 ? bestArm : getRandomizer().nextInt(getNumberOfArms());
+
+    }
+
+
+    /**
+     * re-evaluates the played arms, then the top of the heap until the top is exact;
+     * finally re-evaluates everything that could tie with it and picks one at random
+     */
+    private int lazyBestArm(){
+
+        if(heapStale)
+        {
+            for(int arm=0; arm<getNumberOfArms(); arm++)
+                evaluate(arm);
+            heapStale = false;
+        }
+        else
+            for(int i=0; i<playedSinceLastChoice.size(); i++)
+                evaluate(playedSinceLastChoice.get(i));
+
+        int top = bounds.peek();
+        while(evaluatedAt[top] != step)
+        {
+            evaluate(top);
+            top = bounds.peek();
+        }
+        double topKey = bounds.getKey(top);
+        if(topKey == Double.NEGATIVE_INFINITY)
+            return -1;
+
+        //anything whose bound is within rounding of the top might tie
+        int found = bounds.collectAtLeast(topKey - 1e-9 * Math.max(1, Math.abs(topKey)),
+                                          candidates);
+        int best = -1;
+        int draws = 0;
+        double currentMax = Double.NEGATIVE_INFINITY;
+        for(int i=0; i<found; i++)
+        {
+            int arm = candidates[i];
+            if(evaluatedAt[arm] != step)
+                evaluate(arm);
+            double bound = lastBound[arm];
+            if(Double.isFinite(bound) && bound > currentMax)
+            {
+                currentMax = bound;
+                best = arm;
+                draws = 1;
+            }
+            else if(bound == currentMax)
+            {
+                draws++;
+                if(getRandomizer().nextInt(draws)==0)
+                    best = arm;
+            }
+        }
+        return best;
+
+    }
+
+    /**
+     * the bounds don't change until something is observed: without lazy evaluation compute them once
+     * and draw every decision from the same tie set
+     */
+    @Override
+    protected void chooseArms(IndexedBeliefView state, int[] choices, int from, int to) {
+        if(lazyEvaluation || numberOfUnplayedArms > 0 || to - from < 2) {
+            super.chooseArms(state, choices, from, to);
+            return;
+        }
+        step++;
+        bonusMultiplier = sigma * Math.sqrt(2 * Math.log(getNumberOfObservations()));
+        int ties = DiscreteChoosersUtilities.collectBestIndices(getNumberOfArms(), upperConfidenceBound, candidates);
+        armsEvaluatedLastStep = getNumberOfArms();
+        for(int i=from; i<to; i++)
+            choices[i] = ties > 0 ?
+                    candidates[getRandomizer().nextInt(ties)] :
+                    getRandomizer().nextInt(getNumberOfArms());
+        playedSinceLastChoice.clear();
+    }
+
+    private void evaluate(int arm){
+        double bound = upperConfidenceBound.applyAsDouble(arm);
+        lastBound[arm] = bound;
+        evaluatedAt[arm] = step;
+        armsEvaluatedLastStep++;
+        bounds.update(arm, Double.isFinite(bound) ? bound - bonusMultiplier : Double.NEGATIVE_INFINITY);
+    }
+
+
+    @Override
+    public void setState(@NotNull IndexedBeliefView state) {
+        super.setState(state);
+        heapStale = true;
+    }
+
+    /**
+     * Getter for property 'armsEvaluatedLastStep'.
+     * How many upper confidence bounds were computed in the last decision (the number of arms when not lazy)
+     *
+     * @return Value for property 'armsEvaluatedLastStep'.
+     */
+    public int getArmsEvaluatedLastStep() {
+        return armsEvaluatedLastStep;
+    }
+
+    /**
+     * Getter for property 'lazyEvaluation'.
+     *
+     * @return Value for property 'lazyEvaluation'.
+     */
+    public boolean isLazyEvaluation() {
+        return lazyEvaluation;
+    }
+
+    /**
+     * Setter for property 'lazyEvaluation'. Only turn it on if the prediction of each arm changes only when
+     * that arm is played
+     *
+     * @param lazyEvaluation Value to set for property 'lazyEvaluation'.
+     */
+    public void setLazyEvaluation(boolean lazyEvaluation) {
+        this.lazyEvaluation = lazyEvaluation;
+        heapStale = true;
+    }
+
+    /**
+     * Getter for property 'sigma'.
+     *
+     * @return Value for property 'sigma'.
+     */
+    public double getSigma() {
+        return sigma;
+    }
+
+    /**
+     * Setter for property 'sigma'.
+     *
+     * @param sigma Value to set for property 'sigma'.
+     */
+    public void setSigma(double sigma) {
+        this.sigma = sigma;
+        //keys are only upper bounds if the multiplier never shrinks
+        heapStale = true;
+    }
+
+    public double getMinimumRewardExpected() {
+        return minimumRewardExpected;
+    }
+
+    public double getMaximumRewardExpected() {
+        return maximumRewardExpected;
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.carrknight.bandits;
+
+/**
+ * the set of arms played since the last decision, without duplicates and without allocations.
+ * Bandits keeping an incremental index of their arms use it to know what needs refreshing
+ */
+class PlayedArms {
+
+
+    private final int[] arms;
+
+    private final boolean[] contained;
+
+    private int size = 0;
+
+    PlayedArms(int numberOfArms) {
+        arms = new int[numberOfArms];
+        contained = new boolean[numberOfArms];
+    }
+
+    void add(int arm){
+        if(!contained[arm])
+        {
+            contained[arm] = true;
+            arms[size++] = arm;
+        }
+    }
+
+    int size(){
+        return size;
+    }
+
+    int get(int i){
+        assert i < size;
+        return arms[i];
+    }
+
+    void clear(){
+        for(int i=0; i<size; i++)
+            contained[arms[i]] = false;
+        size = 0;
+    }
+}
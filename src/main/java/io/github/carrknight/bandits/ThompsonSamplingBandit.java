@@ -0,0 +1,55 @@
+package io.github.carrknight.bandits;
+
+import io.github.carrknight.heatmaps.BeliefState;
+import io.github.carrknight.heatmaps.regression.LocalFilterSpace;
+import io.github.carrknight.heatmaps.regression.OneDimensionalKalmanFilter;
+import io.github.carrknight.utils.RewardFunction;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.SplittableRandom;
+
+/**
+ * Thompson sampling: draw from the posterior of each option and play the best draw. Posteriors come from the filters of
+ * the LocalFilterSpace (any PosteriorFilter will do); the choosing is done by an IntThompsonSamplingBandit
+ */
+public class ThompsonSamplingBandit<O,R,C> extends AbstractBanditAlgorithm<O,R,C> {
+
+
+    /**
+     * keeps a Kalman filter (no drift) for each option, so that every option starts with a normal prior
+     * @param rewardExtractor transformer from R to double; rewards are assumed to have unit variance
+     * @param optionsAvailable what kind of options are available
+     * @param priorMean prior mean reward of each option
+     * @param priorVariance prior variance of the mean reward of each option
+     * @param randomizer randomizer
+     */
+    public ThompsonSamplingBandit(
+            @NotNull RewardFunction<O, R, C> rewardExtractor,
+            @NotNull O[] optionsAvailable,
+            double priorMean,
+            double priorVariance,
+            SplittableRandom randomizer) {
+        this(optionsAvailable,
+             new LocalFilterSpace<>(
+                     optionsAvailable,
+                     () -> new OneDimensionalKalmanFilter(1, 1, priorVariance, priorMean, 0),
+                     rewardExtractor,
+                     null
+             ),
+             randomizer);
+    }
+
+
+    /**
+     * Thompson sampling over any belief; only a LocalFilterSpace of PosteriorFilters gives it something to draw from,
+     * everything else makes it greedy
+     */
+    public ThompsonSamplingBandit(
+            @NotNull O[] optionsAvailable,
+            BeliefState<O, R, C> banditState,
+            SplittableRandom randomizer) {
+        super(optionsAvailable,
+              banditState,
+              arms -> new IntThompsonSamplingBandit(arms, randomizer));
+    }
+}
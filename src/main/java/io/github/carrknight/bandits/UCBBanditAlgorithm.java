@@ -1,29 +1,20 @@
 package io.github.carrknight.bandits;
 
-import com.google.common.base.Preconditions;
-import com.google.common.collect.BiMap;
-import io.github.carrknight.Observation;
-import io.github.carrknight.heatmaps.BeliefState;
 import io.github.carrknight.heatmaps.regression.LocalFilterSpace;
-import io.github.carrknight.utils.DiscreteChoosersUtilities;
 import io.github.carrknight.utils.RewardFunction;
 import io.github.carrknight.utils.averager.IterativeAverageFilter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
 import java.util.SplittableRandom;
 
 /**
- * the UCB1 algorithm; it requires bounded rewards between 1 and 0
+ * the UCB1 algorithm; it requires bounded rewards between 1 and 0. The choosing is done by an IntUCBBandit
  * @param <O>
  * @param <R>
  */
 public class UCBBanditAlgorithm<O,R,C> extends AbstractBanditAlgorithm<O, R,C> {
 
-    private double sigma;
-
-
     public UCBBanditAlgorithm(
             @NotNull RewardFunction<O,R,C > rewardExtractor,
             @NotNull O[] optionsAvailable,
@@ -34,7 +25,7 @@ public class UCBBanditAlgorithm<O,R,C> extends AbstractBanditAlgorithm<O, R,C> {
         super(
                 //scale all rewards to 0 - 1
 
-                optionsAvailable, randomizer, new LocalFilterSpace<>(
+                optionsAvailable, new LocalFilterSpace<>(
                         optionsAvailable,
                         //by default use the standard average filter
                         () -> new IterativeAverageFilter(initialExpectedReward),
@@ -52,95 +43,52 @@ public class UCBBanditAlgorithm<O,R,C> extends AbstractBanditAlgorithm<O, R,C> {
                             }
                         },
                         null
-                ));
-        this.sigma = sigma;
+                ),
+                arms -> new IntUCBBandit(arms, randomizer, minimumRewardExpected, maximumRewardExpected, sigma));
     }
 
+
     /**
-     * this is basically the bound generated by the Chernoff-Hoeffding inequality. The best explanation for it
-     * is probably here: http://jeremykun.com/2013/10/28/optimism-in-the-face-of-uncertainty-the-ucb1-algorithm/
+     * Getter for property 'sigma'.
      *
-     * @return
+     * @return Value for property 'sigma'.
      */
-    private double upperConfidenceBound(double average,
-                                        int numberOfObservationsOnThisArm,
-                                        int totalNumberOfObservations) {
-        Preconditions.checkArgument(numberOfObservationsOnThisArm > 0);
-        Preconditions.checkArgument(numberOfObservationsOnThisArm <= totalNumberOfObservations);
-        return average + sigma *
-                Math.sqrt(2 * Math.log(totalNumberOfObservations) / numberOfObservationsOnThisArm);
+    public double getSigma() {
+        return ((IntUCBBandit) getDelegate()).getSigma();
     }
 
     /**
-     * chooses as UCB
+     * Setter for property 'sigma'.
      *
-     * @param state
-     * @param optionsAvailable
-     * @param lastObservation
-     * @param lastChoice
-     * @return
+     * @param sigma Value to set for property 'sigma'.
      */
-    @NotNull
-    @Override
-    protected O choose(
-            BeliefState<O, R, C> state, @NotNull BiMap<O, Integer> optionsAvailable,
-            @Nullable Observation<O, R, C> lastObservation, O lastChoice) {
-
-        int numberOfOptions = optionsAvailable.size();
-        //if there is an option without a single played game, play that first
-        if (numberOfOptions > getNumberOfObservations()) {
-            ArrayList<O> candidates = new ArrayList<>();
-            for (O option : optionsAvailable.keySet()) {
-
-                if (getNumberOfTimesPlayed(option) == 0)
-                    candidates.add(option);
-
-
-            }
-
-            assert candidates.size() >= 1;
-            return
-                            candidates.get(getRandomizer().nextInt(candidates.size()));
-
-        }
-        //everything has been played at least once, proceed with standard UCB1 exploitation
-        else {
-
-
-            C context = lastObservation == null ? null : lastObservation.getContext();
-            O bestChoice = DiscreteChoosersUtilities.getBestOption(
-                    optionsAvailable.keySet(),
-                    slotMachine -> upperConfidenceBound(
-                            state.predict(slotMachine,context),
-                            getNumberOfTimesPlayed(slotMachine),
-                            getNumberOfObservations()
-                    ),
-                    getRandomizer(),
-                    Double.NEGATIVE_INFINITY
-            ).getKey();
-            assert bestChoice != null;
-            return bestChoice;
-
-        }
-
+    public void setSigma(double sigma) {
+        ((IntUCBBandit) getDelegate()).setSigma(sigma);
     }
 
-
     /**
-     * Getter for property 'sigma'.
+     * Getter for property 'lazyEvaluation'.
      *
-     * @return Value for property 'sigma'.
+     * @return Value for property 'lazyEvaluation'.
      */
-    public double getSigma() {
-        return sigma;
+    public boolean isLazyEvaluation() {
+        return ((IntUCBBandit) getDelegate()).isLazyEvaluation();
     }
 
     /**
-     * Setter for property 'sigma'.
+     * Setter for property 'lazyEvaluation'. Safe as long as the bandit state has no similarity function
+     * and its filters only move when observed
      *
-     * @param sigma Value to set for property 'sigma'.
+     * @param lazyEvaluation Value to set for property 'lazyEvaluation'.
      */
-    public void setSigma(double sigma) {
-        this.sigma = sigma;
+    public void setLazyEvaluation(boolean lazyEvaluation) {
+        ((IntUCBBandit) getDelegate()).setLazyEvaluation(lazyEvaluation);
+    }
+
+    /**
+     * how many upper confidence bounds were computed in the last decision
+     */
+    public int getArmsEvaluatedLastStep() {
+        return ((IntUCBBandit) getDelegate()).getArmsEvaluatedLastStep();
     }
 }
@@ -0,0 +1,193 @@
+package io.github.carrknight.bandits.population;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.utils.DiscreteChoosersUtilities;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * many independent bandit agents sharing the same number of arms, stored as struct-of-arrays:
+ * agent a's memory of arm k lives at cell a*K+k of flat arrays rather than in its own filter objects.
+ * Memory is always an iterative average (what the default bandits use), so each cell is just a mean and a count.
+ * <br>
+ * Agents are independent but share one randomizer, so a population is reproducible only if stepped sequentially.
+ */
+public abstract class BanditPopulation {
+
+
+    /**
+     * pass this as last choice of an agent when there is nothing for it to learn from
+     */
+    public static final int NO_OBSERVATION = -1;
+
+    private final int numberOfAgents;
+
+    private final int numberOfArms;
+
+    /**
+     * average reward of each agent-arm cell (N*K)
+     */
+    private final double[] means;
+
+    /**
+     * times each agent has played each arm (N*K)
+     */
+    private final int[] timesPlayed;
+
+    /**
+     * total number of observations of each agent (N)
+     */
+    private final int[] numberOfObservations;
+
+    /**
+     * the randomizer to use
+     */
+    private final SplittableRandom randomizer;
+
+
+    public BanditPopulation(
+            int numberOfAgents, int numberOfArms,
+            double initialExpectedReward,
+            SplittableRandom randomizer) {
+        Preconditions.checkArgument(numberOfAgents>0, "Given no agents!");
+        Preconditions.checkArgument(numberOfArms>0, "Given no options!");
+        Preconditions.checkArgument(numberOfArms <= Integer.MAX_VALUE / numberOfAgents,
+                                    "%s agents with %s arms each do not fit in one array",
+                                    numberOfAgents, numberOfArms);
+        int cells = Math.multiplyExact(numberOfAgents, numberOfArms);
+        this.numberOfAgents = numberOfAgents;
+        this.numberOfArms = numberOfArms;
+        this.randomizer = randomizer;
+
+        means = new double[cells];
+        Arrays.fill(means, initialExpectedReward);
+        timesPlayed = new int[cells];
+        numberOfObservations = new int[numberOfAgents];
+    }
+
+
+    /**
+     * every agent learns from its last choice and picks a new one
+     * @param lastChoices the arm each agent played last (or NO_OBSERVATION)
+     * @param rewards the reward each agent got from playing it (non finite rewards are ignored)
+     * @param outChoices filled with the arm each agent plays next (can be the same array as lastChoices)
+     */
+    public void stepAll(int[] lastChoices, double[] rewards, int[] outChoices){
+        Preconditions.checkArgument(lastChoices.length == numberOfAgents);
+        Preconditions.checkArgument(rewards.length == numberOfAgents);
+
+        for(int agent=0; agent<numberOfAgents; agent++)
+        {
+            int arm = lastChoices[agent];
+            if(arm != NO_OBSERVATION && Double.isFinite(rewards[agent]))
+                observe(agent, arm, rewards[agent]);
+        }
+
+        chooseAll(outChoices);
+
+    }
+
+
+    /**
+     * every agent picks an arm given what it knows now (call this for the very first choices)
+     * @param outChoices filled with the arm each agent plays next
+     */
+    public void chooseAll(int[] outChoices){
+        Preconditions.checkArgument(outChoices.length == numberOfAgents);
+        for(int agent=0; agent<numberOfAgents; agent++)
+            outChoices[agent] = choose(agent, agent*numberOfArms);
+        endStep();
+    }
+
+
+    /**
+     * a single agent learns from a reward (useful to feed additional observations)
+     */
+    public void observe(int agent, int arm, double reward){
+        assert arm >=0 && arm < numberOfArms;
+        int cell = agent*numberOfArms+arm;
+        timesPlayed[cell]++;
+        numberOfObservations[agent]++;
+        means[cell] += (reward - means[cell]) / timesPlayed[cell];
+    }
+
+
+    /**
+     * to implement by subclasses; pick an arm for this agent
+     * @param agent the agent choosing
+     * @param offset the cell of its first arm (agent*K)
+     * @return the arm to play, between 0 and K-1
+     */
+    abstract protected int choose(int agent, int offset);
+
+    /**
+     * called once all agents have chosen; override for bookkeeping (say, temperature decay)
+     */
+    protected void endStep(){
+
+    }
+
+
+    /**
+     * returns the arm whose cell has the highest value, splitting draws uniformly at random.
+     * Non finite values are ignored.
+     * @param values any array holding one value per arm of this agent (means, upper bounds...)
+     * @param offset the cell of the agent's first arm
+     * @return best arm or -1 if nothing is finite
+     */
+    protected int getBestArm(double[] values, int offset){
+        return DiscreteChoosersUtilities.getBestIndex(values,
+                                                      offset,
+                                                      numberOfArms,
+                                                      randomizer,
+                                                      Double.NEGATIVE_INFINITY);
+    }
+
+
+    /**
+     * the current expected reward of this agent for this arm
+     */
+    public double predict(int agent, int arm){
+        return means[agent*numberOfArms+arm];
+    }
+
+    public int getNumberOfTimesPlayed(int agent, int arm){
+        return timesPlayed[agent*numberOfArms+arm];
+    }
+
+    public int getNumberOfObservations(int agent){
+        return numberOfObservations[agent];
+    }
+
+    /**
+     * the flat N*K array of means; this is the live array, not a copy
+     */
+    protected double[] getMeans() {
+        return means;
+    }
+
+    /**
+     * the flat N*K array of play counts; this is the live array, not a copy
+     */
+    protected int[] getTimesPlayed() {
+        return timesPlayed;
+    }
+
+    public int getNumberOfAgents() {
+        return numberOfAgents;
+    }
+
+    public int getNumberOfArms() {
+        return numberOfArms;
+    }
+
+    /**
+     * Getter for property 'randomizer'.
+     *
+     * @return Value for property 'randomizer'.
+     */
+    public SplittableRandom getRandomizer() {
+        return randomizer;
+    }
+}
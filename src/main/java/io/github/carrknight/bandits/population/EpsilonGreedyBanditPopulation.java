@@ -0,0 +1,61 @@
+package io.github.carrknight.bandits.population;
+
+import com.google.common.base.Preconditions;
+
+import java.util.SplittableRandom;
+
+/**
+ * a population of e-greedy agents: with probability epsilon each agent picks at random, otherwise it exploits
+ */
+public class EpsilonGreedyBanditPopulation extends BanditPopulation {
+
+
+    /**
+     * exploratory probability
+     */
+    private double epsilon;
+
+
+    public EpsilonGreedyBanditPopulation(
+            int numberOfAgents, int numberOfArms,
+            long randomSeed, double epsilon) {
+        this(numberOfAgents, numberOfArms, 0d, new SplittableRandom(randomSeed), epsilon);
+    }
+
+    public EpsilonGreedyBanditPopulation(
+            int numberOfAgents, int numberOfArms, double initialExpectedReward,
+            SplittableRandom randomizer, double epsilon) {
+        super(numberOfAgents, numberOfArms, initialExpectedReward, randomizer);
+        setEpsilon(epsilon);
+    }
+
+    @Override
+    protected int choose(int agent, int offset) {
+        //explore:
+        if(getRandomizer().nextDouble() < epsilon)
+            return getRandomizer().nextInt(getNumberOfArms());
+
+        int bestArm = getBestArm(getMeans(), offset);
+        return bestArm >= 0 ? bestArm : getRandomizer().nextInt(getNumberOfArms());
+    }
+
+    /**
+     * Getter for property 'epsilon'.
+     *
+     * @return Value for property 'epsilon'.
+     */
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * Setter for property 'epsilon'.
+     *
+     * @param epsilon Value to set for property 'epsilon'.
+     */
+    public void setEpsilon(double epsilon) {
+        Preconditions.checkArgument(epsilon>=0, "espilon cannot be lower than 0");
+        Preconditions.checkArgument(epsilon<=1, "epsilon cannot be higher than 1");
+        this.epsilon = epsilon;
+    }
+}
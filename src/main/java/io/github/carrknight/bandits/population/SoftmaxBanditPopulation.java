@@ -0,0 +1,99 @@
+package io.github.carrknight.bandits.population;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.utils.BoltzmannSampler;
+
+import java.util.SplittableRandom;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * a population of softmax agents sharing the same temperature schedule
+ */
+public class SoftmaxBanditPopulation extends BanditPopulation {
+
+
+    /**
+     * the higher the more it will randomize rather than going for the top
+     */
+    private double temperature;
+
+    /**
+     * called once per step (after all agents have chosen) to update the temperature
+     */
+    private DoubleUnaryOperator temperatureUpdater;
+
+    /**
+     * reused by each agent to draw from its preferences
+     */
+    private final BoltzmannSampler sampler;
+
+
+    public SoftmaxBanditPopulation(
+            int numberOfAgents, int numberOfArms, long randomSeed,
+            double initialExpectedReward) {
+        this(numberOfAgents, numberOfArms, initialExpectedReward, new SplittableRandom(randomSeed),
+             1, temperature -> temperature);
+    }
+
+    public SoftmaxBanditPopulation(
+            int numberOfAgents, int numberOfArms, double initialExpectedReward,
+            SplittableRandom randomizer,
+            double temperature,
+            DoubleUnaryOperator temperatureUpdater) {
+        super(numberOfAgents, numberOfArms, initialExpectedReward, randomizer);
+        setTemperature(temperature);
+        this.temperatureUpdater = temperatureUpdater;
+        this.sampler = new BoltzmannSampler(numberOfArms);
+    }
+
+    @Override
+    protected int choose(int agent, int offset) {
+        int choice = sampler.sample(getMeans(), offset, temperature, getRandomizer().nextDouble());
+        return choice >= 0 ? choice : getRandomizer().nextInt(getNumberOfArms());
+    }
+
+    /**
+     * temperature changes once per step, for everybody
+     */
+    @Override
+    protected void endStep() {
+        setTemperature(temperatureUpdater.applyAsDouble(temperature));
+    }
+
+    /**
+     * Getter for property 'temperature'.
+     *
+     * @return Value for property 'temperature'.
+     */
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * Setter for property 'temperature'.
+     *
+     * @param temperature Value to set for property 'temperature'.
+     */
+    public void setTemperature(double temperature) {
+        Preconditions.checkArgument(temperature>=1, "temperature shouldn't go below 1");
+        this.temperature = temperature;
+    }
+
+    /**
+     * Getter for property 'temperatureUpdater'.
+     *
+     * @return Value for property 'temperatureUpdater'.
+     */
+    public DoubleUnaryOperator getTemperatureUpdater() {
+        return temperatureUpdater;
+    }
+
+    /**
+     * Setter for property 'temperatureUpdater'.
+     *
+     * @param temperatureUpdater Value to set for property 'temperatureUpdater'.
+     */
+    public void setTemperatureUpdater(DoubleUnaryOperator temperatureUpdater) {
+        this.temperatureUpdater = temperatureUpdater;
+    }
+}
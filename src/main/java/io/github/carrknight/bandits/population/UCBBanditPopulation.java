@@ -0,0 +1,105 @@
+package io.github.carrknight.bandits.population;
+
+import com.google.common.base.Preconditions;
+
+import java.util.SplittableRandom;
+
+/**
+ * a population of UCB1 agents; rewards are rescaled between 0 and 1 before being averaged
+ */
+public class UCBBanditPopulation extends BanditPopulation {
+
+
+    private double sigma;
+
+    private final double minimumRewardExpected;
+
+    private final double maximumRewardExpected;
+
+    /**
+     * reused by each agent to store its upper confidence bounds
+     */
+    private final double[] bounds;
+
+
+    public UCBBanditPopulation(
+            int numberOfAgents, int numberOfArms, long randomSeed,
+            double minimumRewardExpected, double maximumRewardExpected) {
+        this(numberOfAgents, numberOfArms, new SplittableRandom(randomSeed),
+             minimumRewardExpected, maximumRewardExpected, 1d);
+    }
+
+    public UCBBanditPopulation(
+            int numberOfAgents, int numberOfArms,
+            SplittableRandom randomizer,
+            double minimumRewardExpected, double maximumRewardExpected,
+            double sigma) {
+        super(numberOfAgents, numberOfArms, 0d, randomizer);
+        Preconditions.checkArgument(maximumRewardExpected > minimumRewardExpected,
+                                    "maximum reward must be above minimum reward");
+        this.minimumRewardExpected = minimumRewardExpected;
+        this.maximumRewardExpected = maximumRewardExpected;
+        this.sigma = sigma;
+        this.bounds = new double[numberOfArms];
+    }
+
+    /**
+     * rescales the reward between 0 and 1 before learning from it
+     */
+    @Override
+    public void observe(int agent, int arm, double reward) {
+        reward = Math.min(Math.max(reward, minimumRewardExpected), maximumRewardExpected);
+        super.observe(agent, arm,
+                      (reward - minimumRewardExpected) / (maximumRewardExpected - minimumRewardExpected));
+    }
+
+    /**
+     * plays each arm at least once (at random), then chooses the arm with the highest upper confidence bound
+     */
+    @Override
+    protected int choose(int agent, int offset) {
+        int numberOfArms = getNumberOfArms();
+        int[] timesPlayed = getTimesPlayed();
+        double[] means = getMeans();
+        SplittableRandom randomizer = getRandomizer();
+
+        //if there is an option without a single played game, play that first
+        int best = -1;
+        int draws = 0;
+        for(int arm=0; arm<numberOfArms; arm++)
+            if(timesPlayed[offset+arm]==0)
+            {
+                draws++;
+                if(randomizer.nextInt(draws)==0)
+                    best = arm;
+            }
+        if(best >= 0)
+            return best;
+
+        //standard UCB1: log computed once per agent
+        double logOfObservations = Math.log(getNumberOfObservations(agent));
+        for(int arm=0; arm<numberOfArms; arm++)
+            bounds[arm] = means[offset+arm] +
+                    sigma * Math.sqrt(2 * logOfObservations / timesPlayed[offset+arm]);
+        best = getBestArm(bounds, 0);
+        return best >= 0 ? best : randomizer.nextInt(numberOfArms);
+    }
+
+    /**
+     * Getter for property 'sigma'.
+     *
+     * @return Value for property 'sigma'.
+     */
+    public double getSigma() {
+        return sigma;
+    }
+
+    /**
+     * Setter for property 'sigma'.
+     *
+     * @param sigma Value to set for property 'sigma'.
+     */
+    public void setSigma(double sigma) {
+        this.sigma = sigma;
+    }
+}
@@ -0,0 +1,19 @@
+package io.github.carrknight.heatmaps;
+
+/**
+ * the primitive twin of the BeliefState: options are just indices 0,1,...,n-1 and rewards are already doubles.
+ * This is what the int bandits read from when choosing, so that no boxing or hashing happens in the inner loops.
+ */
+public interface IndexedBeliefState extends IndexedBeliefView {
+
+
+    /**
+     * learn from a reward observed at a given arm
+     * @param arm the index of the option played
+     * @param reward the reward observed
+     * @param weight the strength of the observation (1 for standard observations)
+     */
+    public void observe(int arm, double reward, double weight);
+
+
+}
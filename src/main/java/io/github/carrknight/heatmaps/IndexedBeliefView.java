@@ -0,0 +1,63 @@
+package io.github.carrknight.heatmaps;
+
+import io.github.carrknight.utils.DiscreteChoosersUtilities;
+
+import java.util.SplittableRandom;
+
+/**
+ * the read-only side of an IndexedBeliefState: options are just indices 0,1,...,n-1 and predictions are doubles.
+ * This is all the int bandits need to choose; views that can't learn by index (like the adapter over a generic
+ * BeliefState) implement only this, and are fed by whoever owns the belief underneath
+ */
+public interface IndexedBeliefView {
+
+
+    /**
+     * ask the beliefState to predict the value of an arm
+     * @param arm the index of the option we want to predict the value of
+     * @return the numerical value we predict
+     */
+    public double predict(int arm);
+
+
+    /**
+     * @return the number of arms this belief is keeping track of
+     */
+    public int getNumberOfArms();
+
+
+    /**
+     * the arm with the highest prediction, ties split uniformly at random. By default this scans all arms;
+     * belief states that keep an index of their predictions should answer this faster
+     * @param randomizer used to break ties
+     * @return the best arm or -1 if no prediction is finite
+     */
+    default int getBestArm(SplittableRandom randomizer){
+        return DiscreteChoosersUtilities.getBestIndex(getNumberOfArms(),
+                                                      this::predict,
+                                                      randomizer,
+                                                      Double.NEGATIVE_INFINITY);
+    }
+
+
+    /**
+     * @return true if getBestArm is answered from an index rather than by scanning all arms
+     */
+    default boolean isBestArmIndexed(){
+        return false;
+    }
+
+
+    /**
+     * draw a plausible value for an arm from whatever posterior the belief keeps; by default beliefs are
+     * certain of their predictions and this is just predict(arm)
+     * @param arm the index of the option
+     * @param randomizer randomizer
+     * @return a random draw of the arm value
+     */
+    default double sample(int arm, SplittableRandom randomizer){
+        return predict(arm);
+    }
+
+
+}
@@ -0,0 +1,86 @@
+package io.github.carrknight.heatmaps.regression;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.utils.RandomVariates;
+
+import java.util.SplittableRandom;
+
+/**
+ * tracks the probability of success of a Bernoulli reward with a Beta posterior.
+ * Evidence is expected between 0 (failure) and 1 (success); fractional evidence and weights are accepted and simply
+ * split between the two counts
+ */
+public class BetaBernoulliFilter implements PosteriorFilter {
+
+
+    /**
+     * prior successes + observed successes
+     */
+    private double alpha;
+
+    /**
+     * prior failures + observed failures
+     */
+    private double beta;
+
+
+    /**
+     * uniform prior
+     */
+    public BetaBernoulliFilter() {
+        this(1, 1);
+    }
+
+    public BetaBernoulliFilter(double alpha, double beta) {
+        Preconditions.checkArgument(alpha > 0, "alpha must be positive");
+        Preconditions.checkArgument(beta > 0, "beta must be positive");
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    /**
+     * @return posterior mean of the probability of success
+     */
+    @Override
+    public double predict() {
+        return alpha / (alpha + beta);
+    }
+
+    /**
+     * learn from observation
+     *
+     * @param evidence 1 for success, 0 for failure (clamped between the two)
+     * @param weight   the strength of the observation we have seen
+     */
+    @Override
+    public void observe(double evidence, double weight) {
+        if(!Double.isFinite(evidence) || !Double.isFinite(weight) || weight <= 0)
+            return;
+        evidence = Math.min(Math.max(evidence, 0), 1);
+        alpha += weight * evidence;
+        beta += weight * (1 - evidence);
+    }
+
+    @Override
+    public double sample(SplittableRandom randomizer) {
+        return RandomVariates.nextBeta(alpha, beta, randomizer);
+    }
+
+    /**
+     * Getter for property 'alpha'.
+     *
+     * @return Value for property 'alpha'.
+     */
+    public double getAlpha() {
+        return alpha;
+    }
+
+    /**
+     * Getter for property 'beta'.
+     *
+     * @return Value for property 'beta'.
+     */
+    public double getBeta() {
+        return beta;
+    }
+}
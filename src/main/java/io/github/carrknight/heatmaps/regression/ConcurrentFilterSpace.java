@@ -0,0 +1,252 @@
+package io.github.carrknight.heatmaps.regression;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.Observation;
+import io.github.carrknight.heatmaps.regression.distance.Similarity;
+import io.github.carrknight.utils.RewardFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * a FilterSpace that many choosers (on many threads) can share: think of the vessels of one company pooling
+ * what they know. Unlike LocalFilterSpace it keeps no index of the best option (getBestArm scans) and has no
+ * precomputed neighborhoods.
+ * Filters are guarded by a fixed set of StampedLocks, arm i by stripe i % stripes, so that writers
+ * to different arms rarely meet.
+ * Predictions start as optimistic reads, which don't block writers. If a write to the same stripe happened while
+ * reading, the prediction is read again under the read lock, and while that is held writers to the stripe wait.
+ * Filters themselves don't need to be thread safe, but their predict() must only read fields; the exception are
+ * drifting filters following a DriftClock (they catch up when read), which are read under the write lock instead.
+ * The reward function and the similarity are called outside of any lock and must be thread safe.
+ */
+public class ConcurrentFilterSpace<O,R,C> implements FilterSpace<O,R,C>
+{
+
+
+    @NotNull
+    private final O[] options;
+
+    /**
+     * built once and never modified, so it is safe to read from any thread
+     */
+    @NotNull
+    private final Map<O,Integer> optionIndex;
+
+    @NotNull
+    private final OneDimensionalFilter[] filters;
+
+    @NotNull
+    private final StampedLock[] stripes;
+
+    private final int stripeMask;
+
+    private final RewardFunction<O,R,C> utility;
+
+    @Nullable
+    private volatile Similarity<O,C> optionSimilarity;
+
+
+    /**
+     * uses a number of stripes proportional to the number of cores
+     */
+    public ConcurrentFilterSpace(
+            O[] optionsAvailable,
+            Supplier<? extends OneDimensionalFilter> filterMaker,
+            RewardFunction<O, R, C> utility,
+            @Nullable Similarity<O,C> optionSimilarity)
+    {
+        this(optionsAvailable, filterMaker, utility, optionSimilarity,
+             4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param numberOfStripes how many locks to use (rounded up to a power of 2, never more than the options)
+     */
+    public ConcurrentFilterSpace(
+            O[] optionsAvailable,
+            Supplier<? extends OneDimensionalFilter> filterMaker,
+            RewardFunction<O, R, C> utility,
+            @Nullable Similarity<O,C> optionSimilarity,
+            int numberOfStripes)
+    {
+        Preconditions.checkArgument(optionsAvailable.length>0, "Given no options!");
+        Preconditions.checkArgument(numberOfStripes>0, "need at least a lock");
+        this.utility = utility;
+        this.optionSimilarity = optionSimilarity;
+        this.options = optionsAvailable.clone();
+        this.filters = new OneDimensionalFilter[options.length];
+        Map<O,Integer> index = new HashMap<>(options.length * 2);
+        for(int i=0; i<options.length; i++)
+        {
+            index.put(options[i], i);
+            filters[i] = filterMaker.get();
+        }
+        Preconditions.checkArgument(index.size()==options.length,
+                                    "options must all be different");
+        this.optionIndex = index;
+
+        int stripeCount = 1;
+        while(stripeCount < Math.min(numberOfStripes, options.length))
+            stripeCount *= 2;
+        this.stripes = new StampedLock[stripeCount];
+        for(int i=0; i<stripeCount; i++)
+            stripes[i] = new StampedLock();
+        this.stripeMask = stripeCount - 1;
+    }
+
+
+    /**
+     * add a new observation to the regression and learn from it! Only the stripe of the option observed gets
+     * locked (or, with a similarity function, one stripe at a time)
+     *
+     * @param observation
+     */
+    @Override
+    public void observe(Observation<O, R, C> observation) {
+
+        double reward = utility.extractUtility(observation.getChoiceMade(),
+                                               observation.getResultObserved(),
+                                               observation.getContext());
+
+        Similarity<O,C> similarity = optionSimilarity;
+        if(similarity == null)
+            observe(optionIndex.get(observation.getChoiceMade()), reward, 1d);
+        else
+            for(int i=0; i<options.length; i++)
+                observe(i,
+                        reward,
+                        similarity.similarity(options[i],
+                                              observation.getChoiceMade(),
+                                              observation.getContext()));
+
+    }
+
+
+    /**
+     * feed the reward to the filter of this arm, holding its stripe lock
+     */
+    @Override
+    public void observe(int arm, double reward, double weight) {
+        StampedLock lock = stripes[arm & stripeMask];
+        long stamp = lock.writeLock();
+        try {
+            filters[arm].observe(reward, weight);
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+
+    /**
+     * optimistic read of the filter prediction; falls back to a read lock only if a writer got in the way.
+     * Filters following a DriftClock catch up with it when read, which is a write: those are read under the write lock
+     */
+    @Override
+    public double predict(int arm) {
+        StampedLock lock = stripes[arm & stripeMask];
+        OneDimensionalFilter filter = filters[arm];
+        if(filter instanceof DriftingFilter && ((DriftingFilter) filter).getClock() != null)
+        {
+            long stamp = lock.writeLock();
+            try {
+                return filters[arm].predict();
+            }
+            finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        long stamp = lock.tryOptimisticRead();
+        double prediction = filters[arm].predict();
+        if(!lock.validate(stamp))
+        {
+            stamp = lock.readLock();
+            try {
+                prediction = filters[arm].predict();
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return prediction;
+    }
+
+    /**
+     * ask the regression to predict the value (or whatever is being modelled) at these coordinates
+     *
+     * @param whereToPredict    the option we want to predict the value of
+     * @param predictionContext IGNORED
+     * @return the numerical value we predict
+     */
+    @Override
+    public double predict(O whereToPredict, C predictionContext) {
+        return predict(optionIndex.get(whereToPredict));
+    }
+
+    @Override
+    public int getNumberOfArms() {
+        return options.length;
+    }
+
+
+    /**
+     * @param arm the index of a filter
+     * @return the option it refers to
+     */
+    @Override
+    public O getOption(int arm){
+        return options[arm];
+    }
+
+
+    /**
+     * replaces every filter, one stripe at a time
+     */
+    @Override
+    public void resetFilter(
+            Supplier<? extends OneDimensionalFilter> generator
+    ){
+        for(int stripe=0; stripe<stripes.length; stripe++)
+        {
+            long stamp = stripes[stripe].writeLock();
+            try {
+                for(int arm=stripe; arm<filters.length; arm+=stripes.length)
+                    filters[arm] = generator.get();
+            }
+            finally {
+                stripes[stripe].unlockWrite(stamp);
+            }
+        }
+    }
+
+
+    /**
+     * Getter for property 'optionSimilarity'.
+     *
+     * @return Value for property 'optionSimilarity'.
+     */
+    @Override
+    @Nullable
+    public Similarity<O, C> getOptionSimilarity() {
+        return optionSimilarity;
+    }
+
+    /**
+     * Setter for property 'optionSimilarity'.
+     *
+     * @param optionSimilarity Value to set for property 'optionSimilarity'.
+     */
+    @Override
+    public void setOptionSimilarity(@Nullable Similarity<O, C> optionSimilarity) {
+        this.optionSimilarity = optionSimilarity;
+    }
+
+    public int getNumberOfStripes(){
+        return stripes.length;
+    }
+}
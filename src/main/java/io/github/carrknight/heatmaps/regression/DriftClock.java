@@ -0,0 +1,36 @@
+package io.github.carrknight.heatmaps.regression;
+
+/**
+ * a tick counter shared by many drifting filters. Advancing it costs O(1): each filter notices how many ticks it missed
+ * the next time it is read or observed and applies them all at once, in closed form
+ */
+public class DriftClock {
+
+
+    private long time = 0;
+
+
+    /**
+     * one more time step
+     */
+    public void tick(){
+        time++;
+    }
+
+    /**
+     * @param steps how many time steps pass
+     */
+    public void tick(long steps){
+        assert steps >= 0;
+        time += steps;
+    }
+
+    /**
+     * Getter for property 'time'.
+     *
+     * @return Value for property 'time'.
+     */
+    public long getTime() {
+        return time;
+    }
+}
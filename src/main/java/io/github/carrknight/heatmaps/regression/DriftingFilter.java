@@ -0,0 +1,50 @@
+package io.github.carrknight.heatmaps.regression;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * a filter whose state decays as time passes even when it observes nothing (a Kalman filter's uncertainty grows,
+ * a GoodBadFilter's belief moves back to the middle).
+ * Time can be elapsed eagerly, with drift(steps), or lazily by attaching a DriftClock: the filter then remembers the
+ * last tick it caught up with and drifts the missing steps (in O(1)) whenever it is next read or observed
+ */
+public interface DriftingFilter extends OneDimensionalFilter {
+
+
+    /**
+     * elapse this many time steps at once; the same as calling drift() that many times (up to rounding)
+     * @param steps number of time steps, non negative
+     */
+    void drift(long steps);
+
+
+    /**
+     * from now on, drift lazily following this clock (null to stop following any clock).
+     * Whatever ticks the clock already counts are not applied
+     * @param clock the clock
+     */
+    void setClock(@Nullable DriftClock clock);
+
+
+    /**
+     * @return the clock this filter follows, or null
+     */
+    @Nullable
+    DriftClock getClock();
+
+
+    /**
+     * each time step moves the prediction to center + factor * (prediction - center), whatever the filter observed.
+     * Filters sharing center and a positive factor keep their order as time passes
+     * @return the point predictions drift towards (or away from)
+     */
+    double getDriftCenter();
+
+
+    /**
+     * @return how much a time step multiplies the distance between prediction and drift center
+     */
+    double getDriftFactor();
+
+
+}
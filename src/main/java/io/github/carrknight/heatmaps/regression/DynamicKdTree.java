@@ -0,0 +1,510 @@
+package io.github.carrknight.heatmaps.regression;
+
+import ags.utils.dataStructures.trees.thirdGenKD.DistanceFunction;
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * a k-d tree over a fixed pool of slots, each holding a point, a value and the time it was observed.
+ * Unlike the rednaxela tree points can be removed (or overwritten), so that memory stays bounded by the number of slots.
+ * <p>
+ * Points live in buckets at the leaves (linked lists over the slots, so adding and removing are O(1) once the leaf is
+ * found); a bucket that grows too large is split at its median. Removing a point leaves the bounding boxes a bit
+ * larger than they need be, which is harmless, and points coming in a different pattern than the one the tree was
+ * built for can make it lopsided: so once as many points have come in as there were at the last rebuild the whole
+ * tree is rebuilt balanced. That costs O(log n) amortized per point and keeps queries at O(log n).
+ * <p>
+ * Queries don't write to the tree (their scratch is in the Neighbors passed in), so any number of threads can query
+ * at once as long as nobody is changing it
+ */
+class DynamicKdTree {
+
+
+    private static final int NONE = -1;
+
+    /**
+     * a leaf is split when it holds more than twice this
+     */
+    private static final int BUCKET = 8;
+
+    /**
+     * never rebuild more often than every this many insertions
+     */
+    private static final int MINIMUM_REBUILD = 64;
+
+    private final int dimensions;
+
+    /**
+     * per slot: the point, its value, when it was observed, and its leaf (NONE if the slot is empty)
+     */
+    private double[][] points;
+
+    private double[] values;
+
+    private long[] times;
+
+    private int[] leafOfSlot;
+
+    private int[] nextInLeaf;
+
+    private int[] previousInLeaf;
+
+    private int size = 0;
+
+    /**
+     * insertions since the last rebuild, and how many points there were then
+     */
+    private int insertedSinceRebuild = 0;
+
+    private int sizeAtRebuild = 0;
+
+    /**
+     * nodes: children (NONE at leaves), split, bounding box and, for leaves, the bucket
+     */
+    private int[] nodeLeft = new int[0];
+
+    private int[] nodeRight = new int[0];
+
+    private int[] nodeSplitDimension = new int[0];
+
+    private double[] nodeSplitValue = new double[0];
+
+    private double[][] nodeMinimum = new double[0][];
+
+    private double[][] nodeMaximum = new double[0][];
+
+    private int[] leafHead = new int[0];
+
+    private int[] leafCount = new int[0];
+
+    /**
+     * a leaf is split when its count goes above this; leaves that can't be split (all points equal) double it
+     */
+    private int[] leafLimit = new int[0];
+
+    private int numberOfNodes = 0;
+
+    /**
+     * build scratch: slots being split, and their coordinate along the splitting dimension
+     */
+    private int[] order = new int[0];
+
+    private double[] keys = new double[0];
+
+
+
+    DynamicKdTree(int dimensions, int slots) {
+        Preconditions.checkArgument(dimensions > 0);
+        this.dimensions = dimensions;
+        this.points = new double[0][];
+        this.values = new double[0];
+        this.times = new long[0];
+        this.leafOfSlot = new int[0];
+        this.nextInLeaf = new int[0];
+        this.previousInLeaf = new int[0];
+        ensureSlots(slots);
+    }
+
+
+    /**
+     * make room for at least this many slots
+     */
+    void ensureSlots(int slots){
+        if(slots <= points.length)
+            return;
+        int old = points.length;
+        points = Arrays.copyOf(points, slots);
+        for(int slot = old; slot < slots; slot++)
+            points[slot] = new double[dimensions];
+        values = Arrays.copyOf(values, slots);
+        times = Arrays.copyOf(times, slots);
+        leafOfSlot = Arrays.copyOf(leafOfSlot, slots);
+        Arrays.fill(leafOfSlot, old, slots, NONE);
+        nextInLeaf = Arrays.copyOf(nextInLeaf, slots);
+        previousInLeaf = Arrays.copyOf(previousInLeaf, slots);
+        order = new int[slots];
+        keys = new double[slots];
+    }
+
+
+    /**
+     * put a point in a slot, replacing whatever was there
+     */
+    void set(int slot, double[] x, double y, long time){
+        remove(slot);
+        double[] point = points[slot];
+        System.arraycopy(x, 0, point, 0, dimensions);
+        values[slot] = y;
+        times[slot] = time;
+        size++;
+
+        if(numberOfNodes == 0)
+        {
+            int root = addNode();
+            Arrays.fill(nodeMinimum[root], Double.POSITIVE_INFINITY);
+            Arrays.fill(nodeMaximum[root], Double.NEGATIVE_INFINITY);
+        }
+        //down to the leaf, widening boxes along the way
+        int node = 0;
+        while(true)
+        {
+            double[] minimum = nodeMinimum[node];
+            double[] maximum = nodeMaximum[node];
+            for(int d = 0; d < dimensions; d++) {
+                if(point[d] < minimum[d])
+                    minimum[d] = point[d];
+                if(point[d] > maximum[d])
+                    maximum[d] = point[d];
+            }
+            if(nodeLeft[node] == NONE)
+                break;
+            node = point[nodeSplitDimension[node]] < nodeSplitValue[node] ? nodeLeft[node] : nodeRight[node];
+        }
+        link(slot, node);
+        if(leafCount[node] > leafLimit[node])
+            split(node);
+
+        insertedSinceRebuild++;
+        if(insertedSinceRebuild > Math.max(MINIMUM_REBUILD, sizeAtRebuild))
+            rebuild();
+    }
+
+
+    /**
+     * empty a slot (no-op if it was empty)
+     */
+    void remove(int slot){
+        int leaf = leafOfSlot[slot];
+        if(leaf == NONE)
+            return;
+        int next = nextInLeaf[slot];
+        int previous = previousInLeaf[slot];
+        if(previous == NONE)
+            leafHead[leaf] = next;
+        else
+            nextInLeaf[previous] = next;
+        if(next != NONE)
+            previousInLeaf[next] = previous;
+        leafCount[leaf]--;
+        leafOfSlot[slot] = NONE;
+        size--;
+    }
+
+
+    private void link(int slot, int leaf){
+        int head = leafHead[leaf];
+        nextInLeaf[slot] = head;
+        previousInLeaf[slot] = NONE;
+        if(head != NONE)
+            previousInLeaf[head] = slot;
+        leafHead[leaf] = slot;
+        leafCount[leaf]++;
+        leafOfSlot[slot] = leaf;
+    }
+
+
+    /**
+     * index every point present from scratch, balanced
+     */
+    void rebuild(){
+        int gathered = 0;
+        for(int slot = 0; slot < points.length; slot++)
+            if(leafOfSlot[slot] != NONE)
+                order[gathered++] = slot;
+        numberOfNodes = 0;
+        insertedSinceRebuild = 0;
+        sizeAtRebuild = gathered;
+        if(gathered > 0)
+            build(addNode(), 0, gathered);
+    }
+
+
+    /**
+     * turn a crowded leaf into a subtree
+     */
+    private void split(int leaf){
+        int gathered = 0;
+        for(int slot = leafHead[leaf]; slot != NONE; slot = nextInLeaf[slot])
+            order[gathered++] = slot;
+        int limit = leafLimit[leaf];
+        build(leaf, 0, gathered);
+        //still a leaf: all the points are the same, don't try again until it has doubled
+        if(nodeLeft[leaf] == NONE)
+            leafLimit[leaf] = limit * 2;
+    }
+
+
+    /**
+     * make node the root of a balanced subtree over the slots in order[from,to)
+     */
+    private void build(int node, int from, int to){
+        nodeLeft[node] = NONE;
+        nodeRight[node] = NONE;
+        leafHead[node] = NONE;
+        leafCount[node] = 0;
+        double[] minimum = nodeMinimum[node];
+        double[] maximum = nodeMaximum[node];
+        Arrays.fill(minimum, Double.POSITIVE_INFINITY);
+        Arrays.fill(maximum, Double.NEGATIVE_INFINITY);
+        for(int i = from; i < to; i++)
+        {
+            double[] point = points[order[i]];
+            for(int d = 0; d < dimensions; d++) {
+                minimum[d] = Math.min(minimum[d], point[d]);
+                maximum[d] = Math.max(maximum[d], point[d]);
+            }
+        }
+
+        //split the widest dimension at its median (unless it's a bucket, or all the same point)
+        int widest = 0;
+        for(int d = 1; d < dimensions; d++)
+            if(maximum[d] - minimum[d] > maximum[widest] - minimum[widest])
+                widest = d;
+        if(to - from <= BUCKET || maximum[widest] == minimum[widest])
+        {
+            for(int i = from; i < to; i++)
+                link(order[i], node);
+            return;
+        }
+        for(int i = from; i < to; i++)
+            keys[i] = points[order[i]][widest];
+        select(from, to - 1, (from + to) >>> 1);
+        double split = keys[(from + to) >>> 1];
+        //strictly below the split goes left, like points inserted later will
+        int middle = partition(from, to, split);
+        if(middle == from)
+        {
+            //the median is also the minimum: split just above it
+            split = maximum[widest];
+            for(int i = from; i < to; i++)
+                if(keys[i] > minimum[widest] && keys[i] < split)
+                    split = keys[i];
+            middle = partition(from, to, split);
+        }
+        nodeSplitDimension[node] = widest;
+        nodeSplitValue[node] = split;
+        int left = addNode();
+        int right = addNode();
+        nodeLeft[node] = left;
+        nodeRight[node] = right;
+        build(left, from, middle);
+        build(right, middle, to);
+    }
+
+
+    /**
+     * move keys below the pivot before the others (order along with them)
+     * @return where the others start
+     */
+    private int partition(int from, int to, double pivot){
+        int store = from;
+        for(int i = from; i < to; i++)
+            if(keys[i] < pivot)
+                swap(i, store++);
+        return store;
+    }
+
+
+    /**
+     * quickselect: rearrange keys[low..high] (and order along with them) so that the k-th is where it would be sorted
+     */
+    private void select(int low, int high, int k){
+        while(high > low)
+        {
+            double pivot = keys[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while(i <= j)
+            {
+                while(keys[i] < pivot)
+                    i++;
+                while(keys[j] > pivot)
+                    j--;
+                if(i <= j)
+                    swap(i++, j--);
+            }
+            if(k <= j)
+                high = j;
+            else if(k >= i)
+                low = i;
+            else
+                return;
+        }
+    }
+
+    private void swap(int i, int j){
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        int slot = order[i];
+        order[i] = order[j];
+        order[j] = slot;
+    }
+
+
+    private int addNode(){
+        int node = numberOfNodes++;
+        if(node == nodeLeft.length)
+        {
+            int length = Math.max(16, nodeLeft.length * 2);
+            nodeLeft = Arrays.copyOf(nodeLeft, length);
+            nodeRight = Arrays.copyOf(nodeRight, length);
+            nodeSplitDimension = Arrays.copyOf(nodeSplitDimension, length);
+            nodeSplitValue = Arrays.copyOf(nodeSplitValue, length);
+            leafHead = Arrays.copyOf(leafHead, length);
+            leafCount = Arrays.copyOf(leafCount, length);
+            leafLimit = Arrays.copyOf(leafLimit, length);
+            nodeMinimum = Arrays.copyOf(nodeMinimum, length);
+            nodeMaximum = Arrays.copyOf(nodeMaximum, length);
+            for(int i = node; i < length; i++) {
+                nodeMinimum[i] = new double[dimensions];
+                nodeMaximum[i] = new double[dimensions];
+            }
+        }
+        nodeLeft[node] = NONE;
+        nodeRight[node] = NONE;
+        leafHead[node] = NONE;
+        leafCount[node] = 0;
+        leafLimit[node] = 2 * BUCKET;
+        return node;
+    }
+
+
+    /**
+     * the k points closest to x, ignoring those observed before the given time
+     * @param x the query
+     * @param k how many neighbors
+     * @param distance the metric (it must be a sum over dimensions, each growing with the difference, so that boxes
+     *                 can be pruned)
+     * @param oldestTime points observed before this are ignored
+     * @param neighbors where to put them (in no particular order); whatever it held is forgotten
+     * @return how many were found (at most k)
+     */
+    int findNearest(double[] x, int k, DistanceFunction distance, long oldestTime, Neighbors neighbors){
+        neighbors.reset(k);
+        if(k <= 0 || size == 0)
+            return 0;
+        search(0, x, distance, oldestTime, neighbors);
+        return neighbors.size;
+    }
+
+    private void search(int node, double[] x, DistanceFunction distance, long oldestTime, Neighbors neighbors){
+        if(neighbors.isFull() &&
+                distance.distanceToRect(x, nodeMinimum[node], nodeMaximum[node]) >= neighbors.distance[0])
+            return;
+
+        if(nodeLeft[node] == NONE)
+        {
+            for(int slot = leafHead[node]; slot != NONE; slot = nextInLeaf[slot])
+                if(times[slot] >= oldestTime)
+                    neighbors.offer(distance.distance(x, points[slot]), slot);
+            return;
+        }
+        //closer side first, so the other is more likely to be pruned
+        boolean leftFirst = x[nodeSplitDimension[node]] < nodeSplitValue[node];
+        search(leftFirst ? nodeLeft[node] : nodeRight[node], x, distance, oldestTime, neighbors);
+        search(leftFirst ? nodeRight[node] : nodeLeft[node], x, distance, oldestTime, neighbors);
+    }
+
+
+    double getValue(int slot){
+        return values[slot];
+    }
+
+    long getTime(int slot){
+        return times[slot];
+    }
+
+    int size(){
+        return size;
+    }
+
+    int getNumberOfSlots(){
+        return points.length;
+    }
+
+
+    /**
+     * the result of a query (and its scratch): a max-heap of the closest slots found, worst on top.
+     * Reusable from one query to the next; one per thread
+     */
+    static final class Neighbors {
+
+        private double[] distance = new double[0];
+
+        private int[] slot = new int[0];
+
+        private int size;
+
+        private int wanted;
+
+
+        private void reset(int wanted){
+            if(slot.length < wanted) {
+                slot = new int[wanted];
+                distance = new double[wanted];
+            }
+            this.wanted = wanted;
+            size = 0;
+        }
+
+        private boolean isFull(){
+            return size == wanted;
+        }
+
+        private void offer(double candidate, int candidateSlot){
+            if(size < wanted)
+            {
+                //sift up
+                int child = size++;
+                while(child > 0)
+                {
+                    int parent = (child - 1) >>> 1;
+                    if(distance[parent] >= candidate)
+                        break;
+                    distance[child] = distance[parent];
+                    slot[child] = slot[parent];
+                    child = parent;
+                }
+                distance[child] = candidate;
+                slot[child] = candidateSlot;
+            }
+            else if(candidate < distance[0])
+            {
+                //replace the worst and sift down
+                int parent = 0;
+                while(true)
+                {
+                    int child = parent * 2 + 1;
+                    if(child >= size)
+                        break;
+                    if(child + 1 < size && distance[child + 1] > distance[child])
+                        child++;
+                    if(distance[child] <= candidate)
+                        break;
+                    distance[parent] = distance[child];
+                    slot[parent] = slot[child];
+                    parent = child;
+                }
+                distance[parent] = candidate;
+                slot[parent] = candidateSlot;
+            }
+        }
+
+        /**
+         * @return how many neighbors were found
+         */
+        int size(){
+            return size;
+        }
+
+        /**
+         * @param neighbor between 0 and size()-1
+         * @return its slot in the tree
+         */
+        int getSlot(int neighbor){
+            return slot[neighbor];
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.carrknight.heatmaps.regression;
+
+import io.github.carrknight.heatmaps.BeliefState;
+import io.github.carrknight.heatmaps.IndexedBeliefState;
+import io.github.carrknight.heatmaps.regression.distance.Similarity;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Supplier;
+
+/**
+ * a 1D filter for each of a fixed array of options, readable both by option object and by index (arm i is option
+ * getOption(i)). LocalFilterSpace and ConcurrentFilterSpace are the two implementations; bandits holding one can
+ * read it by index and reset its filters or similarity without caring which
+ */
+public interface FilterSpace<O,R,C> extends BeliefState<O,R,C>, IndexedBeliefState {
+
+
+    /**
+     * @param arm the index of a filter
+     * @return the option it refers to
+     */
+    public O getOption(int arm);
+
+
+    /**
+     * replace every filter with a new one
+     * @param generator called once per option
+     */
+    public void resetFilter(Supplier<? extends OneDimensionalFilter> generator);
+
+
+    @Nullable
+    public Similarity<O,C> getOptionSimilarity();
+
+
+    /**
+     * @param optionSimilarity how much observing one option teaches about another; null to learn each option apart
+     */
+    public void setOptionSimilarity(@Nullable Similarity<O,C> optionSimilarity);
+
+
+}
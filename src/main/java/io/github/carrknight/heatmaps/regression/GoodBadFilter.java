@@ -1,13 +1,17 @@
 package io.github.carrknight.heatmaps.regression;
 
+import org.jetbrains.annotations.Nullable;
+
+import java.util.SplittableRandom;
 import java.util.function.Function;
 
 /**
  * you have a prior on what a "good" reward distribution looks like and what a "bad" reward distribution looks like.
  * This filter tries to guess if what we keep filter is a good or a bad distribution.
- * Good and bad priors are normal distributions
+ * Good and bad priors are normal distributions.
+ * The belief is stored as log odds, so each observation is a single addition with no allocation
  */
-public class GoodBadFilter implements OneDimensionalFilter {
+public class GoodBadFilter implements PosteriorFilter, DriftingFilter {
 
     /**
      * gives us the mean for the bad prior
@@ -19,24 +23,47 @@ public class GoodBadFilter implements OneDimensionalFilter {
      */
     private final double goodAverage;
 
-
-    private final double standardDeviation;
-
     /**
      * daily drift of probabilities towards the middle
      */
     private final double drift;
 
 
-    private double probabilityBeingAGoodSpot;
+    /**
+     * log(P(good)/P(bad)): Bayes' rule is a sum in this space and it can't underflow the way two tiny posteriors do
+     */
+    private double logOdds;
+
+    /**
+     * (good-bad)/(2 sigma^2): with both priors sharing sigma the log-likelihood ratio of evidence x observed with
+     * weight w is this times (2x - good - bad) / w^2
+     */
+    private final double likelihoodRatioSlope;
+
+    /**
+     * good + bad
+     */
+    private final double averagesSum;
+
+    /**
+     * when not null, time steps are applied lazily following this clock
+     */
+    @Nullable
+    private DriftClock clock;
+
+    /**
+     * the clock time this filter has drifted up to
+     */
+    private long lastTick;
 
 
     public GoodBadFilter(double badAverage, double goodAverage, double standardDeviation, double drift) {
         this.badAverage = badAverage;
         this.goodAverage = goodAverage;
-        this.standardDeviation = standardDeviation;
         this.drift = drift;
-        probabilityBeingAGoodSpot=.5;
+        this.likelihoodRatioSlope = (goodAverage - badAverage) / (2 * standardDeviation * standardDeviation);
+        this.averagesSum = goodAverage + badAverage;
+        logOdds = 0;
     }
 
     /**
@@ -44,7 +71,8 @@ public class GoodBadFilter implements OneDimensionalFilter {
      */
     @Override
     public double predict() {
-        return probabilityBeingAGoodSpot * goodAverage + (1-probabilityBeingAGoodSpot) * badAverage;
+        catchUp();
+        return toProbability(logOdds) * goodAverage + toProbability(-logOdds) * badAverage;
 
     }
 
@@ -62,38 +90,28 @@ public class GoodBadFilter implements OneDimensionalFilter {
 
         if(!Double.isFinite(evidence) || !Double.isFinite(weight) )
             return;
+        catchUp();
 
-
-        double goodLikelihood = normalPDF(
-                goodAverage,standardDeviation*weight).apply(evidence);
-        double goodPosterior =  probabilityBeingAGoodSpot *goodLikelihood;
-        assert  Double.isFinite(goodPosterior);
-        assert  goodPosterior >=0;
-
-
-        double badPrior = 1d-probabilityBeingAGoodSpot;
-        double badLikelihood = normalPDF(
-                badAverage,standardDeviation*weight).apply(evidence);
-        double badPosterior = badPrior*badLikelihood;
-        assert  badPosterior >=0;
-        assert  Double.isFinite(badPosterior);
-
-        if(badPosterior + goodPosterior == 0) {
-            //if the evidence is weird, the problem is probably with the standard deviation
-            if (evidence > goodAverage)
-                probabilityBeingAGoodSpot=1d;
-            else if (evidence < badAverage)
-                probabilityBeingAGoodSpot=0d;
-            else
-                probabilityBeingAGoodSpot=.5d; //if you are here that's some very poor averages/std you got
-        }
-        else
-            probabilityBeingAGoodSpot = (goodPosterior/(badPosterior+goodPosterior));
+        //the normal pdfs (standard deviation sigma*weight) differ only in the exponent: their ratio is closed form
+        double updated = logOdds + likelihoodRatioSlope * (2 * evidence - averagesSum) / (weight * weight);
+        //0 weight and evidence exactly in the middle (or a certainty contradicted by another certainty): no information
+        if(!Double.isNaN(updated))
+            logOdds = updated;
     }
 
 
 
 
+    /**
+     * the average is either the good or the bad one: pick one with the current odds
+     */
+    @Override
+    public double sample(SplittableRandom randomizer) {
+        catchUp();
+        return randomizer.nextDouble() < toProbability(logOdds) ? goodAverage : badAverage;
+    }
+
+
     public static Function<Double,Double> normalPDF(double mean, double standardDeviation)
     {
         return new Function<Double,Double>(){
@@ -109,11 +127,65 @@ public class GoodBadFilter implements OneDimensionalFilter {
     }
 
     public void drift(){
-        double good = probabilityBeingAGoodSpot;
-        double bad = 1d-good;
-        probabilityBeingAGoodSpot = (good + drift) / (good + drift + bad + drift);
+        catchUp();
+        applyDrift(1);
+    }
+
+
+    /**
+     * each drift is the affine map p -> (p + drift)/(1 + 2 drift), whose fixed point is 1/2; so n steps shrink the
+     * distance from 1/2 by (1 + 2 drift)^-n
+     * @param steps number of time steps, non negative
+     */
+    @Override
+    public void drift(long steps) {
+        catchUp();
+        applyDrift(steps);
     }
 
+    private void applyDrift(long steps){
+        if(steps <= 0 || drift == 0)
+            return;
+        logOdds = contractLogOdds(logOdds, Math.pow(1d + 2d * drift, -steps));
+    }
+
+    @Override
+    public void setClock(@Nullable DriftClock clock) {
+        catchUp();
+        this.clock = clock;
+        if(clock != null)
+            lastTick = clock.getTime();
+    }
+
+    @Nullable
+    @Override
+    public DriftClock getClock() {
+        return clock;
+    }
+
+    /**
+     * the prediction is bad + p (good - bad) and p - 1/2 shrinks by 1/(1 + 2 drift) each step
+     */
+    @Override
+    public double getDriftCenter() {
+        return averagesSum / 2;
+    }
+
+    @Override
+    public double getDriftFactor() {
+        return 1d / (1d + 2d * drift);
+    }
+
+    /**
+     * apply whatever ticks of the clock we have missed
+     */
+    private void catchUp(){
+        if(clock != null && clock.getTime() != lastTick)
+        {
+            applyDrift(clock.getTime() - lastTick);
+            lastTick = clock.getTime();
+        }
+    }
 
     /**
      * Getter for property 'probabilityBeingAGoodSpot'.
@@ -121,6 +193,37 @@ public class GoodBadFilter implements OneDimensionalFilter {
      * @return Value for property 'probabilityBeingAGoodSpot'.
      */
     public double getProbabilityBeingAGoodSpot() {
-        return probabilityBeingAGoodSpot;
+        catchUp();
+        return toProbability(logOdds);
+    }
+
+
+    /**
+     * the logistic function, computed so that it never overflows
+     * @param logOdds log(p/(1-p))
+     * @return p
+     */
+    public static double toProbability(double logOdds){
+        if(logOdds >= 0)
+            return 1d / (1d + Math.exp(-logOdds));
+        double odds = Math.exp(logOdds);
+        return odds / (1d + odds);
+    }
+
+
+    /**
+     * moves the probability towards 1/2: p - 1/2 is multiplied by contraction.
+     * Since p - 1/2 = tanh(logOdds/2)/2 this never needs to go through p itself (which would lose the tails)
+     * @param logOdds current log odds
+     * @param contraction between 0 and 1
+     * @return the new log odds
+     */
+    public static double contractLogOdds(double logOdds, double contraction){
+        //when not contracting at all keep the tails exactly
+        if(contraction == 1)
+            return logOdds;
+        double halfDistance = Math.tanh(logOdds / 2) * contraction;
+        //2 atanh(y) = log((1+y)/(1-y))
+        return Math.log1p(2 * halfDistance / (1 - halfDistance));
     }
 }
@@ -0,0 +1,298 @@
+package io.github.carrknight.heatmaps.regression;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * a uniform grid hash over the slots of an ObservationWindow: each observation sits in the cell given by
+ * floor(x_i/cellSize_i) over the indexed dimensions, and each cell keeps a doubly linked list (in primitive arrays) of
+ * its slots so that inserting and removing are O(1).
+ * A query collects every slot within the given radius of a point (and some more, from the same cells): only the
+ * cells overlapping the box around the point are visited.
+ * Cells are found through an open addressing table keyed by their integer coordinates; cells that empty out are
+ * only dropped when the table is rebuilt
+ */
+class GridIndex {
+
+
+    private static final int EMPTY = -1;
+
+    /**
+     * which dimensions of the observations are indexed
+     */
+    private final int[] dimensions;
+
+    private final double[] cellSize;
+
+    /**
+     * cell each slot is in, or EMPTY
+     */
+    private int[] cellOfSlot;
+
+    private int[] nextInCell;
+
+    private int[] previousInCell;
+
+    /**
+     * open addressing table: cell id or EMPTY
+     */
+    private int[] table;
+
+    /**
+     * the integer coordinates of each cell, dimensions.length at a time
+     */
+    private int[] cellCoordinates;
+
+    /**
+     * first slot of each cell's list, or EMPTY
+     */
+    private int[] cellHead;
+
+    private int numberOfCells = 0;
+
+    /**
+     * scratch: the coordinates being looked up and the box being visited
+     */
+    private final int[] coordinates;
+
+    private final int[] lowest;
+
+    private final int[] highest;
+
+
+    /**
+     * @param dimensions which dimensions of the observations to index
+     * @param cellSize side of the cells along each indexed dimension
+     * @param slots how many slots the window has
+     */
+    GridIndex(int[] dimensions, double[] cellSize, int slots) {
+        Preconditions.checkArgument(dimensions.length > 0 && dimensions.length == cellSize.length);
+        for (double size : cellSize)
+            Preconditions.checkArgument(size > 0 && Double.isFinite(size));
+        this.dimensions = dimensions.clone();
+        this.cellSize = cellSize.clone();
+        this.coordinates = new int[dimensions.length];
+        this.lowest = new int[dimensions.length];
+        this.highest = new int[dimensions.length];
+        resize(slots);
+    }
+
+
+    /**
+     * forget everything and get ready for this many slots
+     */
+    void resize(int slots){
+        cellOfSlot = new int[slots];
+        Arrays.fill(cellOfSlot, EMPTY);
+        nextInCell = new int[slots];
+        previousInCell = new int[slots];
+        int tableSize = Integer.highestOneBit(Math.max(16, slots * 4 - 1)) * 2;
+        table = new int[tableSize];
+        Arrays.fill(table, EMPTY);
+        cellCoordinates = new int[tableSize / 2 * dimensions.length];
+        cellHead = new int[tableSize / 2];
+        numberOfCells = 0;
+    }
+
+
+    /**
+     * index a slot
+     * @param slot the slot
+     * @param data the window's data
+     * @param offset where the observation in the slot starts
+     */
+    void insert(int slot, double[] data, int offset){
+        assert cellOfSlot[slot] == EMPTY;
+        for(int i=0; i<dimensions.length; i++)
+            coordinates[i] = toCell(data[offset + dimensions[i]], i);
+        int cell = findOrAddCell();
+        cellOfSlot[slot] = cell;
+        int head = cellHead[cell];
+        nextInCell[slot] = head;
+        previousInCell[slot] = EMPTY;
+        if(head != EMPTY)
+            previousInCell[head] = slot;
+        cellHead[cell] = slot;
+    }
+
+
+    /**
+     * stop indexing a slot (no-op if it wasn't indexed)
+     */
+    void remove(int slot){
+        int cell = cellOfSlot[slot];
+        if(cell == EMPTY)
+            return;
+        int next = nextInCell[slot];
+        int previous = previousInCell[slot];
+        if(previous == EMPTY)
+            cellHead[cell] = next;
+        else
+            nextInCell[previous] = next;
+        if(next != EMPTY)
+            previousInCell[next] = previous;
+        cellOfSlot[slot] = EMPTY;
+    }
+
+
+    /**
+     * write in output every indexed slot whose cell overlaps the box [x-radius, x+radius] (along the indexed
+     * dimensions); that includes all slots within radius, and some more
+     * @param x the query point (all dimensions)
+     * @param radius half side of the box, along each indexed dimension
+     * @param output big enough for every slot
+     * @return how many slots were written, or -1 if the box covers so many cells that a full scan is cheaper
+     */
+    int collect(double[] x, double[] radius, int[] output){
+        long boxCells = 1;
+        for(int i=0; i<dimensions.length; i++)
+        {
+            double center = x[dimensions[i]];
+            lowest[i] = toCell(center - radius[i], i);
+            highest[i] = toCell(center + radius[i], i);
+            coordinates[i] = lowest[i];
+            //more cells to visit than slots: not worth it, let the caller scan
+            boxCells *= (long) highest[i] - lowest[i] + 1;
+            if(boxCells > cellOfSlot.length)
+                return -1;
+        }
+
+        int found = 0;
+        //odometer over the box
+        while(true)
+        {
+            int cell = findCell();
+            if(cell != EMPTY)
+                for(int slot = cellHead[cell]; slot != EMPTY; slot = nextInCell[slot])
+                    output[found++] = slot;
+
+            int i = 0;
+            while(i < dimensions.length && coordinates[i] == highest[i])
+            {
+                coordinates[i] = lowest[i];
+                i++;
+            }
+            if(i == dimensions.length)
+                return found;
+            coordinates[i]++;
+        }
+    }
+
+
+    private int toCell(double value, int dimension){
+        double cell = Math.floor(value / cellSize[dimension]);
+        //clamp so that faraway points share the extreme cells rather than overflowing
+        return (int) Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2, cell));
+    }
+
+
+    private int hash(){
+        int hash = 0;
+        for (int coordinate : coordinates)
+            hash = hash * 0x9E3779B1 + coordinate;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash & (table.length - 1);
+    }
+
+
+    private boolean sameCoordinates(int cell){
+        int offset = cell * dimensions.length;
+        for(int i=0; i<dimensions.length; i++)
+            if(cellCoordinates[offset + i] != coordinates[i])
+                return false;
+        return true;
+    }
+
+
+    /**
+     * @return the cell at the current coordinates or EMPTY
+     */
+    private int findCell(){
+        for(int position = hash(); ; position = (position + 1) & (table.length - 1))
+        {
+            int cell = table[position];
+            if(cell == EMPTY || sameCoordinates(cell))
+                return cell;
+        }
+    }
+
+
+    private int findOrAddCell(){
+        int position = hash();
+        for(; ; position = (position + 1) & (table.length - 1))
+        {
+            int cell = table[position];
+            if(cell == EMPTY)
+                break;
+            if(sameCoordinates(cell))
+                return cell;
+        }
+        if(numberOfCells == cellHead.length)
+        {
+            //table half full (of cells, many may be empty by now): start over with only the occupied ones
+            compact();
+            return findOrAddCell();
+        }
+        int cell = numberOfCells++;
+        table[position] = cell;
+        System.arraycopy(coordinates, 0, cellCoordinates, cell * dimensions.length, dimensions.length);
+        cellHead[cell] = EMPTY;
+        return cell;
+    }
+
+
+    /**
+     * rebuild the table keeping only the cells that have slots; grows it if they are still too many
+     */
+    private void compact(){
+        int[] oldCellOfSlot = cellOfSlot;
+        int[] oldCoordinates = cellCoordinates;
+        int[] oldHead = cellHead;
+        int[] oldNext = nextInCell;
+        int oldNumberOfCells = numberOfCells;
+        int occupied = 0;
+        for(int cell=0; cell<oldNumberOfCells; cell++)
+            if(oldHead[cell] != EMPTY)
+                occupied++;
+        int tableSize = table.length;
+        while(occupied * 4 > tableSize)
+            tableSize *= 2;
+
+        int[] saved = coordinates.clone();
+        table = new int[tableSize];
+        Arrays.fill(table, EMPTY);
+        cellCoordinates = new int[tableSize / 2 * dimensions.length];
+        cellHead = new int[tableSize / 2];
+        cellOfSlot = new int[oldCellOfSlot.length];
+        Arrays.fill(cellOfSlot, EMPTY);
+        nextInCell = new int[oldCellOfSlot.length];
+        previousInCell = new int[oldCellOfSlot.length];
+        numberOfCells = 0;
+        for(int cell=0; cell<oldNumberOfCells; cell++)
+        {
+            if(oldHead[cell] == EMPTY)
+                continue;
+            System.arraycopy(oldCoordinates, cell * dimensions.length, coordinates, 0, dimensions.length);
+            int newCell = findOrAddCell();
+            for(int slot = oldHead[cell]; slot != EMPTY; slot = oldNext[slot])
+            {
+                cellOfSlot[slot] = newCell;
+                int head = cellHead[newCell];
+                nextInCell[slot] = head;
+                previousInCell[slot] = EMPTY;
+                if(head != EMPTY)
+                    previousInCell[head] = slot;
+                cellHead[newCell] = slot;
+            }
+        }
+        System.arraycopy(saved, 0, coordinates, 0, dimensions.length);
+    }
+
+
+    int getNumberOfSlots(){
+        return cellOfSlot.length;
+    }
+}
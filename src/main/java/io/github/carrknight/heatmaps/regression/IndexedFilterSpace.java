@@ -0,0 +1,261 @@
+package io.github.carrknight.heatmaps.regression;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.heatmaps.IndexedBeliefState;
+import io.github.carrknight.utils.ArgmaxTree;
+import io.github.carrknight.utils.DiscreteChoosersUtilities;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+/**
+ * a 1D filter for each arm, stored in an array so that arm i is just filters[i]. This is the LocalFilterSpace
+ * for int bandits: no options objects, no hashing, no similarity.
+ * Predictions are also kept in a tournament tree so that the best arm is known without scanning: as long as
+ * observations come one arm at a time each update costs O(log n). Whoever changes filters behind its back
+ * (through getFilter, say) must call filtersChanged().
+ * Filters given to the constructor are still reachable by whoever built them, so the tree is not trusted (and the
+ * best arm is found by scanning) until the first call to filtersChanged() shows that the caller knows the rule.
+ * When all filters drift alike with a clock (see setDriftFrame) the tree ranks them in a frame where ticking changes
+ * nothing, so time passing costs nothing either
+ */
+public class IndexedFilterSpace implements IndexedBeliefState {
+
+
+    @NotNull
+    private final OneDimensionalFilter[] filters;
+
+    /**
+     * the predictions of all filters, ordered to find the best quickly
+     */
+    private final ArgmaxTree bestArms;
+
+    /**
+     * when true the tree doesn't reflect the filters anymore and needs to be rebuilt before being read
+     */
+    private boolean indexStale = true;
+
+    /**
+     * false while the filters may be modified from outside without anybody calling filtersChanged()
+     */
+    private boolean indexEnabled;
+
+    /**
+     * when not null, every filter follows this clock and drifts with the same center and factor: the tree then holds
+     * (prediction - center) * factor^(frameTime - now), which ticking doesn't change
+     */
+    @Nullable
+    private DriftClock frameClock;
+
+    private double frameCenter;
+
+    private double frameFactor;
+
+    /**
+     * the clock time keys are brought back to
+     */
+    private long frameTime;
+
+    /**
+     * factor^(frameTime - now), as of frameScaleTime
+     */
+    private double frameScale = 1;
+
+    private long frameScaleTime;
+
+
+    public IndexedFilterSpace(OneDimensionalFilter[] givenFilters) {
+        Preconditions.checkArgument(givenFilters.length>0, "Given no options!");
+        this.filters = givenFilters;
+        this.bestArms = new ArgmaxTree(givenFilters.length);
+        this.indexEnabled = false;
+    }
+
+
+    public IndexedFilterSpace(
+            int numberOfArms,
+            Supplier<? extends OneDimensionalFilter> filterMaker) {
+        Preconditions.checkArgument(numberOfArms>0, "Given no options!");
+        this.filters = new OneDimensionalFilter[numberOfArms];
+        for(int i=0; i<numberOfArms; i++)
+            filters[i] = filterMaker.get();
+        this.bestArms = new ArgmaxTree(numberOfArms);
+        this.indexEnabled = true;
+    }
+
+
+    /**
+     * ask the filter of this arm for its prediction
+     *
+     * @param arm the index of the option we want to predict the value of
+     * @return the numerical value we predict
+     */
+    @Override
+    public double predict(int arm) {
+        return filters[arm].predict();
+    }
+
+    /**
+     * feed the reward to the filter of this arm only
+     *
+     * @param arm    the index of the option played
+     * @param reward the reward observed
+     * @param weight the strength of the observation (1 for standard observations)
+     */
+    @Override
+    public void observe(int arm, double reward, double weight) {
+        filters[arm].observe(reward, weight);
+        if(frameClock != null)
+            refreshFrame();
+        if(indexEnabled && !indexStale)
+            bestArms.update(arm, key(arm));
+    }
+
+    /**
+     * draws from the filter posterior if it has one, otherwise returns its prediction
+     */
+    @Override
+    public double sample(int arm, SplittableRandom randomizer) {
+        OneDimensionalFilter filter = filters[arm];
+        return filter instanceof PosteriorFilter ?
+                ((PosteriorFilter) filter).sample(randomizer) :
+                filter.predict();
+    }
+
+    @Override
+    public int getNumberOfArms() {
+        return filters.length;
+    }
+
+
+    public void resetFilter(
+            Supplier<? extends OneDimensionalFilter> generator
+    ){
+        for(int i=0; i<filters.length; i++)
+            filters[i] = generator.get();
+        indexStale = true;
+        indexEnabled = true;
+        frameClock = null;
+    }
+
+
+    /**
+     * the arm whose filter predicts the highest value, ties split uniformly at random.
+     * O(log n) unless the index needs rebuilding (or is not trusted yet, in which case it is a O(n) scan)
+     * @param randomizer used to break ties
+     * @return the best arm or -1 if no prediction is finite
+     */
+    @Override
+    public int getBestArm(SplittableRandom randomizer) {
+        if(!indexEnabled)
+            return DiscreteChoosersUtilities.getBestIndex(filters.length,
+                                                          this::predict,
+                                                          randomizer,
+                                                          Double.NEGATIVE_INFINITY);
+        if(frameClock != null)
+            refreshFrame();
+        if(indexStale) {
+            bestArms.rebuild(this::key);
+            indexStale = false;
+        }
+        return bestArms.sampleBest(randomizer);
+    }
+
+
+    @Override
+    public boolean isBestArmIndexed() {
+        return indexEnabled;
+    }
+
+
+    /**
+     * tell the space that filters have been modified directly (or all at once) so that
+     * the best arm index is rebuilt next time it is needed. This also turns the index on for filters that were
+     * given to the constructor: from now on the caller is expected to call this after every change
+     */
+    public void filtersChanged(){
+        indexStale = true;
+        indexEnabled = true;
+    }
+
+
+    /**
+     * rank filters in a frame that follows the clock, so that ticking never touches the tree. Only correct if every
+     * filter follows this clock and drifts towards this center by this factor
+     * @param clock the clock every filter follows, or null to rank by plain predictions
+     * @param center the drift center shared by all filters
+     * @param factor the drift factor shared by all filters; must be positive, or ticking would swap the order
+     */
+    void setDriftFrame(@Nullable DriftClock clock, double center, double factor){
+        Preconditions.checkArgument(clock == null || factor > 0, "a non positive drift factor reorders filters");
+        this.frameClock = clock;
+        this.frameCenter = center;
+        this.frameFactor = factor;
+        if(clock != null)
+        {
+            frameTime = clock.getTime();
+            frameScaleTime = frameTime;
+        }
+        frameScale = 1;
+        indexStale = true;
+    }
+
+
+    /**
+     * bring the frame scale up to the clock; once it gets too large or too small move the frame to now and rebuild
+     * (every few hundred ticks at worst, for drifts of a few percent)
+     */
+    private void refreshFrame(){
+        assert frameClock != null;
+        long now = frameClock.getTime();
+        if(now == frameScaleTime)
+            return;
+        frameScaleTime = now;
+        frameScale = Math.pow(frameFactor, frameTime - now);
+        if(!(frameScale > 1e-100 && frameScale < 1e100))
+        {
+            frameTime = now;
+            frameScale = 1;
+            indexStale = true;
+        }
+    }
+
+
+    /**
+     * what the tree ranks arms by: the prediction itself or, in a drift frame, its clock-invariant version
+     */
+    private double key(int arm){
+        double prediction = filters[arm].predict();
+        if(frameClock == null)
+            return prediction;
+        return (prediction - frameCenter) * frameScale;
+    }
+
+
+    /**
+     * @return true if ticking the clock leaves the ranking of filters as it is
+     */
+    boolean isRankedInDriftFrame(){
+        return frameClock != null;
+    }
+
+
+    /**
+     * the space itself moved the predictions (say, many filters learned at once): rebuild the index next time it is
+     * needed, without turning it on
+     */
+    void predictionsMoved(){
+        indexStale = true;
+    }
+
+
+    /**
+     * returns the filter used for a specific arm (not a copy!); if you feed it observations
+     * remember to call filtersChanged()
+     */
+    public OneDimensionalFilter getFilter(int arm){
+        return filters[arm];
+    }
+}
@@ -1,33 +1,112 @@
 package io.github.carrknight.heatmaps.regression;
 
+import com.google.common.base.Preconditions;
 import io.github.carrknight.heatmaps.regression.distance.FeatureKernel;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.Arrays;
 
+
+/**
+ * Nadaraya-Watson regression (a kernel weighted average of the observed y) over a moving window of the latest
+ * observations. The window is a flat ring buffer, so predictions scan it sequentially.
+ * When kernels have a finite support radius (see FeatureKernel.getSupportRadius) observations are also kept in a
+ * grid hash, and predictions only visit those in the cells near the query: kernels are computed on the same
+ * observations the full scan would have counted, in the same order, so the prediction is identical.
+ * For heatmaps, a fixed set of query points can be registered with setQueryPoints: their kernel sums are then updated
+ * as observations come in and leave the window, and predictAll reads all of them in O(number of query points)
+ */
 public class KernelNumericalRegression implements NumericalRegression {
 
 
     /**
-     * delete observations after you have more than this
+     * past observations (each is [x_1,x_2,\dots,x_n,y] ); the oldest are deleted after we have more than
+     * maximumNumberOfObservationsToKeep
      */
-    private int maximumNumberOfObservationsToKeep;
+    private final ObservationWindow observations;
+
+
+
+    private final FeatureKernel[] kernels;
 
     /**
-     * past observations (notice that this double[] is [x_1,x_2,\dots,x_n,y] )
+     * kernel values below this are ignored
      */
-    private final Queue<double[]> observations = new LinkedList<>();
+    private static final double CUTOFF = .00001;
 
+    /**
+     * null when no kernel has a finite support
+     */
+    @Nullable
+    private final GridIndex grid;
 
+    /**
+     * the dimensions the grid indexes
+     */
+    private final int[] indexedDimensions;
 
-    private final FeatureKernel[] kernels;
+    /**
+     * scratch: query radius along each indexed dimension, and slots returned by the grid
+     */
+    private final double[] radius;
+
+    private int[] candidates;
+
+    /**
+     * the window data the grid refers to; when the window relays its data out, the grid is rebuilt
+     */
+    private double[] indexedData;
+
+    /**
+     * running sums at the query points, null if there are none
+     */
+    @Nullable
+    private QueryPointCache queryPoints;
+
+    /**
+     * evictions subtracted from the query point sums since they were last summed from scratch
+     */
+    private int evictionsSinceRefresh = 0;
 
 
     public KernelNumericalRegression(
             FeatureKernel[] kernels,
             int maximumNumberOfObservationsToKeep) {
         this.kernels = kernels;
-        this.maximumNumberOfObservationsToKeep = maximumNumberOfObservationsToKeep;
+        this.observations = new ObservationWindow(kernels.length, maximumNumberOfObservationsToKeep);
+
+        //index the dimensions by how far their kernel reaches, with cells as large as that distance
+        int indexed = 0;
+        for (FeatureKernel kernel : kernels)
+            if (isIndexable(kernel.getSupportRadius(CUTOFF)))
+                indexed++;
+        indexedDimensions = new int[indexed];
+        radius = new double[indexed];
+        double[] cellSize = new double[indexed];
+        indexed = 0;
+        for(int i=0; i<kernels.length; i++)
+        {
+            double support = kernels[i].getSupportRadius(CUTOFF);
+            if(isIndexable(support))
+            {
+                indexedDimensions[indexed] = i;
+                cellSize[indexed] = support;
+                indexed++;
+            }
+        }
+        this.indexedData = observations.getData();
+        //skipping by radius is exact only if every other kernel is at most 1, which is what a finite radius promises
+        if(indexed > 0 && indexed == kernels.length)
+        {
+            grid = new GridIndex(indexedDimensions, cellSize, observations.getNumberOfSlots());
+            candidates = new int[observations.getNumberOfSlots()];
+        }
+        else
+            grid = null;
+    }
+
+    private static boolean isIndexable(double support){
+        return support > 0 && Double.isFinite(support);
     }
 
     @Override
@@ -35,17 +114,33 @@ public class KernelNumericalRegression implements NumericalRegression {
 
         if(!NumericalRegression.isValidInput(x,y))
             return;
+        Preconditions.checkArgument(x.length == kernels.length);
 
-        double[] newObservation = new double[x.length+1];
-        for(int i=0; i<x.length; i++)
-            newObservation[i]=x[i];
-        newObservation[x.length] = y;
-
-        observations.add(newObservation);
-        if(observations.size()>maximumNumberOfObservationsToKeep)
+        int stride = kernels.length + 1;
+        if(observations.isFull())
+        {
+            if(grid != null)
+                grid.remove(observations.getOldestSlot());
+            if(queryPoints != null) {
+                queryPoints.update(observations.getData(), observations.getOldestSlot() * stride, -1);
+                evictionsSinceRefresh++;
+            }
+        }
+        int slot = observations.append(x, y);
+        if(grid != null)
         {
-            assert observations.size()==maximumNumberOfObservationsToKeep+1;
-            observations.poll();
+            if(observations.getData() != indexedData)
+                reindex();
+            else
+                grid.insert(slot, indexedData, slot * stride);
+        }
+        if(queryPoints != null)
+        {
+            //subtracting leaves rounding residue behind: once a whole window has gone by, sum again from scratch
+            if(evictionsSinceRefresh >= observations.getCapacity())
+                refreshQueryPoints();
+            else
+                queryPoints.update(observations.getData(), slot * stride, 1);
         }
 
     }
@@ -59,38 +154,189 @@ public class KernelNumericalRegression implements NumericalRegression {
 
         assert x.length == kernels.length;
 
+        if(grid != null)
+        {
+            double indexedPrediction = predictFromGrid(x);
+            if(!Double.isInfinite(indexedPrediction))
+                return indexedPrediction;
+        }
+
+        double[] data = observations.getData();
+        int stride = x.length + 1;
+        int firstSegment = observations.getFirstSegmentLength();
+
         double kernelSum = 0;
         double numerator = 0;
-        //basically a fancy weighted regression
-        for(double[] observation : observations)
+        //basically a fancy weighted regression; oldest to newest: first up to the end of the buffer, then from its start
+        for(int segment = 0; segment < 2; segment++)
         {
-            assert observation.length == x.length+1;
-            double currentKernel = 1;
-            for(int i=0; i<x.length; i++) {
+            int offset = segment == 0 ? observations.getStartOffset() : 0;
+            int count = segment == 0 ? firstSegment : observations.size() - firstSegment;
+            int end = offset + count * stride;
+            for(int observation = offset; observation < end; observation += stride)
+            {
+                double currentKernel = 1;
+                for(int i=0; i<x.length; i++) {
+
+                    currentKernel *= kernels[i].similarity(
+                            x[i],
+                            data[observation + i]
+                    );
+                    //don't bother if it's a 0
+                    if((currentKernel )<CUTOFF)
+                        break;
+                }
+
+                if((currentKernel )>CUTOFF) {
+                    kernelSum += currentKernel;
+                    //the last item of the memorized observation is actually the Y
+                    numerator += currentKernel * data[observation + x.length];
+                }
+            }
+        }
 
+        if(kernelSum <CUTOFF)
+            return Double.NaN;
+
+        return numerator/kernelSum;
 
+    }
 
+    /**
+     * the same sums as the full scan, over the observations near x only
+     * @return the prediction, NaN if there is none, or infinity if the grid can't help and a full scan is needed
+     */
+    private double predictFromGrid(double[] x){
+        assert grid != null;
+        for(int i=0; i<indexedDimensions.length; i++)
+        {
+            //bandwidths may have changed since we built the grid; that only makes the query box larger or smaller
+            double support = kernels[indexedDimensions[i]].getSupportRadius(CUTOFF);
+            if(!Double.isFinite(support))
+                return Double.POSITIVE_INFINITY;
+            //a little slack so that rounding in the support never hides an observation the scan would count
+            radius[i] = support * (1 + 1e-6) + 1e-12;
+        }
+        int found = grid.collect(x, radius, candidates);
+        if(found < 0)
+            return Double.POSITIVE_INFINITY;
+
+        //visit candidates oldest first, like the full scan: slots from the oldest to the end of the buffer, then the rest
+        Arrays.sort(candidates, 0, found);
+        int oldest = observations.getOldestSlot();
+        int firstNewer = 0;
+        while(firstNewer < found && candidates[firstNewer] < oldest)
+            firstNewer++;
+
+        double[] data = indexedData;
+        int stride = x.length + 1;
+        double kernelSum = 0;
+        double numerator = 0;
+        for(int visited = 0; visited < found; visited++)
+        {
+            int candidate = visited + firstNewer;
+            int slot = candidates[candidate < found ? candidate : candidate - found];
+            int observation = slot * stride;
+            double currentKernel = 1;
+            for(int i=0; i<x.length; i++) {
                 currentKernel *= kernels[i].similarity(
                         x[i],
-                        observation[i]
+                        data[observation + i]
                 );
-                //don't bother if it's a 0
-                if((currentKernel )<.00001)
+                if((currentKernel )<CUTOFF)
                     break;
             }
 
-            if((currentKernel )>.00001) {
+            if((currentKernel )>CUTOFF) {
                 kernelSum += currentKernel;
-                //the last item of the memorized observation is actually the Y
-                numerator += currentKernel * observation[x.length];
+                numerator += currentKernel * data[observation + x.length];
             }
         }
 
-        if(kernelSum <.00001)
+        if(kernelSum <CUTOFF)
             return Double.NaN;
 
         return numerator/kernelSum;
+    }
+
+
+    /**
+     * register the points whose prediction should be kept up to date (e.g. the cells of a heatmap). Each observation
+     * then costs a kernel evaluation at every query point within its support (at every query point if the kernels have
+     * no finite support), and predictAll costs O(number of query points).
+     * The sums assume the kernels don't change: after changing a bandwidth call this again
+     * @param queryPoints the points, each as long as the covariates; null to stop caching
+     */
+    public void setQueryPoints(@Nullable double[][] queryPoints) {
+        if(queryPoints == null)
+        {
+            this.queryPoints = null;
+            return;
+        }
+        this.queryPoints = new QueryPointCache(kernels, queryPoints, CUTOFF);
+        refreshQueryPoints();
+    }
 
+    /**
+     * the predictions at every query point, in the order they were given to setQueryPoints (NaN where there is no
+     * observation close enough). Up to rounding, the same as calling predict on each
+     * @param output where to write them; at least as long as the number of query points
+     */
+    public void predictAll(double[] output) {
+        Preconditions.checkState(queryPoints != null, "no query points set");
+        queryPoints.predictAll(output);
+    }
+
+    /**
+     * @param queryPoint index of the query point, as given to setQueryPoints
+     * @return the prediction there
+     */
+    public double predictQueryPoint(int queryPoint) {
+        Preconditions.checkState(queryPoints != null, "no query points set");
+        return queryPoints.predict(queryPoint);
+    }
+
+    /**
+     * @return how many query points are cached (0 if none)
+     */
+    public int getNumberOfQueryPoints() {
+        return queryPoints == null ? 0 : queryPoints.getNumberOfQueries();
+    }
+
+    /**
+     * sum every observation in the window into the query points, oldest first
+     */
+    private void refreshQueryPoints(){
+        assert queryPoints != null;
+        queryPoints.clear();
+        evictionsSinceRefresh = 0;
+        double[] data = observations.getData();
+        int stride = kernels.length + 1;
+        int firstSegment = observations.getFirstSegmentLength();
+        for(int segment = 0; segment < 2; segment++)
+        {
+            int offset = segment == 0 ? observations.getStartOffset() : 0;
+            int count = segment == 0 ? firstSegment : observations.size() - firstSegment;
+            for(int observation = 0; observation < count; observation++)
+                queryPoints.update(data, offset + observation * stride, 1);
+        }
+    }
+
+
+    /**
+     * the window moved its observations to a new array: index them all again
+     */
+    private void reindex(){
+        assert grid != null;
+        indexedData = observations.getData();
+        int slots = observations.getNumberOfSlots();
+        grid.resize(slots);
+        if(candidates.length != slots)
+            candidates = new int[slots];
+        //after a relayout the window starts at slot 0
+        int stride = kernels.length + 1;
+        for(int slot = 0; slot < observations.size(); slot++)
+            grid.insert(slot, indexedData, slot * stride);
     }
 
     /**
@@ -99,24 +345,29 @@ public class KernelNumericalRegression implements NumericalRegression {
      * @return Value for property 'maximumNumberOfObservationsToKeep'.
      */
     public int getMaximumNumberOfObservationsToKeep() {
-        return maximumNumberOfObservationsToKeep;
+        return observations.getCapacity();
     }
 
     /**
-     * Setter for property 'maximumNumberOfObservationsToKeep'.
+     * Setter for property 'maximumNumberOfObservationsToKeep'. If it shrinks, the oldest observations are dropped now
      *
      * @param maximumNumberOfObservationsToKeep Value to set for property 'maximumNumberOfObservationsToKeep'.
      */
     public void setMaximumNumberOfObservationsToKeep(int maximumNumberOfObservationsToKeep) {
-        this.maximumNumberOfObservationsToKeep = maximumNumberOfObservationsToKeep;
+        observations.setCapacity(maximumNumberOfObservationsToKeep);
+        if(grid != null)
+            reindex();
+        if(queryPoints != null)
+            refreshQueryPoints();
     }
 
     /**
-     * Getter for property 'observations'.
+     * the observations currently in memory, oldest first. This is the live window, not a copy, and it can't be
+     * modified from outside
      *
      * @return Value for property 'observations'.
      */
-    public Queue<double[]> getObservations() {
+    public ObservationWindow getObservations() {
         return observations;
     }
 
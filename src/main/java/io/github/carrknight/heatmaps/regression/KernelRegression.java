@@ -1,9 +1,13 @@
 package io.github.carrknight.heatmaps.regression;
 
+import com.google.common.base.Preconditions;
 import io.github.carrknight.Observation;
 import io.github.carrknight.heatmaps.regression.distance.FeatureKernel;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Queue;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.function.Function;
 
 public class KernelRegression<O,R,C> extends FeatureBasedRegression<O, R, C> {
@@ -11,6 +15,18 @@ public class KernelRegression<O,R,C> extends FeatureBasedRegression<O, R, C> {
 
     private final KernelNumericalRegression regression;
 
+    /**
+     * from option to its query point in the regression; null when no options are registered
+     */
+    @Nullable
+    private Map<O,Integer> optionIndex;
+
+    /**
+     * the context the registered options' features were extracted with
+     */
+    @Nullable
+    private C optionsContext;
+
 
     public KernelRegression(
             FeatureExtractor<O, C>[] extractors,
@@ -35,6 +51,62 @@ public class KernelRegression<O,R,C> extends FeatureBasedRegression<O, R, C> {
         return regression.predict(x);
     }
 
+
+    /**
+     * registered options predicted at the context they were registered with are read from the query point cache in
+     * O(1); everything else goes through feature extraction and a full kernel scan
+     */
+    @Override
+    public double predict(O whereToPredict, C predictionContext) {
+        if(optionIndex != null && Objects.equals(predictionContext, optionsContext))
+        {
+            Integer queryPoint = optionIndex.get(whereToPredict);
+            if(queryPoint != null)
+                return regression.predictQueryPoint(queryPoint);
+        }
+        return super.predict(whereToPredict, predictionContext);
+    }
+
+
+    /**
+     * register the options whose predictions should be kept up to date (say, every option a chooser picks from):
+     * their features are extracted once, with this context, and become the query points of the kernel regression
+     * @param options the options, all different (null to stop caching)
+     * @param context the context features are extracted with; predictions at other contexts are not cached
+     */
+    public void setOptions(@Nullable O[] options, @Nullable C context){
+        if(options == null)
+        {
+            optionIndex = null;
+            optionsContext = null;
+            regression.setQueryPoints(null);
+            return;
+        }
+        Preconditions.checkArgument(options.length > 0, "Given no options!");
+        Map<O,Integer> index = new HashMap<>(options.length * 2);
+        double[][] features = new double[options.length][];
+        for(int i=0; i<options.length; i++)
+        {
+            index.put(options[i], i);
+            features[i] = convertOptionToFeatures(options[i], context);
+        }
+        Preconditions.checkArgument(index.size()==options.length,
+                                    "options must all be different");
+        regression.setQueryPoints(features);
+        this.optionIndex = index;
+        this.optionsContext = context;
+    }
+
+
+    /**
+     * the prediction of every registered option, in the order given to setOptions
+     * @param output where to write them; at least as long as the options
+     */
+    public void predictAll(double[] output){
+        Preconditions.checkState(optionIndex != null, "no options registered");
+        regression.predictAll(output);
+    }
+
     /**
      * Getter for property 'maximumNumberOfObservationsToKeep'.
      *
@@ -54,11 +126,11 @@ public class KernelRegression<O,R,C> extends FeatureBasedRegression<O, R, C> {
     }
 
     /**
-     * Getter for property 'observations'.
+     * the observations currently in memory, oldest first (read-only, not a copy)
      *
      * @return Value for property 'observations'.
      */
-    public Queue<double[]> getObservations() {
+    public ObservationWindow getObservations() {
         return regression.getObservations();
     }
 }
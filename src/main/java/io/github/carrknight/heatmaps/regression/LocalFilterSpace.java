@@ -2,28 +2,54 @@ package io.github.carrknight.heatmaps.regression;
 
 import com.google.common.base.Preconditions;
 import io.github.carrknight.Observation;
-import io.github.carrknight.heatmaps.BeliefState;
 import io.github.carrknight.heatmaps.regression.distance.Similarity;
 import io.github.carrknight.utils.RewardFunction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
 import java.util.function.Supplier;
 
 /**
  * basically we build a 1D filter for each possible option but given a similarity function we can update the prediction
- * for one object given the observed reward for another
+ * for one object given the observed reward for another.
+ * Filters are stored by index in an IndexedFilterSpace, which also keeps track of which option is currently best;
+ * without a similarity function each observation touches one filter and the best option stays known in O(log n).
+ * A dense similarity function touches every filter at every observation; precomputed SimilarityNeighborhoods
+ * touch only the few that are similar enough.
+ * The space can also be read and fed by option index (as an IndexedBeliefState), skipping the option map entirely
  */
-public class LocalFilterSpace<O,R,C> implements BeliefState<O,R,C>
+public class LocalFilterSpace<O,R,C> implements FilterSpace<O,R,C>
 {
 
 
+    /**
+     * the options, in the same order as the filters
+     */
+    @NotNull
+    private final O[] options;
+
+    /**
+     * from option to the index of its filter
+     */
+    @NotNull
+    private final Map<O,Integer> optionIndex;
+
     @NotNull
-    private Map<O,OneDimensionalFilter> filters = new HashMap<>();
+    private final IndexedFilterSpace filters;
+
+    /**
+     * shared by all the drifting filters of this space
+     */
+    private final DriftClock clock = new DriftClock();
+
+    /**
+     * true if at least one filter follows the clock; unless the filter index is ranked in the clock's frame, ticking
+     * then invalidates it
+     */
+    private boolean driftingFilters;
 
 
     private final RewardFunction<O,R,C> utility;
@@ -32,6 +58,16 @@ public class LocalFilterSpace<O,R,C> implements BeliefState<O,R,C>
     @Nullable
     private Similarity<O,C> optionSimilarity;
 
+    /**
+     * precomputed sparse similarities; when present they replace optionSimilarity
+     */
+    @Nullable
+    private SimilarityNeighborhoods neighborhoods;
+
+    /**
+     * the given filters are used as they are (not copied): whoever keeps modifying them directly must call
+     * filtersChanged() afterwards. Until the first such call the best option is found by scanning all filters
+     */
     public LocalFilterSpace(
             O[] optionsAvailable,
             OneDimensionalFilter[] givenFilters,
@@ -44,11 +80,10 @@ public class LocalFilterSpace<O,R,C> implements BeliefState<O,R,C>
         this.utility = utility;
 
         this.optionSimilarity = optionSimilarity;
-        for(int i=0; i<givenFilters.length;i++)
-        {
-            filters.put(optionsAvailable[i],
-                        givenFilters[i]);
-        }
+        this.options = optionsAvailable.clone();
+        this.optionIndex = buildIndex(options);
+        this.filters = new IndexedFilterSpace(givenFilters.clone());
+        attachClock();
 
     }
 
@@ -64,11 +99,53 @@ public class LocalFilterSpace<O,R,C> implements BeliefState<O,R,C>
     {
         this.utility = utility;
         this.optionSimilarity = optionSimilarity;
-        for(O option : optionsAvailable)
-            filters.put(
-                    option,
-                    filterMaker.get()
-            );
+        this.options = optionsAvailable.clone();
+        this.optionIndex = buildIndex(options);
+        this.filters = new IndexedFilterSpace(options.length, filterMaker);
+        attachClock();
+    }
+
+
+    /**
+     * drifting filters follow our clock, so that advancing time doesn't mean visiting each of them.
+     * When they all drift the same way (same center, same positive factor) ticking doesn't change their order either
+     */
+    private void attachClock(){
+        driftingFilters = false;
+        boolean sameDrift = true;
+        double center = Double.NaN;
+        double factor = Double.NaN;
+        for(int i=0; i<options.length; i++)
+        {
+            OneDimensionalFilter filter = filters.getFilter(i);
+            if(filter instanceof DriftingFilter)
+            {
+                DriftingFilter drifting = (DriftingFilter) filter;
+                drifting.setClock(clock);
+                if(!driftingFilters)
+                {
+                    center = drifting.getDriftCenter();
+                    factor = drifting.getDriftFactor();
+                }
+                else
+                    sameDrift = sameDrift &&
+                            center == drifting.getDriftCenter() && factor == drifting.getDriftFactor();
+                driftingFilters = true;
+            }
+            else
+                sameDrift = false;
+        }
+        filters.setDriftFrame(driftingFilters && sameDrift && factor > 0 ? clock : null, center, factor);
+    }
+
+
+    private static <O> Map<O,Integer> buildIndex(O[] options){
+        Map<O,Integer> index = new HashMap<>(options.length * 2);
+        for(int i=0; i<options.length; i++)
+            index.put(options[i], i);
+        Preconditions.checkArgument(index.size()==options.length,
+                                    "options must all be different");
+        return index;
     }
 
 
@@ -84,44 +161,182 @@ public class LocalFilterSpace<O,R,C> implements BeliefState<O,R,C>
                                                  observation.getResultObserved(),
                                                  observation.getContext());
 
+        learn(optionIndex.get(observation.getChoiceMade()), reward, 1d, observation.getContext());
+
+    }
+
+
+    /**
+     * learn from a reward already extracted, without going through the option object.
+     * Similarities (if any) still spread it to the other filters; a dense similarity function is called with null
+     * context
+     *
+     * @param arm    the index of the option played
+     * @param reward the reward observed
+     * @param weight the strength of the observation (1 for standard observations)
+     */
+    @Override
+    public void observe(int arm, double reward, double weight) {
+        learn(arm, reward, weight, null);
+    }
+
+
+    private void learn(int observed, double reward, double weight, @Nullable C context){
+        //precomputed neighborhoods only touch the filters that matter, keeping the best option index up to date
+        if(neighborhoods != null)
+        {
+            int end = neighborhoods.getRowEnd(observed);
+            for(int position = neighborhoods.getRowStart(observed); position < end; position++)
+                filters.observe(neighborhoods.getNeighbor(position),
+                                reward,
+                                weight * neighborhoods.getWeight(position));
+        }
         //if you have no similarity function, I assume you don't want to generalize observations
         // between choices
-        if(optionSimilarity ==null)
+        else if(optionSimilarity ==null)
         {
 
-            filters.get(observation.getChoiceMade()).observe(
+            filters.observe(
+                    observed,
                     reward,
-                    1d
+                    weight
             );
         }
         else {
             //for all options available
-            for (Map.Entry<O, OneDimensionalFilter> filterEntry : filters.entrySet()) {
+            for (int i = 0; i < options.length; i++) {
 
-                double weight = optionSimilarity.similarity(
-                        filterEntry.getKey(),
-                        observation.getChoiceMade(),
-                        observation.getContext());
+                double similarity = optionSimilarity.similarity(
+                        options[i],
+                        options[observed],
+                        context);
 
-                filterEntry.getValue().observe(
+                filters.getFilter(i).observe(
                         reward,
-                        weight
+                        weight * similarity
                 );
 
             }
+            //everything may have moved: cheaper to rebuild the best option index when needed
+            filters.predictionsMoved();
         }
-
-
     }
 
 
+    @Override
     public void resetFilter(
             Supplier<? extends OneDimensionalFilter> generator
     ){
-        LinkedList<O> keys = new LinkedList<>(filters.keySet());
-        filters.clear();
-        for(O key : keys)
-            filters.put(key,generator.get());
+        filters.resetFilter(generator);
+        attachClock();
+    }
+
+
+    /**
+     * one time step passes for all filters that drift (Kalman, GoodBad...). This is O(1): each filter applies the steps
+     * it missed, in closed form, the next time it is read or observed. Filters that all drift alike keep their order,
+     * so the best option index stays valid; otherwise it is recomputed the next time somebody asks for it
+     */
+    public void advanceClock(){
+        clock.tick();
+        if(driftingFilters && !filters.isRankedInDriftFrame())
+            filters.predictionsMoved();
+    }
+
+
+    /**
+     * the prediction of the filter of this option; no hashing involved
+     *
+     * @param arm the index of the option we want to predict the value of
+     * @return the numerical value we predict
+     */
+    @Override
+    public double predict(int arm) {
+        return filters.predict(arm);
+    }
+
+
+    /**
+     * the arm whose filter predicts the highest value, ties split uniformly at random.
+     * Costs O(log n) unless a dense similarity function forced a rebuild
+     */
+    @Override
+    public int getBestArm(SplittableRandom randomizer) {
+        return filters.getBestArm(randomizer);
+    }
+
+
+    @Override
+    public boolean isBestArmIndexed() {
+        return filters.isBestArmIndexed();
+    }
+
+
+    /**
+     * draws from the filter posterior if it has one, otherwise returns its prediction
+     */
+    @Override
+    public double sample(int arm, SplittableRandom randomizer) {
+        return filters.sample(arm, randomizer);
+    }
+
+
+    @Override
+    public int getNumberOfArms() {
+        return options.length;
+    }
+
+
+    /**
+     * @param arm the index of a filter
+     * @return the option it refers to
+     */
+    @Override
+    public O getOption(int arm){
+        return options[arm];
+    }
+
+
+    /**
+     * the option whose filter predicts the highest value, ties split uniformly at random.
+     * Costs O(log n) as long as there is no similarity function
+     * @param randomizer used to break ties
+     * @return the best option or null if no prediction is finite
+     */
+    @Nullable
+    public O getBestOption(SplittableRandom randomizer){
+        int best = filters.getBestArm(randomizer);
+        return best >= 0 ? options[best] : null;
+    }
+
+
+    /**
+     * draw a plausible value for this option from its filter posterior (or just its prediction
+     * if the filter is not a PosteriorFilter)
+     * @param option the option
+     * @param randomizer randomizer
+     * @return a random draw of the option value
+     */
+    public double sample(O option, SplittableRandom randomizer){
+        return filters.sample(optionIndex.get(option), randomizer);
+    }
+
+
+    /**
+     * tell the space that its filters have been modified from outside so that
+     * the best option index is rebuilt next time it is needed (this also turns the index on for filters given to the
+     * constructor)
+     */
+    public void filtersChanged(){
+        filters.filtersChanged();
+    }
+
+
+    /**
+     * @return how many options (and filters) this space is keeping track of
+     */
+    public int getNumberOfOptions(){
+        return options.length;
     }
 
 
@@ -130,18 +345,59 @@ public class LocalFilterSpace<O,R,C> implements BeliefState<O,R,C>
      *
      * @return Value for property 'optionSimilarity'.
      */
+    @Override
     @Nullable
     public Similarity<O,C> getOptionSimilarity() {
         return optionSimilarity;
     }
 
     /**
-     * Setter for property 'optionSimilarity'.
+     * replace the similarity; this also drops any precomputed neighborhoods, which were built from the old one
      *
      * @param optionSimilarity Value to set for property 'optionSimilarity'.
      */
+    @Override
     public void setOptionSimilarity(@Nullable Similarity<O,C> optionSimilarity) {
         this.optionSimilarity = optionSimilarity;
+        this.neighborhoods = null;
+    }
+
+    /**
+     * Getter for property 'neighborhoods'.
+     *
+     * @return Value for property 'neighborhoods'.
+     */
+    @Nullable
+    public SimilarityNeighborhoods getNeighborhoods() {
+        return neighborhoods;
+    }
+
+    /**
+     * use precomputed (sparse) similarities instead of calling optionSimilarity for every filter at every
+     * observation. They must have been built over the same options, in the same order
+     *
+     * @param neighborhoods the neighborhoods (can be shared) or null to go back to optionSimilarity
+     */
+    public void setNeighborhoods(@Nullable SimilarityNeighborhoods neighborhoods) {
+        Preconditions.checkArgument(neighborhoods == null ||
+                                            neighborhoods.getNumberOfOptions() == options.length);
+        this.neighborhoods = neighborhoods;
+    }
+
+    /**
+     * replace the similarity function with its neighborhoods, precomputed now
+     * @param context context given to the similarity function
+     * @param maximumNeighbors at most this many neighbors per option
+     * @param minimumWeight only similarities above this are kept
+     * @return the neighborhoods built, so that other agents with the same options can share them
+     */
+    public SimilarityNeighborhoods precomputeNeighborhoods(
+            @Nullable C context, int maximumNeighbors, double minimumWeight){
+        Preconditions.checkState(optionSimilarity != null, "no similarity to precompute");
+        SimilarityNeighborhoods built = SimilarityNeighborhoods.build(
+                options, optionSimilarity, context, maximumNeighbors, minimumWeight);
+        setNeighborhoods(built);
+        return built;
     }
 
     /**
@@ -153,6 +409,6 @@ public class LocalFilterSpace<O,R,C> implements BeliefState<O,R,C>
      */
     @Override
     public double predict(O whereToPredict, C predictionContext) {
-        return filters.get(whereToPredict).predict();
+        return filters.predict(optionIndex.get(whereToPredict));
     }
 }
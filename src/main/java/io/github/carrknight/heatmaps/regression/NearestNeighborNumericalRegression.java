@@ -1,20 +1,47 @@
 package io.github.carrknight.heatmaps.regression;
 
-import ags.utils.dataStructures.MaxHeap;
 import ags.utils.dataStructures.trees.thirdGenKD.DistanceFunction;
-import ags.utils.dataStructures.trees.thirdGenKD.KdTree;
+import com.google.common.base.Preconditions;
 import io.github.carrknight.heatmaps.regression.distance.FeatureDistance;
 
+import java.util.Arrays;
+import java.util.function.DoubleBinaryOperator;
+
 /**
  * nearest neighbour regression implemented by KD-Tree. Simple and scalable although with discontinuities everywhere!
+ * Memory can be bounded: once maximumSize observations are stored the eviction policy decides which one a new
+ * observation replaces (the oldest, a random one, or none).
+ * Predictions never write to shared state, so many threads can predict at once (but not while someone observes).
+ * Each query needs a small neighbor buffer: predict(x) allocates one, callers predicting in a loop can keep their own
+ * QueryBuffer (one per thread) and pass it to predict(x, buffer)
  */
 public class NearestNeighborNumericalRegression implements NumericalRegression {
 
 
+    /**
+     * weights below this are ignored
+     */
+    static final double CUTOFF = .00001;
+
     /**
      * KdTree doing all the work
      */
-    private final KdTree<Double> nearestNeighborTree;
+    private final DynamicKdTree nearestNeighborTree;
+
+    /**
+     * how many observations to keep at most
+     */
+    private final int maximumSize;
+
+    /**
+     * which observation to forget when full
+     */
+    private final NeighborEviction eviction;
+
+    /**
+     * observations received so far (including discarded ones)
+     */
+    private long observed = 0;
 
     /**
      * divide each feature similarity by this to reweight them.
@@ -40,16 +67,34 @@ public class NearestNeighborNumericalRegression implements NumericalRegression {
      * how do we judge the similarity between two nodes (this object basically just adapts our similarity function
      * \to the similarity function of the KD tree)
      */
-    private DistanceFunction treeDistance;
+    private volatile DistanceFunction treeDistance;
 
 
     public NearestNeighborNumericalRegression(
             double[] bandwidths,
             FeatureDistance distance, int maxNeighbours) {
+        this(bandwidths, distance, maxNeighbours, Integer.MAX_VALUE, NeighborEviction.fifo());
+    }
+
+    /**
+     * @param bandwidths divide each feature distance by this
+     * @param distance distance between features
+     * @param maxNeighbours how many neighbours to average
+     * @param maximumSize how many observations to keep at most
+     * @param eviction which one to forget when there are too many
+     */
+    public NearestNeighborNumericalRegression(
+            double[] bandwidths,
+            FeatureDistance distance, int maxNeighbours,
+            int maximumSize, NeighborEviction eviction) {
+        Preconditions.checkArgument(maximumSize > 0, "need to keep at least one observation");
+        Preconditions.checkArgument(maxNeighbours > 0, "need at least one neighbour");
         this.bandwidths = bandwidths;
         this.transformer = distance;
         this.maxNeighbours = maxNeighbours;
-        this.nearestNeighborTree = new KdTree<>(bandwidths.length);
+        this.maximumSize = maximumSize;
+        this.eviction = eviction;
+        this.nearestNeighborTree = new DynamicKdTree(bandwidths.length, Math.min(maximumSize, 16));
         rebuildDistanceFunction(bandwidths);
     }
 
@@ -60,6 +105,16 @@ public class NearestNeighborNumericalRegression implements NumericalRegression {
      */
     @Override
     public double predict(double[] x) {
+        return predict(x, new QueryBuffer());
+    }
+
+    /**
+     * as predict(x), but collecting neighbors in a buffer the caller owns, so repeated queries allocate nothing
+     * @param x the features
+     * @param buffer scratch space, not to be shared between threads predicting at the same time
+     * @return average value of nearest neighbours
+     */
+    public double predict(double[] x, QueryBuffer buffer) {
         //never bother if any feature is NaN
         if(!NumericalRegression.isValidInput(x))
             return Double.NaN;
@@ -67,21 +122,99 @@ public class NearestNeighborNumericalRegression implements NumericalRegression {
         if(nearestNeighborTree.size()<1)
             return Double.NaN;
 
-        MaxHeap<Double> neighbors = nearestNeighborTree.findNearestNeighbors(x,
-                                                                             this.maxNeighbours,
-                                                                             treeDistance);
+        return predict(x, buffer.neighbors, treeDistance, observed - 1);
 
-        double prediction = 0;
-        double size = neighbors.size();
-        while(neighbors.size()>0) {
-            prediction += neighbors.getMax();
-            neighbors.removeMax();
+
+    }
+
+    /**
+     * predict many points at once: same results as calling predict on each, but one neighbor buffer serves them all
+     * and queries are visited along a Z-order (Morton) curve so that consecutive ones walk the same part of the tree
+     * @param queries the points to predict
+     * @param out where to write the predictions (same order as the queries)
+     */
+    public void predictAll(double[][] queries, double[] out) {
+        Preconditions.checkArgument(out.length >= queries.length);
+        if(nearestNeighborTree.size()<1) {
+            Arrays.fill(out, 0, queries.length, Double.NaN);
+            return;
+        }
+
+        DynamicKdTree.Neighbors found = new DynamicKdTree.Neighbors();
+        DistanceFunction distance = treeDistance;
+        long newest = observed - 1;
+        int indexBits = Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(1, queries.length - 1));
+        long indexMask = (1L << indexBits) - 1;
+        for (long code : zOrder(queries, indexBits)) {
+            int query = (int) (code & indexMask);
+            out[query] = NumericalRegression.isValidInput(queries[query]) ?
+                    predict(queries[query], found, distance, newest) : Double.NaN;
         }
-        if(size>0)
-            prediction= prediction/size;
-        return  prediction;
+    }
+
+    /**
+     * the queries' indices sorted by Morton code: each long is the interleaved bits of the quantized coordinates, with
+     * the query index in its lowest indexBits bits
+     */
+    private long[] zOrder(double[][] queries, int indexBits){
+        int dimensions = bandwidths.length;
+        int bitsPerDimension = Math.min(20, (Long.SIZE - 1 - indexBits) / dimensions);
+
+        //quantize over the queries' bounding box
+        double[] minimum = new double[dimensions];
+        double[] maximum = new double[dimensions];
+        Arrays.fill(minimum, Double.POSITIVE_INFINITY);
+        Arrays.fill(maximum, Double.NEGATIVE_INFINITY);
+        for (double[] query : queries)
+            for(int d = 0; d < dimensions; d++)
+                if(Double.isFinite(query[d])) {
+                    minimum[d] = Math.min(minimum[d], query[d]);
+                    maximum[d] = Math.max(maximum[d], query[d]);
+                }
+
+        long[] codes = new long[queries.length];
+        long cells = 1L << bitsPerDimension;
+        for(int query = 0; query < queries.length; query++)
+        {
+            long code = 0;
+            for(int d = 0; d < dimensions && bitsPerDimension > 0; d++)
+            {
+                double width = maximum[d] - minimum[d];
+                long cell = 0;
+                if(width > 0 && Double.isFinite(queries[query][d]))
+                    cell = Math.min(cells - 1, (long) ((queries[query][d] - minimum[d]) / width * cells));
+                for(int bit = 0; bit < bitsPerDimension; bit++)
+                    code |= ((cell >>> bit) & 1L) << (bit * dimensions + d);
+            }
+            codes[query] = (code << indexBits) | query;
+        }
+        Arrays.sort(codes);
+        return codes;
+    }
 
+    /**
+     * the (weighted) average of the neighbors of x
+     */
+    private double predict(double[] x, DynamicKdTree.Neighbors found, DistanceFunction distance, long newest){
+        long maximumAge = eviction.getMaximumAge();
+        long oldestTime = newest - maximumAge > newest ? Long.MIN_VALUE : newest - maximumAge;
+        nearestNeighborTree.findNearest(x,
+                                        this.maxNeighbours,
+                                        distance,
+                                        oldestTime,
+                                        found);
 
+        double prediction = 0;
+        double weights = 0;
+        for(int i=0; i<found.size(); i++) {
+            int slot = found.getSlot(i);
+            double weight = eviction.weight(newest - nearestNeighborTree.getTime(slot));
+            prediction += weight * nearestNeighborTree.getValue(slot);
+            weights += weight;
+        }
+        if(weights < CUTOFF)
+            return Double.NaN;
+        return  prediction/weights;
     }
 
     /**
@@ -96,49 +229,80 @@ public class NearestNeighborNumericalRegression implements NumericalRegression {
         if(!NumericalRegression.isValidInput(x,y))
             return;
 
-        nearestNeighborTree.addPoint(
-                x,
-                y
-        );
+        long time = observed++;
+        int slot = eviction.slotFor(time, maximumSize);
+        if(slot < 0)
+            return;
+        assert slot < maximumSize;
+        //grow the tree by doubling until it reaches the maximum size
+        if(slot >= nearestNeighborTree.getNumberOfSlots())
+            nearestNeighborTree.ensureSlots(
+                    (int) Math.min(maximumSize, Math.max(slot + 1L, nearestNeighborTree.getNumberOfSlots() * 2L)));
+        nearestNeighborTree.set(slot, x, y, time);
 
     }
 
 
+    /**
+     * fix the bandwidths into the distance the tree uses; the distance never changes afterwards, it is replaced whole
+     */
     public void rebuildDistanceFunction(final double[] bandwidths) {
-        this.treeDistance =  new DistanceFunction() {
-            @Override
-            public double distance(double[] obs1, double[] obs2) {
-
-                double distance = 0;
-                for(int i = 0; i < obs1.length; i++)
-                {
-                    transformer.setBandwidth(bandwidths[i]);
-                    distance += transformer.distance(obs1[i],obs2[i]);
-                }
-                return distance;
+        DoubleBinaryOperator[] dimensions = new DoubleBinaryOperator[bandwidths.length];
+        for(int i = 0; i < bandwidths.length; i++)
+            dimensions[i] = transformer.atBandwidth(bandwidths[i]);
+        this.treeDistance = new SeparableDistance(dimensions);
+    }
 
-            }
 
-            @Override
-            public double distanceToRect(double[] observation,
-                                         double[] min,
-                                         double[] max) {
-                double distance = 0;
-                for(int i = 0; i < observation.length; i++)
-                {
-                    transformer.setBandwidth(bandwidths[i]);
-                    double diff = 0;
-                    if (observation[i] > max[i]) {
-                        diff = transformer.distance(observation[i],max[i]);
-                    }
-                    else if (observation[i] < min[i]) {
-                        diff = transformer.distance(observation[i],min[i]);
-                    }
-                    distance += diff;
+    /**
+     * the neighbors found by a query; reused from one query to the next, so keep one per thread
+     */
+    public static final class QueryBuffer {
+
+        private final DynamicKdTree.Neighbors neighbors = new DynamicKdTree.Neighbors();
+
+    }
+
+
+    /**
+     * sum of per-dimension distances, each with its bandwidth fixed; immutable, so it can be shared by threads
+     */
+    private static final class SeparableDistance implements DistanceFunction {
+
+        private final DoubleBinaryOperator[] dimensions;
+
+        private SeparableDistance(DoubleBinaryOperator[] dimensions) {
+            this.dimensions = dimensions;
+        }
+
+        @Override
+        public double distance(double[] obs1, double[] obs2) {
+
+            double distance = 0;
+            for(int i = 0; i < obs1.length; i++)
+                distance += dimensions[i].applyAsDouble(obs1[i], obs2[i]);
+            return distance;
+
+        }
+
+        @Override
+        public double distanceToRect(double[] observation,
+                                     double[] min,
+                                     double[] max) {
+            double distance = 0;
+            for(int i = 0; i < observation.length; i++)
+            {
+                double diff = 0;
+                if (observation[i] > max[i]) {
+                    diff = dimensions[i].applyAsDouble(observation[i],max[i]);
                 }
-                return distance;
+                else if (observation[i] < min[i]) {
+                    diff = dimensions[i].applyAsDouble(observation[i],min[i]);
+                }
+                distance += diff;
             }
-        };
+            return distance;
+        }
     }
 
     /**
@@ -166,4 +330,29 @@ public class NearestNeighborNumericalRegression implements NumericalRegression {
         rebuildDistanceFunction(bandwidths);
     }
 
+    /**
+     * Getter for property 'maximumSize'.
+     *
+     * @return Value for property 'maximumSize'.
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Getter for property 'eviction'.
+     *
+     * @return Value for property 'eviction'.
+     */
+    public NeighborEviction getEviction() {
+        return eviction;
+    }
+
+    /**
+     * @return how many observations are stored right now
+     */
+    public int getNumberOfObservations() {
+        return nearestNeighborTree.size();
+    }
+
 }
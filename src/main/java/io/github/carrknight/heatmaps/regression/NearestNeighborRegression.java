@@ -25,13 +25,28 @@ public class NearestNeighborRegression<O,R,C> extends FeatureBasedRegression<O,
             Function<Observation<O, R, C>, Double> yExtractor,
             double[] bandwidths,
             FeatureDistance transformer, int maxNeighbours) {
+        this(extractors, yExtractor, bandwidths, transformer, maxNeighbours,
+             Integer.MAX_VALUE, NeighborEviction.fifo());
+    }
+
+    /**
+     * a regression that keeps at most maximumSize observations, forgetting them as eviction dictates
+     */
+    public NearestNeighborRegression(
+            FeatureExtractor<O, C>[] extractors,
+            Function<Observation<O, R, C>, Double> yExtractor,
+            double[] bandwidths,
+            FeatureDistance transformer, int maxNeighbours,
+            int maximumSize, NeighborEviction eviction) {
         super(extractors, yExtractor);
         Preconditions.checkArgument(bandwidths.length==extractors.length,
                                     "The number of bandwidths should match number of extractors!");
         delegate = new NearestNeighborNumericalRegression(
                 bandwidths,
                 transformer,
-                maxNeighbours
+                maxNeighbours,
+                maximumSize,
+                eviction
         );
     }
 
@@ -45,6 +60,15 @@ public class NearestNeighborRegression<O,R,C> extends FeatureBasedRegression<O,
         return delegate.predict(x);
     }
 
+    /**
+     * predict many feature vectors at once, visiting them in an order that keeps the tree warm
+     * @param x the features of each point
+     * @param out where to write the predictions
+     */
+    public void predictAll(double[][] x, double[] out) {
+        delegate.predictAll(x, out);
+    }
+
     /**
      * Add observation to KD tree
      * @param y the endogenous variable observed
@@ -0,0 +1,89 @@
+package io.github.carrknight.heatmaps.regression;
+
+import com.google.common.base.Preconditions;
+
+import java.util.SplittableRandom;
+
+/**
+ * decides which observation a bounded nearest neighbor regression forgets to make room for a new one, and how much
+ * old observations still count
+ */
+public interface NeighborEviction {
+
+
+    /**
+     * @param observationNumber how many observations came before this one (0 for the first)
+     * @param maximumSize how many observations can be kept
+     * @return the slot (between 0 and maximumSize-1) to store the new observation in, replacing what was there;
+     * -1 to discard the new observation instead
+     */
+    int slotFor(long observationNumber, int maximumSize);
+
+
+    /**
+     * @param age how many observations have come after this one
+     * @return how much it counts in a prediction; when it drops below NearestNeighborNumericalRegression.CUTOFF the
+     * observation is ignored
+     */
+    default double weight(long age){
+        return 1;
+    }
+
+    /**
+     * @return the largest age that still counts (Long.MAX_VALUE if observations never expire)
+     */
+    default long getMaximumAge(){
+        return Long.MAX_VALUE;
+    }
+
+
+    /**
+     * keep the latest observations: the new one replaces the oldest
+     */
+    static NeighborEviction fifo(){
+        return (observationNumber, maximumSize) -> (int) (observationNumber % maximumSize);
+    }
+
+
+    /**
+     * keep a uniform sample of everything observed so far (reservoir sampling): the n-th observation replaces a
+     * random one with probability maximumSize/n
+     */
+    static NeighborEviction reservoir(SplittableRandom random){
+        return (observationNumber, maximumSize) -> {
+            if(observationNumber < maximumSize)
+                return (int) observationNumber;
+            long drawn = random.nextLong(observationNumber + 1);
+            return drawn < maximumSize ? (int) drawn : -1;
+        };
+    }
+
+
+    /**
+     * keep the latest observations, but weigh them by decay^age in predictions; observations so old that their weight
+     * is negligible are ignored altogether
+     * @param decay between 0 (exclusive) and 1
+     */
+    static NeighborEviction timeDecay(double decay){
+        Preconditions.checkArgument(decay > 0 && decay <= 1, "decay must be in (0,1]");
+        final long maximumAge = decay == 1 ? Long.MAX_VALUE :
+                (long) Math.floor(Math.log(NearestNeighborNumericalRegression.CUTOFF) / Math.log(decay));
+        return new NeighborEviction() {
+            @Override
+            public int slotFor(long observationNumber, int maximumSize) {
+                return (int) (observationNumber % maximumSize);
+            }
+
+            @Override
+            public double weight(long age) {
+                return Math.pow(decay, age);
+            }
+
+            @Override
+            public long getMaximumAge() {
+                return maximumAge;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,185 @@
+package io.github.carrknight.heatmaps.regression;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * the last n numerical observations (x_1,x_2,\dots,x_d,y), oldest first, stored in a single flat ring buffer of
+ * doubles: observation slot s lives at [s*(d+1), (s+1)*(d+1)) with y last.
+ * Appending and evicting the oldest are O(1) and nothing is allocated once the buffer has grown to capacity
+ * (it grows by doubling so that a large capacity that is never reached costs nothing).
+ * Outside this package it is a read-only view: whoever owns it is the only one who can append
+ */
+public class ObservationWindow {
+
+
+    private final int dimensions;
+
+    /**
+     * d+1
+     */
+    private final int stride;
+
+    private double[] data;
+
+    /**
+     * slot of the oldest observation
+     */
+    private int start = 0;
+
+    private int size = 0;
+
+    private int capacity;
+
+
+    public ObservationWindow(int dimensions, int capacity) {
+        Preconditions.checkArgument(dimensions > 0, "no dimensions!");
+        Preconditions.checkArgument(capacity > 0, "need to keep at least one observation");
+        this.dimensions = dimensions;
+        this.stride = dimensions + 1;
+        this.capacity = capacity;
+        this.data = new double[Math.min(capacity, 16) * stride];
+    }
+
+
+    /**
+     * add an observation, evicting the oldest if the window is full
+     * @param x the covariates (only the first d are read)
+     * @param y the observed value
+     * @return the slot it was written in
+     */
+    int append(double[] x, double y){
+        int allocated = data.length / stride;
+        if(size == allocated && allocated < capacity)
+            relayout(Math.min(capacity, allocated * 2));
+
+        int slot;
+        if(size < capacity)
+        {
+            slot = physicalSlot(size);
+            size++;
+        }
+        else {
+            slot = start;
+            start = start + 1 == capacity ? 0 : start + 1;
+        }
+        int offset = slot * stride;
+        System.arraycopy(x, 0, data, offset, dimensions);
+        data[offset + dimensions] = y;
+        return slot;
+    }
+
+
+    /**
+     * change how many observations to keep; if it shrinks the oldest are dropped
+     */
+    void setCapacity(int capacity){
+        Preconditions.checkArgument(capacity > 0, "need to keep at least one observation");
+        if(size > capacity)
+        {
+            //drop the oldest
+            int dropped = size - capacity;
+            start = physicalSlot(dropped);
+            size = capacity;
+        }
+        this.capacity = capacity;
+        relayout(Math.max(Math.min(capacity, 16), size));
+    }
+
+
+    /**
+     * copy everything, oldest first, at the start of a new array of this many slots
+     */
+    private void relayout(int slots){
+        double[] newData = new double[slots * stride];
+        int firstPart = Math.min(size, data.length / stride - start);
+        System.arraycopy(data, start * stride, newData, 0, firstPart * stride);
+        System.arraycopy(data, 0, newData, firstPart * stride, (size - firstPart) * stride);
+        data = newData;
+        start = 0;
+    }
+
+
+    /**
+     * @param observation 0 for the oldest, size-1 for the newest
+     * @return the slot where it is stored
+     */
+    private int physicalSlot(int observation){
+        int slot = start + observation;
+        int allocated = data.length / stride;
+        return slot >= allocated ? slot - allocated : slot;
+    }
+
+
+    /**
+     * @param observation 0 for the oldest, size-1 for the newest
+     * @param dimension which covariate
+     * @return x_dimension of that observation
+     */
+    public double getX(int observation, int dimension){
+        assert observation < size && dimension < dimensions;
+        return data[physicalSlot(observation) * stride + dimension];
+    }
+
+    /**
+     * @param observation 0 for the oldest, size-1 for the newest
+     * @return y of that observation
+     */
+    public double getY(int observation){
+        assert observation < size;
+        return data[physicalSlot(observation) * stride + dimensions];
+    }
+
+
+    /**
+     * @return the slot of the oldest observation (the one the next append evicts, if full)
+     */
+    int getOldestSlot(){
+        return start;
+    }
+
+    /**
+     * @return how many slots the raw array has room for
+     */
+    int getNumberOfSlots(){
+        return data.length / stride;
+    }
+
+    /**
+     * where the oldest observation starts in the raw array; the window then continues for
+     * getFirstSegmentLength() observations, wraps around to 0 and goes on for the rest
+     */
+    int getStartOffset(){
+        return start * stride;
+    }
+
+    /**
+     * how many observations can be read sequentially from getStartOffset() before wrapping
+     */
+    int getFirstSegmentLength(){
+        return Math.min(size, data.length / stride - start);
+    }
+
+    /**
+     * the raw ring buffer (not a copy!)
+     */
+    double[] getData(){
+        return data;
+    }
+
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isFull(){
+        return size == capacity;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
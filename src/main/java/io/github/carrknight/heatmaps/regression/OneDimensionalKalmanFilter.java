@@ -1,12 +1,17 @@
 package io.github.carrknight.heatmaps.regression;
 
+import io.github.carrknight.utils.RandomVariates;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.SplittableRandom;
+
 import static io.github.carrknight.heatmaps.regression.GoodBadFilter.normalPDF;
 
 /**
  * a small version of the Kalman filter that doesn't really fit a linear model but just keeps observing only
  * a one dimensional evidence and tracks a one-dimensional space
  */
-public class OneDimensionalKalmanFilter implements OneDimensionalFilter {
+public class OneDimensionalKalmanFilter implements PosteriorFilter, DriftingFilter {
 
     /**
      * the A of the model
@@ -33,6 +38,17 @@ public class OneDimensionalKalmanFilter implements OneDimensionalFilter {
      */
     private double drift;
 
+    /**
+     * when not null, time steps are applied lazily following this clock
+     */
+    @Nullable
+    private DriftClock clock;
+
+    /**
+     * the clock time this filter has drifted up to
+     */
+    private long lastTick;
+
 
     public OneDimensionalKalmanFilter(
             double transitionMultiplier, double emissionMultiplier, double uncertainty, double stateEstimate,
@@ -49,10 +65,76 @@ public class OneDimensionalKalmanFilter implements OneDimensionalFilter {
      */
     public void drift()
     {
+        catchUp();
         stateEstimate = stateEstimate * transitionMultiplier;
         uncertainty = uncertainty *(transitionMultiplier*transitionMultiplier)+drift;
     }
 
+    /**
+     * n steps at once: the estimate is multiplied by A^n and P becomes A^(2n) P + Sigma_m (1 + A^2 + ... + A^(2n-2))
+     * @param steps number of time steps, non negative
+     */
+    @Override
+    public void drift(long steps) {
+        catchUp();
+        applyDrift(steps);
+    }
+
+    private void applyDrift(long steps){
+        if(steps <= 0)
+            return;
+        double squaredTransition = transitionMultiplier*transitionMultiplier;
+        if(squaredTransition == 1)
+        {
+            if(transitionMultiplier < 0 && steps % 2 == 1)
+                stateEstimate = -stateEstimate;
+            uncertainty = uncertainty + steps * drift;
+        }
+        else {
+            double growth = Math.pow(squaredTransition, steps);
+            stateEstimate = stateEstimate * Math.pow(transitionMultiplier, steps);
+            uncertainty = uncertainty * growth + drift * (growth - 1) / (squaredTransition - 1);
+        }
+    }
+
+    @Override
+    public void setClock(@Nullable DriftClock clock) {
+        catchUp();
+        this.clock = clock;
+        if(clock != null)
+            lastTick = clock.getTime();
+    }
+
+    @Nullable
+    @Override
+    public DriftClock getClock() {
+        return clock;
+    }
+
+    /**
+     * the estimate is multiplied by A each step
+     */
+    @Override
+    public double getDriftCenter() {
+        return 0;
+    }
+
+    @Override
+    public double getDriftFactor() {
+        return transitionMultiplier;
+    }
+
+    /**
+     * apply whatever ticks of the clock we have missed
+     */
+    private void catchUp(){
+        if(clock != null && clock.getTime() != lastTick)
+        {
+            applyDrift(clock.getTime() - lastTick);
+            lastTick = clock.getTime();
+        }
+    }
+
     /**
      * updates state estimate with new evidence
      * @param evidence the measurement
@@ -61,6 +143,7 @@ public class OneDimensionalKalmanFilter implements OneDimensionalFilter {
     public void observe(double evidence, double weight)
     {
 
+        catchUp();
 
         //weighs the importance of this new observation
         double kalmanGain =  uncertainty * emissionMultiplier /
@@ -76,15 +159,26 @@ public class OneDimensionalKalmanFilter implements OneDimensionalFilter {
      */
     @Override
     public double predict() {
+        catchUp();
         return stateEstimate;
     }
 
+    /**
+     * the state posterior is normal with mean stateEstimate and variance uncertainty
+     */
+    @Override
+    public double sample(SplittableRandom randomizer) {
+        catchUp();
+        return stateEstimate + Math.sqrt(uncertainty) * RandomVariates.nextGaussian(randomizer);
+    }
+
     /**
      * Getter for property 'uncertainty'.
      *
      * @return Value for property 'uncertainty'.
      */
     public double getUncertainty() {
+        catchUp();
         return uncertainty;
     }
 
@@ -94,16 +188,17 @@ public class OneDimensionalKalmanFilter implements OneDimensionalFilter {
      * @return Value for property 'stateEstimate'.
      */
     public double getStateEstimate() {
+        catchUp();
         return stateEstimate;
     }
 
     public double getStandardDeviation(){
-        return Math.sqrt(uncertainty);
+        return Math.sqrt(getUncertainty());
     }
 
     public double getProbabilityStateIsThis(double guess)
     {
-        return normalPDF(stateEstimate,getStandardDeviation()).apply(guess);
+        return normalPDF(getStateEstimate(),getStandardDeviation()).apply(guess);
     }
 
     /**
@@ -139,6 +234,7 @@ public class OneDimensionalKalmanFilter implements OneDimensionalFilter {
      * @param uncertainty Value to set for property 'uncertainty'.
      */
     public void setUncertainty(double uncertainty) {
+        catchUp();
         this.uncertainty = uncertainty;
     }
 
@@ -148,6 +244,7 @@ public class OneDimensionalKalmanFilter implements OneDimensionalFilter {
      * @param stateEstimate Value to set for property 'stateEstimate'.
      */
     public void setStateEstimate(double stateEstimate) {
+        catchUp();
         this.stateEstimate = stateEstimate;
     }
 
@@ -161,6 +258,7 @@ public class OneDimensionalKalmanFilter implements OneDimensionalFilter {
     }
 
     public void setDrift(double drift) {
+        catchUp();
         this.drift = drift;
     }
 
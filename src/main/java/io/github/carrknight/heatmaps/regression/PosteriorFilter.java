@@ -0,0 +1,20 @@
+package io.github.carrknight.heatmaps.regression;
+
+import java.util.SplittableRandom;
+
+/**
+ * a 1D filter that keeps a full posterior distribution over what it is tracking (rather than just a point estimate),
+ * so that we can draw plausible values from it. This is what Thompson sampling needs
+ */
+public interface PosteriorFilter extends OneDimensionalFilter {
+
+
+    /**
+     * draw a value from the current posterior; its expectation should be predict()
+     * @param randomizer randomizer
+     * @return a random draw of the value being tracked
+     */
+    double sample(SplittableRandom randomizer);
+
+
+}
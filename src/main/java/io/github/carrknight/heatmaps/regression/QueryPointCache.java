@@ -0,0 +1,172 @@
+package io.github.carrknight.heatmaps.regression;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.heatmaps.regression.distance.FeatureKernel;
+
+/**
+ * the numerator (sum of kernel*y) and denominator (sum of kernels) of a kernel regression at a fixed set of query
+ * points, kept up to date one observation at a time: adding an observation adds its kernel to the query points within
+ * its support, evicting it subtracts the very same amounts. Reading the prediction at any query point is then O(1).
+ * Query points are indexed in a grid hash (when kernels have finite support) so that each update only visits the
+ * points it actually reaches
+ */
+class QueryPointCache {
+
+
+    private final FeatureKernel[] kernels;
+
+    private final double cutoff;
+
+    /**
+     * query point q is at [q*d, (q+1)*d)
+     */
+    private final double[] queries;
+
+    private final int numberOfQueries;
+
+    private final double[] numerator;
+
+    private final double[] denominator;
+
+    /**
+     * null when some kernel has no finite support (then every update visits every query point)
+     */
+    private final GridIndex grid;
+
+    /**
+     * scratch
+     */
+    private final int[] candidates;
+
+    private final double[] radius;
+
+
+    QueryPointCache(FeatureKernel[] kernels, double[][] queryPoints, double cutoff) {
+        Preconditions.checkArgument(queryPoints.length > 0, "no query points");
+        this.kernels = kernels;
+        this.cutoff = cutoff;
+        int dimensions = kernels.length;
+        this.numberOfQueries = queryPoints.length;
+        this.queries = new double[numberOfQueries * dimensions];
+        for(int q=0; q<numberOfQueries; q++)
+        {
+            Preconditions.checkArgument(queryPoints[q].length == dimensions);
+            System.arraycopy(queryPoints[q], 0, queries, q * dimensions, dimensions);
+        }
+        this.numerator = new double[numberOfQueries];
+        this.denominator = new double[numberOfQueries];
+        this.candidates = new int[numberOfQueries];
+        this.radius = new double[dimensions];
+
+        int[] allDimensions = new int[dimensions];
+        double[] cellSize = new double[dimensions];
+        boolean indexable = true;
+        for(int i=0; i<dimensions; i++)
+        {
+            allDimensions[i] = i;
+            cellSize[i] = kernels[i].getSupportRadius(cutoff);
+            indexable = indexable && cellSize[i] > 0 && Double.isFinite(cellSize[i]);
+        }
+        if(indexable)
+        {
+            grid = new GridIndex(allDimensions, cellSize, numberOfQueries);
+            for(int q=0; q<numberOfQueries; q++)
+                grid.insert(q, queries, q * dimensions);
+        }
+        else
+            grid = null;
+    }
+
+
+    /**
+     * add (sign 1) or remove (sign -1) an observation's contribution
+     * @param data array holding the observation as [x_1,\dots,x_d,y]
+     * @param offset where the observation starts
+     * @param sign 1 to add, -1 to remove
+     */
+    void update(double[] data, int offset, double sign){
+        int dimensions = kernels.length;
+        double y = data[offset + dimensions];
+
+        int found = -1;
+        if(grid != null)
+        {
+            boolean finite = true;
+            for(int i=0; i<dimensions; i++)
+            {
+                double support = kernels[i].getSupportRadius(cutoff);
+                finite = finite && Double.isFinite(support);
+                radius[i] = support * (1 + 1e-6) + 1e-12;
+            }
+            //the observation is "x" here: the grid reads its first d entries
+            if(finite)
+                found = grid.collect(offset == 0 ? data : copyOf(data, offset), radius, candidates);
+        }
+
+        if(found < 0)
+            for(int q=0; q<numberOfQueries; q++)
+                accumulate(q, data, offset, y, sign);
+        else
+            for(int c=0; c<found; c++)
+                accumulate(candidates[c], data, offset, y, sign);
+    }
+
+
+    /**
+     * same kernel product and cutoffs as the full scan in KernelNumericalRegression
+     */
+    private void accumulate(int query, double[] data, int offset, double y, double sign){
+        int dimensions = kernels.length;
+        int queryOffset = query * dimensions;
+        double currentKernel = 1;
+        for(int i=0; i<dimensions; i++)
+        {
+            currentKernel *= kernels[i].similarity(queries[queryOffset + i], data[offset + i]);
+            if(currentKernel < cutoff)
+                return;
+        }
+        if(currentKernel > cutoff)
+        {
+            denominator[query] += sign * currentKernel;
+            numerator[query] += sign * currentKernel * y;
+        }
+    }
+
+
+    private double[] scratchPoint;
+
+    private double[] copyOf(double[] data, int offset){
+        if(scratchPoint == null)
+            scratchPoint = new double[kernels.length];
+        System.arraycopy(data, offset, scratchPoint, 0, kernels.length);
+        return scratchPoint;
+    }
+
+
+    void clear(){
+        for(int q=0; q<numberOfQueries; q++)
+        {
+            numerator[q] = 0;
+            denominator[q] = 0;
+        }
+    }
+
+
+    double predict(int query){
+        if(denominator[query] < cutoff)
+            return Double.NaN;
+        return numerator[query] / denominator[query];
+    }
+
+
+    void predictAll(double[] out){
+        Preconditions.checkArgument(out.length >= numberOfQueries);
+        for(int q=0; q<numberOfQueries; q++)
+            out[q] = denominator[q] < cutoff ? Double.NaN : numerator[q] / denominator[q];
+    }
+
+
+    int getNumberOfQueries() {
+        return numberOfQueries;
+    }
+}
@@ -1,11 +1,16 @@
 package io.github.carrknight.heatmaps.regression;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 
+import java.util.Arrays;
+
 /**
  * the least squares filter as implemented in :
  * http://www.cs.tut.fi/~tabus/course/ASP/LectureNew10.pdf
  * Basically a recursive least squares.
+ * Updates allocate nothing: the uncertainty matrix is a packed symmetric triangle updated in place, and forgetting only
+ * changes a scale factor
  */
 public class RecursiveLeastSquaresRegression extends   WeightedNumericalRegression
 {
@@ -13,9 +18,16 @@ public class RecursiveLeastSquaresRegression extends   WeightedNumericalRegressi
 
 
     /**
-     * this is usually the P matrix, telling us our uncertainty
+     * this is usually the P matrix, telling us our uncertainty. P is symmetric so only its upper triangle is kept,
+     * row by row (see index), and it is stored divided by uncertaintyScale: forgetting divides P by the forgetting
+     * factor at every step, which here only touches the scale
+     */
+    private final double[] uncertainty;
+
+    /**
+     * P = uncertaintyScale * uncertainty
      */
-    private final  double[][] uncertainty;
+    private double uncertaintyScale = 1;
 
     /**
      * these are our betas so far
@@ -27,14 +39,62 @@ public class RecursiveLeastSquaresRegression extends   WeightedNumericalRegressi
      */
     private double exponentialForgetting;
 
+    /**
+     * scratch: uncertainty times x (unscaled)
+     */
+    private final double[] pi;
+
+    /**
+     * batch scratch, grown as needed: S X' (unscaled, then overwritten by S X' L'^-1) and X' stored a dimension at a
+     * time, the Woodbury matrix (and then its Cholesky factor), the prediction errors and which rows count
+     */
+    private double[] batchProducts = new double[0];
+
+    private double[] batchMatrix = new double[0];
+
+    private double[] batchErrors = new double[0];
+
+    private int[] batchRows = new int[0];
+
+    private double[] batchCovariates = new double[0];
+
+    /**
+     * when the scale drifts beyond these it is folded back into the matrix, so that neither under/overflows
+     */
+    private static final double MAXIMUM_SCALE = 1e100;
+
+    private static final double MINIMUM_SCALE = 1e-100;
+
+    /**
+     * the block update does more arithmetic than observing rows one at a time, but reads the triangle three times
+     * instead of twice per row: it only pays off once the triangle doesn't fit in cache and enough rows share each
+     * pass. Smaller batches are observed one row at a time
+     */
+    private static final int BLOCK_MINIMUM_DIMENSION = 64;
+
+    private static final int BLOCK_MINIMUM_ROWS = 8;
+
+    /**
+     * take the block path whatever the size of the batch
+     */
+    @VisibleForTesting
+    boolean alwaysBlock = false;
+
 
     public RecursiveLeastSquaresRegression(double[][] uncertainty,
                                            double[] beta,
                                            double exponentialForgetting) {
         Preconditions.checkArgument(beta.length==uncertainty.length);
-        this.uncertainty = uncertainty;
+        int dimension = beta.length;
+        this.uncertainty = new double[dimension * (dimension + 1) / 2];
+        //P ought to be symmetric already; averaging makes sure
+        for(int row=0; row<dimension; row++)
+            for(int column=row; column<dimension; column++)
+                this.uncertainty[index(row, column, dimension)] =
+                        (uncertainty[row][column] + uncertainty[column][row]) / 2;
         this.beta = beta;
         this.exponentialForgetting = exponentialForgetting;
+        this.pi = new double[dimension];
     }
 
     public RecursiveLeastSquaresRegression(double initialBeta,
@@ -42,13 +102,21 @@ public class RecursiveLeastSquaresRegression extends   WeightedNumericalRegressi
                                            int dimension,
                                            double exponentialForgetting) {
 
-        this.uncertainty = new double[dimension][dimension];
+        this.uncertainty = new double[dimension * (dimension + 1) / 2];
         this.beta = new double[dimension];
         for(int i=0; i<dimension; i++) {
             this.beta[i] = initialBeta;
-            this.uncertainty[i][i] = initialUncertainty;
+            this.uncertainty[index(i, i, dimension)] = initialUncertainty;
         }
         this.exponentialForgetting = exponentialForgetting;
+        this.pi = new double[dimension];
+    }
+
+    /**
+     * where element (row,column) of the upper triangle is in the packed array (row &lt;= column)
+     */
+    private static int index(int row, int column, int dimension){
+        return row * dimension - row * (row - 1) / 2 + (column - row);
     }
 
     /**
@@ -98,20 +166,26 @@ public class RecursiveLeastSquaresRegression extends   WeightedNumericalRegressi
 
         //going through the least squares filter as described here:
         //http://www.cs.tut.fi/~tabus/course/ASP/LectureNew10.pdf
-        double pi[] = new double[dimension];
-        for(int column=0; column<dimension; column++)
-            for(int row=0; row<dimension; row++)
-            {
-                pi[column] += x[row] * uncertainty[row][column];
-                assert(Double.isFinite(pi[column]));
-
+        //pi = P x / scale, walking the upper triangle once: each off-diagonal element counts for both halves
+        Arrays.fill(pi, 0);
+        int position = 0;
+        for(int row=0; row<dimension; row++)
+        {
+            pi[row] += uncertainty[position++] * x[row];
+            for(int column=row+1; column<dimension; column++) {
+                double element = uncertainty[position++];
+                pi[row] += element * x[column];
+                pi[column] += element * x[row];
             }
+        }
         //gamma is basically dispersion
         double gamma = exponentialForgetting / weight;
         assert(gamma != 0);
 
+        double quadratic = 0;
         for(int row=0; row<dimension; row++)
-            gamma+= x[row] *  pi[row];
+            quadratic += x[row] *  pi[row];
+        gamma += uncertaintyScale * quadratic;
 
         //if the dispersion is not invertible, do not add the observation
         if(gamma == 0)
@@ -121,20 +195,6 @@ public class RecursiveLeastSquaresRegression extends   WeightedNumericalRegressi
             return;
         }
 
-
-        //kalman gain
-        double[] kalman = new double[dimension];
-        for(int row=0; row<dimension; row++) {
-            assert(Double.isFinite( pi[row]));
-            assert(Double.isFinite( gamma));
-
-            kalman[row] = pi[row] / gamma;
-
-            assert(Double.isFinite( kalman[row]));
-
-
-        }
-
         //prediction error
         double prediction = 0;
         for(int i=0; i<x.length; i++)
@@ -142,32 +202,225 @@ public class RecursiveLeastSquaresRegression extends   WeightedNumericalRegressi
         double predictionError = y - prediction;
         assert (Double.isFinite(predictionError));
 
-        //update beta
+        //update beta by the kalman gain, P x / gamma
+        double gain = uncertaintyScale / gamma;
         for(int i=0; i<dimension; i++) {
-            beta[i] += predictionError * kalman[i];
+            beta[i] += predictionError * gain * pi[i];
             assert  Double.isFinite(beta[i]);
         }
-        //get P'
-        final double[][] prime = new double[dimension][dimension];
+
+        //P' = (P - P x x' P / gamma) / forgetting: a symmetric rank one update of the triangle, then the scale
+        position = 0;
         for(int row=0; row<dimension; row++)
-            for(int column=0; column<dimension; column++) {
-                prime[row][column] = kalman[row] * pi[column];
-                assert(Double.isFinite(prime[row][column])) : "pi " + pi[column] + " , kalman: " + kalman[column] ;
+        {
+            double rowFactor = gain * pi[row];
+            for(int column=row; column<dimension; column++) {
+                uncertainty[position++] -= rowFactor * pi[column];
+                assert(Double.isFinite(uncertainty[position-1]));
+            }
+        }
+        increaseUncertainty();
 
+
+    }
+
+
+    /**
+     * learn from many observations at once, with the same result (up to rounding) as observing them one after the
+     * other, in order. Rather than m rank one updates this is a single rank m (Woodbury) update:
+     * with forgetting f, after m observations P^-1 is f^m (P^-1 + sum_t f^-(t+1) w_t x_t x_t'), so that
+     * P' = f^-m (P - P X' (D + X P X')^-1 X P) where D is diagonal with f^(t+1)/w_t.
+     * That is one m by m Cholesky factorization plus three passes over the triangle, each doing O(m) work per element;
+     * small problems, whose triangle sits in cache anyway, are observed one row at a time since that is faster.
+     * Invalid observations are skipped (as observe would); those with 0 weight only make the filter forget.
+     * Negative weights (removing information) are treated as observe would, one at a time if the block is not
+     * positive definite anymore
+     * @param x covariates, one row per observation
+     * @param y to predict
+     * @param weight the weight of each observation (basically 1/sigma^2)
+     */
+    public void observe(double[][] x, double[] y, double[] weight){
+        Preconditions.checkArgument(x.length == y.length && y.length == weight.length);
+        int dimension = beta.length;
+
+        //rows that count, and how many observations (weightless included) go by for forgetting
+        if(batchRows.length < x.length) {
+            batchRows = new int[x.length];
+            batchErrors = new double[x.length];
+        }
+        //errors hold the diagonal of D until they are replaced by the prediction errors
+        double[] errors = batchErrors;
+        int valid = 0;
+        int rows = 0;
+        double forgotten = 1;
+        for(int t=0; t<x.length; t++)
+        {
+            if(!NumericalRegression.isValidInput(x[t]) || !Double.isFinite(y[t]) || !Double.isFinite(weight[t]))
+                continue;
+            assert x[t].length == dimension;
+            valid++;
+            forgotten *= exponentialForgetting;
+            if(weight[t] != 0) {
+                batchRows[rows] = t;
+                errors[rows] = forgotten / weight[t];
+                rows++;
             }
-        //update uncertainty
-        for(int row=0; row<dimension; row++)
-            for(int column=0; column<dimension; column++)
+        }
+        if(rows == 0)
+        {
+            increaseUncertainty(valid);
+            return;
+        }
+        if(!alwaysBlock && (dimension < BLOCK_MINIMUM_DIMENSION || rows < BLOCK_MINIMUM_ROWS))
+        {
+            for(int t=0; t<x.length; t++)
+                observe(x[t], y[t], weight[t]);
+            return;
+        }
+
+        //everything below is stored dimension by rows (X' and Z = P X', unscaled) so inner loops run over the rows
+        if(batchProducts.length < rows * dimension) {
+            batchProducts = new double[rows * dimension];
+            batchCovariates = new double[rows * dimension];
+        }
+        if(batchMatrix.length < rows * rows)
+            batchMatrix = new double[rows * rows];
+        double[] covariates = batchCovariates;
+        double[] products = batchProducts;
+        double[] matrix = batchMatrix;
+        for(int a=0; a<rows; a++)
+        {
+            double[] row = x[batchRows[a]];
+            for(int i=0; i<dimension; i++)
+                covariates[i * rows + a] = row[i];
+        }
+
+        //Z = S X' in a single pass over the triangle: each off-diagonal element counts for both halves
+        Arrays.fill(products, 0, rows * dimension, 0);
+        int position = 0;
+        for(int i=0; i<dimension; i++)
+        {
+            int rowI = i * rows;
+            double diagonal = uncertainty[position++];
+            for(int a=0; a<rows; a++)
+                products[rowI + a] += diagonal * covariates[rowI + a];
+            for(int j=i+1; j<dimension; j++)
             {
-                assert(Double.isFinite(prime[row][column]));
+                int rowJ = j * rows;
+                double element = uncertainty[position++];
+                for(int a=0; a<rows; a++) {
+                    products[rowI + a] += element * covariates[rowJ + a];
+                    products[rowJ + a] += element * covariates[rowI + a];
+                }
+            }
+        }
 
-                uncertainty[row][column]-=prime[row][column];
-                uncertainty[row][column]/=exponentialForgetting;
-                assert(Double.isFinite(uncertainty[row][column]));
+        //D + X P X' (lower triangle, then factored in place)
+        Arrays.fill(matrix, 0, rows * rows, 0);
+        for(int i=0; i<dimension; i++)
+        {
+            int rowI = i * rows;
+            for(int a=0; a<rows; a++)
+            {
+                double covariate = covariates[rowI + a];
+                int offset = a * rows;
+                for(int b=0; b<=a; b++)
+                    matrix[offset + b] += covariate * products[rowI + b];
+            }
+        }
+        for(int a=0; a<rows; a++)
+        {
+            int offset = a * rows;
+            for(int b=0; b<=a; b++)
+                matrix[offset + b] *= uncertaintyScale;
+            matrix[offset + a] += errors[a];
+        }
+        //the prediction errors
+        for(int a=0; a<rows; a++)
+        {
+            double[] row = x[batchRows[a]];
+            double prediction = 0;
+            for(int i=0; i<dimension; i++)
+                prediction += row[i] * beta[i];
+            errors[a] = y[batchRows[a]] - prediction;
+        }
+        if(!cholesky(matrix, rows))
+        {
+            //not positive definite as a block (negative weights, or numerically hopeless): go one at a time instead
+            for(int t=0; t<x.length; t++)
+                observe(x[t], y[t], weight[t]);
+            return;
+        }
+
+        //forward substitution: errors become L^-1 e and each row of Z becomes Z L'^-1
+        forwardSubstitution(matrix, rows, errors, 0);
+        for(int i=0; i<dimension; i++)
+            forwardSubstitution(matrix, rows, products, i * rows);
 
+        //beta += P X' (D + X P X')^-1 e
+        for(int i=0; i<dimension; i++)
+        {
+            int rowI = i * rows;
+            double correction = 0;
+            for(int a=0; a<rows; a++)
+                correction += products[rowI + a] * errors[a];
+            beta[i] += uncertaintyScale * correction;
+            assert Double.isFinite(beta[i]);
+        }
+        //S -= scale * Z Z', each element of the triangle once
+        position = 0;
+        for(int i=0; i<dimension; i++)
+        {
+            int rowI = i * rows;
+            for(int j=i; j<dimension; j++)
+            {
+                int rowJ = j * rows;
+                double product = 0;
+                for(int a=0; a<rows; a++)
+                    product += products[rowI + a] * products[rowJ + a];
+                uncertainty[position++] -= uncertaintyScale * product;
             }
+        }
+        increaseUncertainty(valid);
+    }
 
+    /**
+     * solves L v = b in place, L being the factored lower triangle and b the rows entries of vector from offset
+     */
+    private static void forwardSubstitution(double[] lower, int rows, double[] vector, int offset){
+        for(int a=0; a<rows; a++)
+        {
+            double value = vector[offset + a];
+            int row = a * rows;
+            for(int b=0; b<a; b++)
+                value -= lower[row + b] * vector[offset + b];
+            vector[offset + a] = value / lower[row + a];
+        }
+    }
 
+    /**
+     * in place Cholesky factorization of the lower triangle of a size by size row-major matrix
+     * @return false if the matrix is not (numerically) positive definite
+     */
+    private static boolean cholesky(double[] matrix, int size){
+        for(int j=0; j<size; j++)
+        {
+            double diagonal = matrix[j * size + j];
+            for(int k=0; k<j; k++)
+                diagonal -= matrix[j * size + k] * matrix[j * size + k];
+            if(!(diagonal > 0))
+                return false;
+            diagonal = Math.sqrt(diagonal);
+            matrix[j * size + j] = diagonal;
+            for(int i=j+1; i<size; i++)
+            {
+                double element = matrix[i * size + j];
+                for(int k=0; k<j; k++)
+                    element -= matrix[i * size + k] * matrix[j * size + k];
+                matrix[i * size + j] = element / diagonal;
+            }
+        }
+        return true;
     }
 
 
@@ -177,13 +430,51 @@ public class RecursiveLeastSquaresRegression extends   WeightedNumericalRegressi
      */
     public void increaseUncertainty()
     {
-        for(int row=0; row<beta.length; row++)
-            for(int column=0; column<beta.length; column++)
-            {
-                uncertainty[row][column]/=exponentialForgetting;
-            }
+        uncertaintyScale /= exponentialForgetting;
+        foldScale();
+
+
+    }
 
+    /**
+     * as many increaseUncertainty() at once
+     * @param steps how many time steps of forgetting
+     */
+    private void increaseUncertainty(int steps){
+        if(steps == 0)
+            return;
+        double scale = uncertaintyScale / Math.pow(exponentialForgetting, steps);
+        if(scale > 0 && Double.isFinite(scale))
+        {
+            uncertaintyScale = scale;
+            foldScale();
+        }
+        else
+            //too far in one go: fold as we go
+            for(int t=0; t<steps; t++)
+                increaseUncertainty();
+    }
 
+    /**
+     * when the scale drifts too far from 1, move it into the matrix
+     */
+    private void foldScale(){
+        if(uncertaintyScale > MAXIMUM_SCALE || uncertaintyScale < MINIMUM_SCALE)
+        {
+            for(int i=0; i<uncertainty.length; i++)
+                uncertainty[i] *= uncertaintyScale;
+            uncertaintyScale = 1;
+        }
+    }
+
+    /**
+     * @return element (row,column) of the uncertainty matrix P
+     */
+    public double getUncertainty(int row, int column){
+        int dimension = beta.length;
+        return uncertaintyScale * (row <= column ?
+                uncertainty[index(row, column, dimension)] :
+                uncertainty[index(column, row, dimension)]);
     }
 
     /**
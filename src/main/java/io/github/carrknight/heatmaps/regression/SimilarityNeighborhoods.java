@@ -0,0 +1,212 @@
+package io.github.carrknight.heatmaps.regression;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.heatmaps.regression.distance.Similarity;
+import io.github.carrknight.utils.IndexedMaxHeap;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * the similarity between every pair of options, computed once and stored sparsely: for each option observed we keep
+ * only the options whose similarity to it is meaningful (the top k, above a threshold or both) in compressed sparse
+ * row form. Row i lists the filters an observation of option i updates and with what weight.
+ * Immutable once built, so a single instance can be shared (and read concurrently) by every agent using the same
+ * option set. Because it is built once the similarity context is fixed at building time.
+ */
+public class SimilarityNeighborhoods {
+
+
+    /**
+     * neighbors of option i are in positions rowStart[i],...,rowStart[i+1]-1 of neighbors and weights
+     */
+    private final int[] rowStart;
+
+    /**
+     * for each row, the neighbors sorted by index
+     */
+    private final int[] neighbors;
+
+    private final double[] weights;
+
+
+    private SimilarityNeighborhoods(int[] rowStart, int[] neighbors, double[] weights) {
+        this.rowStart = rowStart;
+        this.neighbors = neighbors;
+        this.weights = weights;
+    }
+
+
+    /**
+     * builds the neighborhoods by computing all the n^2 similarities once.
+     * The weight of neighbor j in row i is similarity(options[j], options[i], context), the same the dense
+     * LocalFilterSpace loop would use
+     * @param options the options, in the same order as the filters that will use this
+     * @param similarity the similarity function
+     * @param context context given to the similarity function (can be null)
+     * @param maximumNeighbors at most this many neighbors per option (ties broken by index)
+     * @param minimumWeight only similarities strictly above this are kept (use 0 to drop just the useless ones)
+     * @param <O> type of option
+     * @param <C> context object
+     * @return the neighborhoods
+     */
+    public static <O,C> SimilarityNeighborhoods build(
+            O[] options,
+            Similarity<O,C> similarity,
+            @Nullable C context,
+            int maximumNeighbors,
+            double minimumWeight)
+    {
+        Preconditions.checkArgument(options.length>0, "Given no options!");
+        Preconditions.checkArgument(maximumNeighbors>0, "need at least one neighbor");
+        int n = options.length;
+        //with room for everybody there is nothing to rank: keep whatever passes the threshold
+        boolean keepAll = maximumNeighbors >= n;
+
+        int[] rowStart = new int[n+1];
+        //grown by doubling as rows fill: rows can be dense (n^2 would not even fit in an int for big n)
+        int[] neighbors = new int[Math.max(16, Math.min(n, maximumNeighbors))];
+        double[] weights = new double[neighbors.length];
+
+        //top k by weight, then written back in index order so that each row is walked forward
+        IndexedMaxHeap heap = keepAll ? null : new IndexedMaxHeap(n);
+        boolean[] kept = new boolean[n];
+        double[] row = new double[n];
+        int filled = 0;
+        for(int observed=0; observed<n; observed++)
+        {
+            int rowSize = 0;
+            for(int j=0; j<n; j++)
+            {
+                double weight = similarity.similarity(options[j], options[observed], context);
+                row[j] = weight;
+                boolean useful = weight > minimumWeight && Double.isFinite(weight);
+                if(keepAll)
+                {
+                    kept[j] = useful;
+                    if(useful)
+                        rowSize++;
+                }
+                else
+                    heap.update(j, useful ? weight : Double.NEGATIVE_INFINITY);
+            }
+            if(!keepAll)
+                for(; rowSize<maximumNeighbors; rowSize++)
+                {
+                    int best = heap.peek();
+                    if(heap.getKey(best) == Double.NEGATIVE_INFINITY)
+                        break;
+                    kept[best] = true;
+                    heap.update(best, Double.NEGATIVE_INFINITY);
+                }
+
+            if(filled + (long) rowSize > neighbors.length)
+            {
+                int capacity = grow(neighbors.length, filled + (long) rowSize);
+                neighbors = Arrays.copyOf(neighbors, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            for(int j=0; j<n; j++)
+                if(kept[j])
+                {
+                    kept[j] = false;
+                    neighbors[filled] = j;
+                    weights[filled] = row[j];
+                    filled++;
+                }
+            rowStart[observed+1] = filled;
+        }
+
+        //trim
+        if(filled < neighbors.length)
+        {
+            neighbors = Arrays.copyOf(neighbors, filled);
+            weights = Arrays.copyOf(weights, filled);
+        }
+        return new SimilarityNeighborhoods(rowStart, neighbors, weights);
+    }
+
+
+    /**
+     * largest array we try to allocate
+     */
+    private static final int MAXIMUM_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /**
+     * @return at least twice the capacity, and at least what is required
+     */
+    private static int grow(int capacity, long required){
+        Preconditions.checkArgument(required <= MAXIMUM_CAPACITY,
+                                    "%s neighbors don't fit in an array: lower maximumNeighbors or raise minimumWeight",
+                                    required);
+        return (int) Math.min(MAXIMUM_CAPACITY, Math.max(required, 2L * capacity));
+    }
+
+
+    /**
+     * keep every similarity above the threshold, however many they are
+     */
+    public static <O,C> SimilarityNeighborhoods aboveThreshold(
+            O[] options,
+            Similarity<O,C> similarity,
+            @Nullable C context,
+            double minimumWeight){
+        return build(options, similarity, context, options.length, minimumWeight);
+    }
+
+
+    /**
+     * keep the k most similar options (with positive similarity)
+     */
+    public static <O,C> SimilarityNeighborhoods topK(
+            O[] options,
+            Similarity<O,C> similarity,
+            @Nullable C context,
+            int k){
+        return build(options, similarity, context, k, 0);
+    }
+
+
+    /**
+     * @param observed the option observed
+     * @return the position of its first neighbor
+     */
+    public int getRowStart(int observed){
+        return rowStart[observed];
+    }
+
+    /**
+     * @param observed the option observed
+     * @return one past the position of its last neighbor
+     */
+    public int getRowEnd(int observed){
+        return rowStart[observed+1];
+    }
+
+    /**
+     * @param position between getRowStart and getRowEnd of some option
+     * @return the index of the neighbor at that position
+     */
+    public int getNeighbor(int position){
+        return neighbors[position];
+    }
+
+    /**
+     * @param position between getRowStart and getRowEnd of some option
+     * @return the similarity weight of the neighbor at that position
+     */
+    public double getWeight(int position){
+        return weights[position];
+    }
+
+    public int getNumberOfOptions(){
+        return rowStart.length-1;
+    }
+
+    /**
+     * @return total number of neighbors stored
+     */
+    public int getNumberOfEntries(){
+        return neighbors.length;
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.carrknight.heatmaps.regression.bank;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * many ExponentialMovingAverageFilter sharing the same alpha: each cell is just its average
+ * (NaN until the first observation with positive weight, unless an initial average is given)
+ */
+public class ExponentialMovingAverageFilterBank extends FilterBank {
+
+
+    private final double[] average;
+
+    private final double alpha;
+
+
+    public ExponentialMovingAverageFilterBank(int numberOfCells, double alpha) {
+        this(numberOfCells, Double.NaN, alpha);
+    }
+
+    public ExponentialMovingAverageFilterBank(int numberOfCells, double initialAverage, double alpha) {
+        super(numberOfCells);
+        this.average = new double[numberOfCells];
+        Arrays.fill(average, initialAverage);
+        this.alpha = alpha;
+    }
+
+    @Override
+    public double predict(int cell) {
+        return average[cell];
+    }
+
+    /**
+     * old * (1-w*alpha) + new * (w*alpha); only makes sense for 0<=weight<=1
+     */
+    @Override
+    public void observe(int cell, double evidence, double weight) {
+        Preconditions.checkArgument(weight<=1);
+        Preconditions.checkArgument(weight>=0);
+        //first observation with non-initialized EMA: just copy
+        if(Double.isNaN(average[cell]))
+        {
+            if(weight>0)
+                average[cell] = evidence;
+        }
+        else
+            average[cell] = (1-alpha* weight) * average[cell] + (alpha * weight) * evidence;
+    }
+
+    @Override
+    public void predictAll(double[] out) {
+        Preconditions.checkArgument(out.length >= average.length);
+        System.arraycopy(average, 0, out, 0, average.length);
+    }
+
+    /**
+     * Getter for property 'alpha'.
+     *
+     * @return Value for property 'alpha'.
+     */
+    public double getAlpha() {
+        return alpha;
+    }
+}
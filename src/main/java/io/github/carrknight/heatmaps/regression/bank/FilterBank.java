@@ -0,0 +1,104 @@
+package io.github.carrknight.heatmaps.regression.bank;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.heatmaps.regression.OneDimensionalFilter;
+
+import java.util.SplittableRandom;
+
+/**
+ * the struct-of-arrays twin of OneDimensionalFilter: the state of many filters of the same kind and with the same
+ * parameters (all K arms of a bandit, or all N*K agent-arm cells of a population) lives in parallel primitive arrays.
+ * Each cell behaves exactly like the filter object it replaces, but there is no object header, no pointer chase and no
+ * megamorphic call per cell, and the bulk methods are plain loops over arrays the JIT can unroll (or vectorize).
+ * Bulk methods (observe over many cells, driftAll) go straight to the arrays: if the cells are also plugged into a
+ * LocalFilterSpace or IndexedFilterSpace (through getFilters) call that space's filtersChanged() afterwards, or it will
+ * keep ranking options by their old predictions.
+ */
+public abstract class FilterBank {
+
+
+    private final int numberOfCells;
+
+
+    protected FilterBank(int numberOfCells) {
+        Preconditions.checkArgument(numberOfCells>0, "Given no cells!");
+        this.numberOfCells = numberOfCells;
+    }
+
+
+    /**
+     * @param cell the filter to read
+     * @return y or NaN if prediction is impossible
+     */
+    public abstract double predict(int cell);
+
+
+    /**
+     * learn from observation
+     * @param cell the filter learning
+     * @param evidence the exogenous variables observed
+     * @param weight the strength of the observation we have seen (1/sigma^2 if we know the uncertainty)
+     */
+    public abstract void observe(int cell, double evidence, double weight);
+
+
+    /**
+     * learn many observations at once; cells can repeat, in which case observations are learned in order.
+     * Spaces holding views of these cells are not told: call their filtersChanged()
+     * @param cells the filter learning each observation
+     * @param evidence what was observed
+     * @param weights the strength of each observation
+     */
+    public void observe(int[] cells, double[] evidence, double[] weights){
+        Preconditions.checkArgument(cells.length == evidence.length && cells.length == weights.length);
+        for(int i=0; i<cells.length; i++)
+            observe(cells[i], evidence[i], weights[i]);
+    }
+
+
+    /**
+     * write the prediction of every cell in out
+     * @param out array at least as long as the bank
+     */
+    public void predictAll(double[] out){
+        Preconditions.checkArgument(out.length >= numberOfCells);
+        for(int cell=0; cell<numberOfCells; cell++)
+            out[cell] = predict(cell);
+    }
+
+
+    /**
+     * draw a plausible value for a cell from its posterior; by default banks are certain and return predict
+     */
+    public double sample(int cell, SplittableRandom randomizer){
+        return predict(cell);
+    }
+
+
+    /**
+     * a OneDimensionalFilter reading and writing a single cell of this bank, to plug it in places that expect
+     * filter objects (LocalFilterSpace, IndexedFilterSpace...). The state stays in the bank.
+     * @param cell the cell
+     * @return a view of the cell
+     */
+    public OneDimensionalFilter getFilter(int cell){
+        Preconditions.checkElementIndex(cell, numberOfCells);
+        return new FilterBankCell(this, cell);
+    }
+
+
+    /**
+     * @return views of all the cells, in order
+     */
+    public OneDimensionalFilter[] getFilters(){
+        OneDimensionalFilter[] filters = new OneDimensionalFilter[numberOfCells];
+        for(int cell=0; cell<numberOfCells; cell++)
+            filters[cell] = getFilter(cell);
+        return filters;
+    }
+
+
+    public int getNumberOfCells() {
+        return numberOfCells;
+    }
+}
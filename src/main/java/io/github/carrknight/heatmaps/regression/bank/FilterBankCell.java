@@ -0,0 +1,55 @@
+package io.github.carrknight.heatmaps.regression.bank;
+
+import io.github.carrknight.heatmaps.regression.PosteriorFilter;
+
+import java.util.SplittableRandom;
+
+/**
+ * a single cell of a filter bank seen as a filter object
+ */
+public class FilterBankCell implements PosteriorFilter {
+
+
+    private final FilterBank bank;
+
+    private final int cell;
+
+
+    public FilterBankCell(FilterBank bank, int cell) {
+        this.bank = bank;
+        this.cell = cell;
+    }
+
+    @Override
+    public double predict() {
+        return bank.predict(cell);
+    }
+
+    @Override
+    public void observe(double evidence, double weight) {
+        bank.observe(cell, evidence, weight);
+    }
+
+    @Override
+    public double sample(SplittableRandom randomizer) {
+        return bank.sample(cell, randomizer);
+    }
+
+    /**
+     * Getter for property 'bank'.
+     *
+     * @return Value for property 'bank'.
+     */
+    public FilterBank getBank() {
+        return bank;
+    }
+
+    /**
+     * Getter for property 'cell'.
+     *
+     * @return Value for property 'cell'.
+     */
+    public int getCell() {
+        return cell;
+    }
+}
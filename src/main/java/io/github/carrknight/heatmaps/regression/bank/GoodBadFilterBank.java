@@ -0,0 +1,92 @@
+package io.github.carrknight.heatmaps.regression.bank;
+
+import io.github.carrknight.heatmaps.regression.GoodBadFilter;
+
+import java.util.SplittableRandom;
+
+/**
+ * many GoodBadFilter sharing the same good and bad priors: each cell is just the log odds of being a good spot
+ */
+public class GoodBadFilterBank extends FilterBank {
+
+    /**
+     * gives us the mean for the bad prior
+     */
+    private final double badAverage;
+
+    /**
+     * gives us the mean for the good prior
+     */
+    private final double goodAverage;
+
+    /**
+     * daily drift of probabilities towards the middle
+     */
+    private final double drift;
+
+    /**
+     * log(P(good)/P(bad)) of each cell, as in GoodBadFilter
+     */
+    private final double[] logOdds;
+
+    /**
+     * (good-bad)/(2 sigma^2)
+     */
+    private final double likelihoodRatioSlope;
+
+    /**
+     * good + bad
+     */
+    private final double averagesSum;
+
+
+    public GoodBadFilterBank(
+            int numberOfCells, double badAverage, double goodAverage, double standardDeviation, double drift) {
+        super(numberOfCells);
+        this.badAverage = badAverage;
+        this.goodAverage = goodAverage;
+        this.drift = drift;
+        this.likelihoodRatioSlope = (goodAverage - badAverage) / (2 * standardDeviation * standardDeviation);
+        this.averagesSum = goodAverage + badAverage;
+        this.logOdds = new double[numberOfCells];
+    }
+
+    @Override
+    public double predict(int cell) {
+        return GoodBadFilter.toProbability(logOdds[cell]) * goodAverage +
+                GoodBadFilter.toProbability(-logOdds[cell]) * badAverage;
+    }
+
+    @Override
+    public void observe(int cell, double evidence, double weight) {
+        if(!Double.isFinite(evidence) || !Double.isFinite(weight) )
+            return;
+        double updated = logOdds[cell] + likelihoodRatioSlope * (2 * evidence - averagesSum) / (weight * weight);
+        if(!Double.isNaN(updated))
+            logOdds[cell] = updated;
+    }
+
+    /**
+     * the average is either the good or the bad one: pick one with the current odds
+     */
+    @Override
+    public double sample(int cell, SplittableRandom randomizer) {
+        return randomizer.nextDouble() < GoodBadFilter.toProbability(logOdds[cell]) ? goodAverage : badAverage;
+    }
+
+    /**
+     * move every probability towards the middle. Spaces holding views of these cells must be told
+     * with filtersChanged()
+     */
+    public void driftAll(){
+        if(drift == 0)
+            return;
+        double contraction = 1d / (1d + 2d * drift);
+        for(int cell=0; cell<logOdds.length; cell++)
+            logOdds[cell] = GoodBadFilter.contractLogOdds(logOdds[cell], contraction);
+    }
+
+    public double getProbabilityBeingAGoodSpot(int cell) {
+        return GoodBadFilter.toProbability(logOdds[cell]);
+    }
+}
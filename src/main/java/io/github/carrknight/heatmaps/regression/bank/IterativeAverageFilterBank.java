@@ -0,0 +1,61 @@
+package io.github.carrknight.heatmaps.regression.bank;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * many IterativeAverageFilter: each cell is just SUM(w*y) and SUM(w)
+ */
+public class IterativeAverageFilterBank extends FilterBank {
+
+    /**
+     * keep tracks of SUM(w*y) we have seen, per cell
+     */
+    private final double[] numerator;
+
+    private final double[] totalWeight;
+
+    /**
+     * when we don't have any information, we return this
+     */
+    private final double initialGuess;
+
+
+    public IterativeAverageFilterBank(int numberOfCells) {
+        this(numberOfCells, Double.NaN);
+    }
+
+    public IterativeAverageFilterBank(int numberOfCells, double initialGuess) {
+        super(numberOfCells);
+        this.numerator = new double[numberOfCells];
+        this.totalWeight = new double[numberOfCells];
+        this.initialGuess = initialGuess;
+    }
+
+    @Override
+    public double predict(int cell) {
+        return totalWeight[cell] == 0 ? initialGuess : numerator[cell]/totalWeight[cell];
+    }
+
+    @Override
+    public void observe(int cell, double evidence, double weight) {
+        numerator[cell] += evidence*weight;
+        totalWeight[cell] += weight;
+    }
+
+    @Override
+    public void observe(int[] cells, double[] evidence, double[] weights) {
+        Preconditions.checkArgument(cells.length == evidence.length && cells.length == weights.length);
+        for(int i=0; i<cells.length; i++)
+        {
+            numerator[cells[i]] += evidence[i]*weights[i];
+            totalWeight[cells[i]] += weights[i];
+        }
+    }
+
+    @Override
+    public void predictAll(double[] out) {
+        Preconditions.checkArgument(out.length >= numerator.length);
+        for(int cell=0; cell<numerator.length; cell++)
+            out[cell] = totalWeight[cell] == 0 ? initialGuess : numerator[cell]/totalWeight[cell];
+    }
+}
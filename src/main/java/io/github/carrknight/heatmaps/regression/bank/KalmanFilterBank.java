@@ -0,0 +1,106 @@
+package io.github.carrknight.heatmaps.regression.bank;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.utils.RandomVariates;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * many OneDimensionalKalmanFilter sharing the same model (A, C and drift): each cell is a state estimate and its
+ * uncertainty
+ */
+public class KalmanFilterBank extends FilterBank {
+
+    /**
+     * the A of the model
+     */
+    private final double transitionMultiplier;
+
+    /**
+     * the C of the model (that is x*c = evidence)
+     */
+    private final double emissionMultiplier;
+
+    /**
+     * the sigma_m of the kalman filter (the gaussian shock each time step to add to uncertainty)
+     */
+    private final double drift;
+
+    /**
+     * the P of each filter
+     */
+    private final double[] uncertainty;
+
+    /**
+     * hat x of each filter
+     */
+    private final double[] stateEstimate;
+
+
+    public KalmanFilterBank(
+            int numberOfCells,
+            double transitionMultiplier, double emissionMultiplier, double uncertainty, double stateEstimate,
+            double drift) {
+        super(numberOfCells);
+        this.transitionMultiplier = transitionMultiplier;
+        this.emissionMultiplier = emissionMultiplier;
+        this.drift = drift;
+        this.uncertainty = new double[numberOfCells];
+        Arrays.fill(this.uncertainty, uncertainty);
+        this.stateEstimate = new double[numberOfCells];
+        Arrays.fill(this.stateEstimate, stateEstimate);
+    }
+
+    @Override
+    public double predict(int cell) {
+        return stateEstimate[cell];
+    }
+
+    @Override
+    public void observe(int cell, double evidence, double weight) {
+        double p = uncertainty[cell];
+        //weighs the importance of this new observation
+        double kalmanGain =  p * emissionMultiplier /
+                (p * emissionMultiplier * emissionMultiplier +1d/weight);
+        //update estimate in proportion to how far off the mark the prediction is (weighted by the kalman gain)
+        stateEstimate[cell] += kalmanGain *(evidence - emissionMultiplier*stateEstimate[cell]);
+        //reduces uncertainty depending on the quality of the observation
+        uncertainty[cell] = p - p * kalmanGain  * emissionMultiplier;
+    }
+
+    @Override
+    public void predictAll(double[] out) {
+        Preconditions.checkArgument(out.length >= stateEstimate.length);
+        System.arraycopy(stateEstimate, 0, out, 0, stateEstimate.length);
+    }
+
+    /**
+     * the state posterior is normal with mean stateEstimate and variance uncertainty
+     */
+    @Override
+    public double sample(int cell, SplittableRandom randomizer) {
+        return stateEstimate[cell] + Math.sqrt(uncertainty[cell]) * RandomVariates.nextGaussian(randomizer);
+    }
+
+    /**
+     * elapse time for every cell: multiply the estimates by A and increase their P by the Sigma_m.
+     * Spaces holding views of these cells must be told with filtersChanged()
+     */
+    public void driftAll(){
+        double squaredTransition = transitionMultiplier * transitionMultiplier;
+        for(int cell=0; cell<stateEstimate.length; cell++)
+        {
+            stateEstimate[cell] = stateEstimate[cell] * transitionMultiplier;
+            uncertainty[cell] = uncertainty[cell] * squaredTransition + drift;
+        }
+    }
+
+    public double getUncertainty(int cell) {
+        return uncertainty[cell];
+    }
+
+    public double getStateEstimate(int cell) {
+        return stateEstimate[cell];
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.carrknight.heatmaps.regression.bank;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * many KernelFilter sharing the same forgetting factor: each cell is a mean and a (decaying) denominator
+ */
+public class KernelFilterBank extends FilterBank {
+
+
+    private final double forgettingFactor;
+
+    private final double[] currentMean;
+
+    private final double[] denominator;
+
+
+    public KernelFilterBank(int numberOfCells, double forgettingFactor) {
+        this(numberOfCells, forgettingFactor, 0);
+    }
+
+    public KernelFilterBank(int numberOfCells, double forgettingFactor, double initialMean) {
+        super(numberOfCells);
+        this.forgettingFactor = forgettingFactor;
+        this.currentMean = new double[numberOfCells];
+        Arrays.fill(currentMean, initialMean);
+        this.denominator = new double[numberOfCells];
+    }
+
+    @Override
+    public double predict(int cell) {
+        return currentMean[cell];
+    }
+
+    /**
+     * @param weight the kernel (the higher the more important the observation is)
+     */
+    @Override
+    public void observe(int cell, double evidence, double weight) {
+        Preconditions.checkArgument(Double.isFinite(evidence));
+        Preconditions.checkArgument(weight>=0);
+        Preconditions.checkArgument(Double.isFinite(weight));
+
+        double newDenominator = denominator[cell] * forgettingFactor + weight;
+        Preconditions.checkArgument(Double.isFinite(newDenominator));
+        denominator[cell] = newDenominator;
+        //update predictor
+        if (newDenominator > 0)
+            currentMean[cell] += (evidence - currentMean[cell]) * weight / newDenominator;
+    }
+
+    @Override
+    public void predictAll(double[] out) {
+        Preconditions.checkArgument(out.length >= currentMean.length);
+        System.arraycopy(currentMean, 0, out, 0, currentMean.length);
+    }
+
+    /**
+     * Getter for property 'forgettingFactor'.
+     *
+     * @return Value for property 'forgettingFactor'.
+     */
+    public double getForgettingFactor() {
+        return forgettingFactor;
+    }
+}
@@ -20,6 +20,8 @@
 
 package io.github.carrknight.heatmaps.regression.distance;
 
+import java.util.function.DoubleBinaryOperator;
+
 /**
  * similarity is |x-y|/bandwidth
  * Created by carrknight on 8/24/16.
@@ -41,6 +43,11 @@ public class AbsoluteFeatureDistance implements FeatureDistance {
     }
 
 
+    @Override
+    public DoubleBinaryOperator atBandwidth(double bandwidth) {
+        return (firstObservation, secondObservation) -> Math.abs(firstObservation-secondObservation)/bandwidth;
+    }
+
     /**
      * Getter for property 'bandwidth'.
      *
@@ -20,6 +20,8 @@
 
 package io.github.carrknight.heatmaps.regression.distance;
 
+import java.util.function.DoubleBinaryOperator;
+
 /**
  * similarity is (x-y)^2/bandwidth
  * Created by carrknight on 8/24/16.
@@ -44,6 +46,14 @@ public class CartesianFeatureDistance implements FeatureDistance {
     }
 
 
+    @Override
+    public DoubleBinaryOperator atBandwidth(double bandwidth) {
+        return (firstObservation, secondObservation) -> {
+            double distance = firstObservation - secondObservation;
+            return distance*distance/bandwidth;
+        };
+    }
+
     /**
      * Getter for property 'bandwidth'.
      *
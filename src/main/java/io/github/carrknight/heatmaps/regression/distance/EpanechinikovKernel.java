@@ -40,6 +40,16 @@ public class EpanechinikovKernel implements FeatureKernel {
     }
 
 
+    /**
+     * .75 (1 - d^2/bandwidth) is below the cutoff once d^2 > bandwidth (1 - cutoff/.75)
+     */
+    @Override
+    public double getSupportRadius(double cutoff) {
+        if(!(bandwidth > 0) || !(cutoff > 0))
+            return Double.POSITIVE_INFINITY;
+        return Math.sqrt(bandwidth * Math.max(0, 1 - cutoff / .75));
+    }
+
     /**
      * utility method to use when you already have a difference and you know you will use RBF
      * @param difference
@@ -20,6 +20,8 @@
 
 package io.github.carrknight.heatmaps.regression.distance;
 
+import java.util.function.DoubleBinaryOperator;
+
 /**
  * The similarity (as in opposite of similiarity) between two features extracted during a regression
  * Created by carrknight on 8/24/16.
@@ -35,4 +37,28 @@ public interface FeatureDistance {
 
     public void setBandwidth(double bandwidth);
 
+
+    /**
+     * this distance with the bandwidth fixed, as an object that never changes (and can then be shared by any number of
+     * threads). Changing this object's bandwidth afterwards does not affect it.
+     * The default borrows this object, setting the bandwidth under a lock at each call: implementations should
+     * override it
+     * @param bandwidth the bandwidth to use
+     * @return the distance between two feature values
+     */
+    default DoubleBinaryOperator atBandwidth(double bandwidth){
+        return (firstObservation, secondObservation) -> {
+            synchronized (this) {
+                double original = getBandwidth();
+                setBandwidth(bandwidth);
+                try {
+                    return distance(firstObservation, secondObservation);
+                }
+                finally {
+                    setBandwidth(original);
+                }
+            }
+        };
+    }
+
 }
@@ -12,4 +12,16 @@ public interface FeatureKernel {
     public double similarity(double firstObservation, double secondObservation);
 
 
+    /**
+     * how far apart two observations must be for their similarity to certainly be below the cutoff, so that
+     * regressions can skip them without even computing the kernel. Only kernels whose similarity never exceeds 1
+     * should answer with a finite radius: a product of kernels is then below the cutoff as soon as one of them is
+     * @param cutoff similarity below which observations are ignored
+     * @return the radius, or infinity (the default) if we can't tell
+     */
+    default double getSupportRadius(double cutoff){
+        return Double.POSITIVE_INFINITY;
+    }
+
+
 }
@@ -44,6 +44,16 @@ public class RBFKernel implements FeatureKernel
     }
 
 
+    /**
+     * exp(-d^2/bandwidth) is below the cutoff once d^2 > -bandwidth * log(cutoff)
+     */
+    @Override
+    public double getSupportRadius(double cutoff) {
+        if(!(bandwidth > 0) || !(cutoff > 0) || cutoff >= 1)
+            return Double.POSITIVE_INFINITY;
+        return Math.sqrt(-bandwidth * Math.log(cutoff));
+    }
+
     /**
      * utility method to use when you already have a difference and you know you will use RBF
      * @param difference
@@ -3,15 +3,13 @@ package io.github.carrknight.imitators;
 import com.sun.javafx.UnmodifiableArrayList;
 import io.github.carrknight.Chooser;
 import io.github.carrknight.Observation;
+import io.github.carrknight.ObservationSlice;
 import io.github.carrknight.utils.DiscreteChoosersUtilities;
 import io.github.carrknight.utils.RewardFunction;
 import io.github.carrknight.utils.rules.ObservationPredicate;
-import javafx.util.Pair;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Arrays;
 import java.util.SplittableRandom;
-import java.util.function.Function;
 
 public class ExploreExploitImitate<O,R,C> implements Chooser<O,R,C> {
 
@@ -59,6 +57,11 @@ public class ExploreExploitImitate<O,R,C> implements Chooser<O,R,C> {
      */
     private ExplorationStep<O,R,C> explorer;
 
+    /**
+     * re-pointed at each varargs call, so that the varargs method can share the slice implementation
+     */
+    private final ObservationSlice<O,R,C> varargsView = new ObservationSlice<>();
+
 
     public ExploreExploitImitate(
             RewardFunction<O, R, C> rewardFunction,
@@ -102,10 +105,33 @@ public class ExploreExploitImitate<O,R,C> implements Chooser<O,R,C> {
      * @return O chosen to play next
      */
     @SafeVarargs
+    @SuppressWarnings("varargs") //the array is only read, through the slice, and released on return
     @Override
     public final O updateAndChoose(
             @Nullable Observation<O, R, C> observation,
             Observation<O, R, C>... additionalObservations) {
+        try {
+            return updateAndChoose(observation,
+                                   varargsView.set(additionalObservations, 0, additionalObservations.length));
+        }
+        finally {
+            //don't keep the caller's array (and its observations) alive until the next call
+            varargsView.clear();
+        }
+    }
+
+
+    /**
+     * as the varargs updateAndChoose, but reads the additional observations from a slice without copying them
+     *
+     * @param observation            the reward and action taken last (can be null if experiment wasn't valid)
+     * @param additionalObservations additional action-rewards observed (by imitation or whatever)
+     * @return O chosen to play next
+     */
+    @Override
+    public final O updateAndChoose(
+            @Nullable Observation<O, R, C> observation,
+            ObservationSlice<O, R, C> additionalObservations) {
 
 
         //first, update your favorite spot given the new observation
@@ -145,7 +171,7 @@ public class ExploreExploitImitate<O,R,C> implements Chooser<O,R,C> {
         }
 
         //should I imitate?
-        if(additionalObservations.length >0 &&
+        if(!additionalObservations.isEmpty() &&
                 imitationRule.shouldExplore(
                 observation,
                 getLastChoice(),
@@ -160,26 +186,24 @@ public class ExploreExploitImitate<O,R,C> implements Chooser<O,R,C> {
                     context
             );
 
-            Pair<Observation<O, R, C>,Double> bestObservation = DiscreteChoosersUtilities.getBestOption(
-                    Arrays.asList(additionalObservations),
-                    new Function<Observation<O, R, C>, Double>() {
-                        @Override
-                        public Double apply(Observation<O, R, C> observation) {
-                            return rewardFunction.extractUtility(
-                                    observation.getChoiceMade(),
-                                    observation.getResultObserved(),
-                                    observation.getContext()
-                            );
-                        }
+            int bestObservation = DiscreteChoosersUtilities.getBestIndex(
+                    additionalObservations.size(),
+                    i -> {
+                        Observation<O, R, C> others = additionalObservations.get(i);
+                        return rewardFunction.extractUtility(
+                                others.getChoiceMade(),
+                                others.getResultObserved(),
+                                others.getContext()
+                        );
                     },
                     random,
                     currentReward
             );
             //if there is anything good to copy!
-            if(bestObservation != null)
+            if(bestObservation >= 0)
             {
                 lastAction = ExploreExploitImitateAction.IMITATING;
-                lastChoiceMade = bestObservation.getKey().getChoiceMade();
+                lastChoiceMade = additionalObservations.get(bestObservation).getChoiceMade();
                 return lastChoiceMade;
             }
 
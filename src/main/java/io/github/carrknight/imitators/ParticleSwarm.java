@@ -2,17 +2,17 @@ package io.github.carrknight.imitators;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 import io.github.carrknight.Chooser;
 import io.github.carrknight.Observation;
+import io.github.carrknight.ObservationSlice;
 import io.github.carrknight.heatmaps.BeliefState;
 import io.github.carrknight.heatmaps.regression.FeatureExtractor;
 import io.github.carrknight.utils.DiscreteChoosersUtilities;
 import io.github.carrknight.utils.RewardFunction;
-import javafx.util.Pair;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 import java.util.function.Function;
 
 /**
@@ -62,10 +62,20 @@ public class ParticleSwarm<O,R,C> implements Chooser<O,R,C> {
 
     private O lastChoice;
 
-    final private Iterable<O> optionsAvailable;
+    final private O[] optionsAvailable;
 
     final private SplittableRandom random;
 
+    /**
+     * what memory predicts for each option this step, so the best one isn't predicted twice
+     */
+    final private double[] memoryValues;
+
+    /**
+     * re-pointed at each varargs call, so that the varargs method can share the slice implementation
+     */
+    private final ObservationSlice<O,R,C> varargsView = new ObservationSlice<>();
+
 
     public ParticleSwarm(
             FeatureExtractor<O, C>[] projectors, Function<double[], O> inverseProjector,
@@ -110,7 +120,8 @@ public class ParticleSwarm<O,R,C> implements Chooser<O,R,C> {
         this.inertia = inertia;
         this.memory = memory;
         this.reward = reward;
-        this.optionsAvailable = Lists.newArrayList(optionsAvailable);
+        this.optionsAvailable = optionsAvailable.clone();
+        this.memoryValues = new double[optionsAvailable.length];
         this.random = random;
 
         this.lastChoice = optionsAvailable[random.nextInt(optionsAvailable.length)];
@@ -142,10 +153,33 @@ public class ParticleSwarm<O,R,C> implements Chooser<O,R,C> {
      * @return O chosen to play next
      */
     @SafeVarargs
+    @SuppressWarnings("varargs") //the array is only read, through the slice, and released on return
     @Override
     public final O updateAndChoose(
             @Nullable Observation<O, R, C> observation,
-            Observation<O, R, C>... additionalObservations)
+            Observation<O, R, C>... additionalObservations) {
+        try {
+            return updateAndChoose(observation,
+                                   varargsView.set(additionalObservations, 0, additionalObservations.length));
+        }
+        finally {
+            //don't keep the caller's array (and its observations) alive until the next call
+            varargsView.clear();
+        }
+    }
+
+
+    /**
+     * as the varargs updateAndChoose, but reads the additional observations from a slice without copying them
+     *
+     * @param observation            the reward and action taken last (can be null if experiment wasn't valid)
+     * @param additionalObservations additional action-rewards observed (by imitation or whatever)
+     * @return O chosen to play next
+     */
+    @Override
+    public final O updateAndChoose(
+            @Nullable Observation<O, R, C> observation,
+            ObservationSlice<O, R, C> additionalObservations)
     {
 
 
@@ -163,55 +197,50 @@ public class ParticleSwarm<O,R,C> implements Chooser<O,R,C> {
         final C context = observation == null ? null : observation.getContext();
         //get best memory
         memory.observe(observation);
-        Pair<O,Double> bestMemory = DiscreteChoosersUtilities.getBestOption(
-                optionsAvailable,
-                o -> {
-                    return memory.predict(o,
-                                          context
-                    );
-                },
+        for(int option=0; option<optionsAvailable.length; option++)
+            memoryValues[option] = memory.predict(optionsAvailable[option], context);
+        int bestMemory = DiscreteChoosersUtilities.getBestIndex(
+                memoryValues,
+                0,
+                memoryValues.length,
                 random,
                 Double.NEGATIVE_INFINITY
         );
+        double bestMemoryValue = Double.NEGATIVE_INFINITY;
         double[] memoryPosition = null;
-        if(bestMemory!=null) {
+        if(bestMemory>=0) {
 
+            bestMemoryValue = memoryValues[bestMemory];
             memoryPosition = new double[projectors.length];
             for(int i=0; i<projectors.length; i++)
                 memoryPosition[i] = projectors[i].extract(
-                        bestMemory.getKey(),
+                        optionsAvailable[bestMemory],
                         context
                 );
 
         }
 
 
-        //get best friend position
-        Map<O,Double> observedChoices = new HashMap<>(additionalObservations.length);
-        for (Observation<O, R, C> others : additionalObservations) {
-            double reward = this.reward.extractUtility(
-                    others.getChoiceMade(),
-                    others.getResultObserved(),
-                    others.getContext()
-            );
-            if(Double.isFinite(reward))
-                observedChoices.put(others.getChoiceMade(),
-                                    reward);
-        }
-        Pair<O,Double> bestFriend = observedChoices.size() > 0 ? DiscreteChoosersUtilities.getBestOption(
-                observedChoices.keySet(),
-                observedChoices::get,
+        //get best friend position (the argmax never returns a non-finite reward)
+        int bestFriend = DiscreteChoosersUtilities.getBestIndex(
+                additionalObservations.size(),
+                i -> {
+                    Observation<O, R, C> others = additionalObservations.get(i);
+                    return reward.extractUtility(
+                            others.getChoiceMade(),
+                            others.getResultObserved(),
+                            others.getContext()
+                    );
+                },
                 random,
-                bestMemory == null ? Double.NEGATIVE_INFINITY : bestMemory.getValue()) :
-                null;
+                bestMemoryValue);
         double[] friendPosition = null;
-        if(bestFriend!=null ) {
+        if(bestFriend>=0 ) {
 
-            assert (bestMemory == null || bestFriend.getValue()>bestMemory.getValue());
             friendPosition = new double[projectors.length];
             for(int i=0; i<projectors.length; i++)
                 friendPosition[i] = projectors[i].extract(
-                        bestFriend.getKey(),
+                        additionalObservations.get(bestFriend).getChoiceMade(),
                         context
                 );
 
@@ -0,0 +1,30 @@
+package io.github.carrknight.population;
+
+import io.github.carrknight.Observation;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.SplittableRandom;
+
+/**
+ * whatever agents of a population play against: given an agent's choice returns what happened.
+ * The PopulationRunner calls this from many threads at once (always for different agents), so implementations must
+ * not share mutable state between agents; all randomness should come from the randomizer given, which is the
+ * agent's own stream
+ * @param <O> the class of the options available
+ * @param <R> the class describing the experiment result
+ * @param <C> the class describing the context in which the reward was observed
+ */
+public interface Environment<O,R,C> {
+
+
+    /**
+     * @param agent index of the agent playing
+     * @param choice what the agent chose to do
+     * @param randomizer the agent's own environment randomizer
+     * @return the observation of this agent this step (null if the experiment wasn't valid)
+     */
+    @Nullable
+    Observation<O,R,C> play(int agent, O choice, SplittableRandom randomizer);
+
+
+}
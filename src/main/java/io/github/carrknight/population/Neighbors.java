@@ -0,0 +1,38 @@
+package io.github.carrknight.population;
+
+/**
+ * who observes whom: agent i sees what its neighbors did and got last step.
+ * Read from many threads at once, so it should not change while the population is stepping
+ */
+public interface Neighbors {
+
+
+    int getNumberOfNeighbors(int agent);
+
+    /**
+     * @param agent the agent observing
+     * @param neighbor the index of the neighbor, between 0 and getNumberOfNeighbors(agent)-1
+     * @return the index of the agent being observed
+     */
+    int getNeighbor(int agent, int neighbor);
+
+
+    /**
+     * @return a population where nobody observes anybody
+     */
+    static Neighbors none(){
+        return new Neighbors() {
+            @Override
+            public int getNumberOfNeighbors(int agent) {
+                return 0;
+            }
+
+            @Override
+            public int getNeighbor(int agent, int neighbor) {
+                throw new IndexOutOfBoundsException("no neighbors");
+            }
+        };
+    }
+
+
+}
@@ -0,0 +1,239 @@
+package io.github.carrknight.population;
+
+import com.google.common.base.Preconditions;
+import io.github.carrknight.Chooser;
+import io.github.carrknight.Observation;
+import io.github.carrknight.ObservationSlice;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Array;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
+import java.util.function.IntConsumer;
+
+/**
+ * steps a population of independent choosers in parallel on a ForkJoinPool. Each step is made of three phases, each
+ * finishing before the next one starts:
+ * <ol>
+ *     <li>observe: each agent plays its last choice in the environment</li>
+ *     <li>imitate: each agent collects what its neighbors did and got</li>
+ *     <li>choose: each agent learns and picks what to play next</li>
+ * </ol>
+ * Every agent gets two random streams (one for its chooser, one for the environment) split from the root randomizer
+ * in agent order when the runner is built; during a phase agents only touch their own chooser, their own streams and
+ * their own cells, and only read what other agents wrote in previous phases. That makes results bit-identical whatever
+ * the number of threads or however the work gets stolen.
+ * @param <O> the class of the options available
+ * @param <R> the class describing the experiment result
+ * @param <C> the class describing the context in which the decision or reward was observed
+ */
+public class PopulationRunner<O,R,C> {
+
+
+    private final Chooser<O,R,C>[] agents;
+
+    /**
+     * one stream per agent, used only by the environment when that agent plays
+     */
+    private final SplittableRandom[] environmentRandomizers;
+
+    private final Environment<O,R,C> environment;
+
+    private final Neighbors neighbors;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * what each agent observed in the last observe phase
+     */
+    private final Observation<O,R,C>[] observations;
+
+    /**
+     * buffer of what each agent saw of its neighbors in the last imitate phase; sized to the number of neighbors
+     * so it is allocated once, and only the first few entries are valid
+     */
+    private final Observation<O,R,C>[][] neighborObservations;
+
+    /**
+     * the valid part of each agent's neighborObservations buffer, as handed to the agent
+     */
+    private final ObservationSlice<O,R,C>[] neighborSlices;
+
+    /**
+     * phases are split until ranges are this small
+     */
+    private final int grainSize;
+
+    private int stepsDone = 0;
+
+    private final IntConsumer observePhase;
+
+    private final IntConsumer imitatePhase;
+
+    private final IntConsumer choosePhase;
+
+
+    /**
+     * runs on the common pool
+     * @param numberOfAgents how many agents
+     * @param agentMaker builds agent i given its own randomizer (which it should use for all its random draws)
+     * @param environment what agents play against
+     * @param neighbors who observes whom
+     * @param seed root seed: same seed, same results
+     */
+    public PopulationRunner(
+            int numberOfAgents,
+            BiFunction<Integer, SplittableRandom, ? extends Chooser<O,R,C>> agentMaker,
+            Environment<O, R, C> environment,
+            Neighbors neighbors,
+            long seed) {
+        this(numberOfAgents, agentMaker, environment, neighbors, new SplittableRandom(seed), ForkJoinPool.commonPool());
+    }
+
+    public PopulationRunner(
+            int numberOfAgents,
+            BiFunction<Integer, SplittableRandom, ? extends Chooser<O,R,C>> agentMaker,
+            Environment<O, R, C> environment,
+            Neighbors neighbors,
+            SplittableRandom root,
+            ForkJoinPool pool) {
+        Preconditions.checkArgument(numberOfAgents>0, "no agents!");
+        this.environment = environment;
+        this.neighbors = neighbors;
+        this.pool = pool;
+        this.agents = newArray(Chooser.class, numberOfAgents);
+        this.environmentRandomizers = new SplittableRandom[numberOfAgents];
+        //always split in agent order, on this thread: this is what makes streams independent of scheduling
+        for(int agent=0; agent<numberOfAgents; agent++)
+        {
+            agents[agent] = agentMaker.apply(agent, root.split());
+            environmentRandomizers[agent] = root.split();
+        }
+        this.observations = newArray(Observation.class, numberOfAgents);
+        this.neighborObservations = newArray(Observation[].class, numberOfAgents);
+        this.neighborSlices = newArray(ObservationSlice.class, numberOfAgents);
+        for(int agent=0; agent<numberOfAgents; agent++)
+            neighborSlices[agent] = new ObservationSlice<>();
+        this.grainSize = Math.max(1, numberOfAgents / (pool.getParallelism() * 8));
+
+        observePhase = agent -> observations[agent] = environment.play(agent,
+                                                                       agents[agent].getLastChoice(),
+                                                                       environmentRandomizers[agent]);
+        imitatePhase = this::collectNeighborObservations;
+        choosePhase = agent -> agents[agent].updateAndChoose(observations[agent], neighborSlices[agent]);
+    }
+
+
+    /**
+     * one full observe, imitate, choose cycle for everybody
+     */
+    public void step(){
+        runPhase(observePhase);
+        runPhase(imitatePhase);
+        runPhase(choosePhase);
+        stepsDone++;
+    }
+
+    public void step(int steps){
+        for(int i=0; i<steps; i++)
+            step();
+    }
+
+
+    private void runPhase(IntConsumer phase){
+        pool.invoke(new PhaseTask(phase, 0, agents.length));
+    }
+
+
+    private void collectNeighborObservations(int agent){
+        int numberOfNeighbors = neighbors.getNumberOfNeighbors(agent);
+        Observation<O,R,C>[] seen = neighborObservations[agent];
+        if(seen == null || seen.length < numberOfNeighbors)
+            seen = neighborObservations[agent] = newArray(Observation.class, numberOfNeighbors);
+        int filled = 0;
+        for(int i=0; i<numberOfNeighbors; i++)
+        {
+            Observation<O,R,C> observation = observations[neighbors.getNeighbor(agent, i)];
+            if(observation != null)
+                seen[filled++] = observation;
+        }
+        //stale entries past filled would keep old observations alive
+        for(int i=filled; i<seen.length && seen[i] != null; i++)
+            seen[i] = null;
+        neighborSlices[agent].set(seen, 0, filled);
+    }
+
+
+    /**
+     * arrays of generic types can't be created directly; this is the only unchecked cast of the class
+     * @param componentType the erasure of the elements' type
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(Class<?> componentType, int length){
+        return (T[]) Array.newInstance(componentType, length);
+    }
+
+
+    /**
+     * applies the phase to a range of agents, splitting it in halves until it's small
+     */
+    private class PhaseTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IntConsumer phase;
+
+        private final int from;
+
+        private final int to;
+
+        private PhaseTask(IntConsumer phase, int from, int to) {
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= grainSize)
+            {
+                for(int agent=from; agent<to; agent++)
+                    phase.accept(agent);
+            }
+            else
+            {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PhaseTask(phase, from, middle),
+                          new PhaseTask(phase, middle, to));
+            }
+        }
+    }
+
+
+    public Chooser<O, R, C> getAgent(int agent){
+        return agents[agent];
+    }
+
+    /**
+     * @return what this agent observed in the last step (null if nothing valid or no step done)
+     */
+    @Nullable
+    public Observation<O, R, C> getLastObservation(int agent){
+        return observations[agent];
+    }
+
+    public int getNumberOfAgents(){
+        return agents.length;
+    }
+
+    /**
+     * Getter for property 'stepsDone'.
+     *
+     * @return Value for property 'stepsDone'.
+     */
+    public int getStepsDone() {
+        return stepsDone;
+    }
+}
@@ -0,0 +1,170 @@
+package io.github.carrknight.utils;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * a tournament tree over the values of n indices: each node remembers the maximum of its subtree and how many
+ * leaves are tied at that maximum. Changing one value costs O(log n), reading the max costs O(1) and drawing
+ * uniformly among all the indices tied at the top costs O(log n) with a single random number.
+ * Non finite values never win (same as DiscreteChoosersUtilities.getBestIndex).
+ */
+public class ArgmaxTree {
+
+
+    /**
+     * number of indices tracked
+     */
+    private final int size;
+
+    /**
+     * index of the first leaf in the arrays below (the leaves are padded to a power of 2)
+     */
+    private final int firstLeaf;
+
+    /**
+     * max of each subtree; node 1 is the root, node i has children 2i and 2i+1
+     */
+    private final double[] maximum;
+
+    /**
+     * number of leaves in each subtree whose value equals the subtree max
+     */
+    private final int[] ties;
+
+
+    public ArgmaxTree(int size) {
+        Preconditions.checkArgument(size>0, "Given no options!");
+        this.size = size;
+        int leaves = 1;
+        while(leaves<size)
+            leaves*=2;
+        this.firstLeaf = leaves;
+        this.maximum = new double[2*leaves];
+        this.ties = new int[2*leaves];
+        Arrays.fill(maximum, Double.NEGATIVE_INFINITY);
+    }
+
+
+    /**
+     * change the value of one index and fix all its ancestors
+     * @param index index whose value changed
+     * @param value the new value (non finite values are never returned as best)
+     */
+    public void update(int index, double value){
+        assert index>=0 && index<size;
+        int node = firstLeaf + index;
+        setLeaf(node, value);
+        node = node >> 1;
+        while(node>0)
+        {
+            merge(node);
+            node = node >> 1;
+        }
+    }
+
+
+    /**
+     * rebuild the whole tree in O(n) by asking the value of every index
+     * @param values value of each index
+     */
+    public void rebuild(IntToDoubleFunction values){
+        for(int index=0; index<size; index++)
+            setLeaf(firstLeaf+index, values.applyAsDouble(index));
+        for(int node=firstLeaf-1; node>0; node--)
+            merge(node);
+    }
+
+
+    /**
+     * draw one of the indices with the highest value, uniformly at random
+     * @param randomizer randomizer
+     * @return the index or -1 if no value is finite
+     */
+    public int sampleBest(SplittableRandom randomizer){
+        if(ties[1]==0)
+            return -1;
+
+        double best = maximum[1];
+        int draw = ties[1] == 1 ? 0 : randomizer.nextInt(ties[1]);
+        int node = 1;
+        while(node<firstLeaf)
+        {
+            int left = 2*node;
+            if(maximum[left]==best)
+            {
+                if(draw<ties[left])
+                {
+                    node = left;
+                    continue;
+                }
+                draw -= ties[left];
+            }
+            node = left+1;
+        }
+        assert maximum[node]==best;
+        return node-firstLeaf;
+    }
+
+
+    /**
+     * @return the highest finite value, or -infinity if there is none
+     */
+    public double getMaximum(){
+        return maximum[1];
+    }
+
+    /**
+     * @return number of indices tied at the maximum
+     */
+    public int getNumberOfTies(){
+        return ties[1];
+    }
+
+    /**
+     * Getter for property 'size'.
+     *
+     * @return Value for property 'size'.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    private void setLeaf(int node, double value) {
+        if(Double.isFinite(value))
+        {
+            maximum[node] = value;
+            ties[node] = 1;
+        }
+        else
+        {
+            maximum[node] = Double.NEGATIVE_INFINITY;
+            ties[node] = 0;
+        }
+    }
+
+    private void merge(int node){
+        int left = 2*node;
+        int right = left+1;
+        double leftMax = maximum[left];
+        double rightMax = maximum[right];
+        if(leftMax>rightMax)
+        {
+            maximum[node] = leftMax;
+            ties[node] = ties[left];
+        }
+        else if(rightMax>leftMax)
+        {
+            maximum[node] = rightMax;
+            ties[node] = ties[right];
+        }
+        else
+        {
+            maximum[node] = leftMax;
+            ties[node] = ties[left] + ties[right];
+        }
+    }
+}
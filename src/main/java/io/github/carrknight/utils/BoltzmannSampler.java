@@ -0,0 +1,154 @@
+package io.github.carrknight.utils;
+
+import com.google.common.base.Preconditions;
+
+import java.util.SplittableRandom;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * draws from the Boltzmann distribution (softmax) of a set of preferences without allocating anything:
+ * it owns a single buffer, sized once, where the cumulative (max-shifted) weights are written in place.
+ * Unlike BoltzmannDistribution, probabilities are never normalized: a uniform draw is scaled by the total weight and
+ * found by binary search.
+ * Non finite preferences get probability 0. Not thread safe: one sampler per chooser.
+ */
+public class BoltzmannSampler {
+
+
+    /**
+     * preferences/temperature first, then cumulative weights
+     */
+    private final double[] cumulative;
+
+
+    public BoltzmannSampler(int numberOfOptions) {
+        Preconditions.checkArgument(numberOfOptions>0, "Given no options!");
+        this.cumulative = new double[numberOfOptions];
+    }
+
+
+    /**
+     * draw an option with probability proportional to exp(preference/temperature) by inverse CDF
+     * @param preferences preference of each option 0,...,n-1
+     * @param temperature the higher, the more uniform the draw
+     * @param uniform a random number in [0,1)
+     * @return the option drawn or -1 if no preference is finite
+     */
+    public int sample(IntToDoubleFunction preferences, double temperature, double uniform){
+        return prepare(preferences, temperature) ? draw(uniform) : -1;
+    }
+
+
+    /**
+     * compute the cumulative weights once so that many options can then be drawn with draw()
+     * @param preferences preference of each option 0,...,n-1
+     * @param temperature the higher, the more uniform the draw
+     * @return false if no preference is finite (and there is nothing to draw)
+     */
+    public boolean prepare(IntToDoubleFunction preferences, double temperature){
+        double max = Double.NEGATIVE_INFINITY;
+        for(int i=0; i<cumulative.length; i++)
+        {
+            double normalized = preferences.applyAsDouble(i) / temperature;
+            cumulative[i] = normalized;
+            if(normalized > max && Double.isFinite(normalized))
+                max = normalized;
+        }
+        return accumulate(max);
+    }
+
+
+    /**
+     * as the other sample, but preferences are read from values[offset],...,values[offset+n-1]
+     * @param values array containing the preferences
+     * @param offset where the first option's preference is
+     * @param temperature the higher, the more uniform the draw
+     * @param uniform a random number in [0,1)
+     * @return the option drawn (relative to offset) or -1 if no preference is finite
+     */
+    public int sample(double[] values, int offset, double temperature, double uniform){
+        double max = Double.NEGATIVE_INFINITY;
+        for(int i=0; i<cumulative.length; i++)
+        {
+            double normalized = values[offset+i] / temperature;
+            cumulative[i] = normalized;
+            if(normalized > max && Double.isFinite(normalized))
+                max = normalized;
+        }
+        return accumulate(max) ? draw(uniform) : -1;
+    }
+
+
+    /**
+     * draw an option with the Gumbel-max trick: the argmax of preference/temperature + Gumbel noise is a softmax draw.
+     * One pass and no buffer at all, but it needs one random number (and two logs) per option
+     * @param preferences preference of each option 0,...,n-1
+     * @param temperature the higher, the more uniform the draw
+     * @param randomizer randomizer
+     * @return the option drawn or -1 if no preference is finite
+     */
+    public int sampleGumbel(IntToDoubleFunction preferences, double temperature, SplittableRandom randomizer){
+        int best = -1;
+        double currentMax = Double.NEGATIVE_INFINITY;
+        for(int i=0; i<cumulative.length; i++)
+        {
+            double normalized = preferences.applyAsDouble(i) / temperature;
+            if(!Double.isFinite(normalized))
+                continue;
+            //1-nextDouble() is in (0,1], so the logs are finite
+            double perturbed = normalized - Math.log(-Math.log(1d - randomizer.nextDouble()));
+            if(perturbed > currentMax)
+            {
+                currentMax = perturbed;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+
+    /**
+     * exponentiate (shifted by max so nothing overflows) and accumulate in place
+     */
+    private boolean accumulate(double max){
+        if(max == Double.NEGATIVE_INFINITY)
+            return false;
+
+        double sum = 0;
+        for(int i=0; i<cumulative.length; i++)
+        {
+            double normalized = cumulative[i];
+            if(Double.isFinite(normalized))
+                sum += Math.exp(normalized - max);
+            cumulative[i] = sum;
+        }
+        return true;
+    }
+
+
+    /**
+     * draw from the weights computed by the last successful prepare (or sample) call, by binary search
+     * @param uniform a random number in [0,1)
+     * @return the option drawn
+     */
+    public int draw(double uniform){
+        //first option whose cumulative weight is above the target
+        double target = uniform * cumulative[cumulative.length-1];
+        int low = 0;
+        int high = cumulative.length-1;
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(cumulative[middle] > target)
+                high = middle;
+            else
+                low = middle + 1;
+        }
+        return low;
+    }
+
+
+    public int getNumberOfOptions(){
+        return cumulative.length;
+    }
+}
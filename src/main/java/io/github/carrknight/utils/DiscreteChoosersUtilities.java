@@ -1,10 +1,8 @@
 package io.github.carrknight.utils;
 
-import javafx.util.Pair;
-
-import java.util.ArrayList;
 import java.util.SplittableRandom;
-import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.ToDoubleFunction;
 
 public class DiscreteChoosersUtilities {
 
@@ -15,50 +13,121 @@ public class DiscreteChoosersUtilities {
 
 
     /**
-     * assign a fitness to all options, return the one with maximum fitness (randomizes draws)
-     * @param possibleOptions options available
-     * @param fitnessOfOption utility function for each option
+     * assign a fitness to all options 0,...,n-1, return the index with maximum fitness.
+     * Draws are split uniformly at random by reservoir sampling so nothing is allocated.
+     * @param numberOfOptions options available (they are the indices 0 to numberOfOptions-1)
+     * @param fitnessOfOption utility function for each index
      * @param randomizer randomizer
      * @param minimumMaximum the fitness threshold below which we don't care
-     * @param <O> type of options
-     * @return one of the top options or null if they are all below the minimum threshold
+     * @return the index of one of the top options or -1 if they are all below the minimum threshold
      */
-     static  public <O> Pair<O,Double> getBestOption(
-            Iterable<O> possibleOptions,
-            Function<O,Double> fitnessOfOption,
+    static public int getBestIndex(
+            int numberOfOptions,
+            IntToDoubleFunction fitnessOfOption,
             SplittableRandom randomizer,
             double minimumMaximum
     )
     {
-
-
-        ArrayList<O> candidates = new ArrayList<>();
+        int best = -1;
+        int draws = 0;
         double currentMax=minimumMaximum;
-        for (O possibleOption : possibleOptions)
+        for (int option = 0; option < numberOfOptions; option++)
         {
-            double reward =  fitnessOfOption.apply(possibleOption);
+            double reward = fitnessOfOption.applyAsDouble(option);
             if(Double.isFinite(reward) && reward>currentMax)
             {
-                candidates.clear();
-                candidates.add(possibleOption);
+                best = option;
+                draws = 1;
                 currentMax=reward;
             }
-            else if(reward==currentMax)
-                candidates.add(possibleOption);
+            else if(Double.isFinite(reward) && reward==currentMax)
+            {
+                //keep each of the tied options with probability 1/draws
+                draws++;
+                if(randomizer.nextInt(draws)==0)
+                    best = option;
+            }
 
         }
-        if(candidates.size()==0)
-        {
-            assert currentMax==minimumMaximum;
-            return null;
-        }
-        else {
+        assert best >=0 || currentMax==minimumMaximum;
+        return best;
+    }
+
+
+    /**
+     * as getBestIndex but where the fitness of option i is already stored in values[offset+i]
+     * @param values array containing the fitness
+     * @param offset where the first option is in the array
+     * @param numberOfOptions how many options to look at
+     * @param randomizer randomizer
+     * @param minimumMaximum the fitness threshold below which we don't care
+     * @return the index (relative to offset) of one of the top options or -1 if they are all below the minimum threshold
+     */
+    static public int getBestIndex(
+            double[] values,
+            int offset,
+            int numberOfOptions,
+            SplittableRandom randomizer,
+            double minimumMaximum
+    )
+    {
+        return getBestIndex(numberOfOptions, option -> values[offset+option], randomizer, minimumMaximum);
+    }
 
-            return
-                    new Pair<>(candidates.get(randomizer.nextInt(candidates.size())),
-                               currentMax);
 
+    /**
+     * assign a fitness to all options in the array, return the index of the one with maximum fitness (randomizes draws)
+     * @param possibleOptions options available
+     * @param fitnessOfOption utility function for each option
+     * @param randomizer randomizer
+     * @param minimumMaximum the fitness threshold below which we don't care
+     * @param <O> type of options
+     * @return the index of one of the top options or -1 if they are all below the minimum threshold
+     */
+    static public <O> int getBestIndex(
+            O[] possibleOptions,
+            ToDoubleFunction<? super O> fitnessOfOption,
+            SplittableRandom randomizer,
+            double minimumMaximum
+    )
+    {
+        return getBestIndex(possibleOptions.length,
+                            option -> fitnessOfOption.applyAsDouble(possibleOptions[option]),
+                            randomizer,
+                            minimumMaximum);
+    }
+
+
+    /**
+     * write in output all the indices 0,...,n-1 tied at the maximum fitness (non finite fitness is ignored).
+     * Useful when many draws are needed from the same tie set
+     * @param numberOfOptions options available (they are the indices 0 to numberOfOptions-1)
+     * @param fitnessOfOption utility function for each index
+     * @param output where to write the best indices; must have room for numberOfOptions
+     * @return how many indices were written (0 if no fitness is finite)
+     */
+    static public int collectBestIndices(
+            int numberOfOptions,
+            IntToDoubleFunction fitnessOfOption,
+            int[] output
+    )
+    {
+        int found = 0;
+        double currentMax = Double.NEGATIVE_INFINITY;
+        for (int option = 0; option < numberOfOptions; option++)
+        {
+            double reward = fitnessOfOption.applyAsDouble(option);
+            if(!Double.isFinite(reward))
+                continue;
+            if(reward > currentMax)
+            {
+                currentMax = reward;
+                found = 0;
+            }
+            if(reward == currentMax)
+                output[found++] = option;
         }
+        return found;
     }
 
 
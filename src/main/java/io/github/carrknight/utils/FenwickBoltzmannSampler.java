@@ -0,0 +1,223 @@
+package io.github.carrknight.utils;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * a Boltzmann (softmax) distribution over n options that changes one preference at a time.
+ * The weights exp(preference/temperature - shift) sit in a Fenwick (binary indexed) tree so that changing a
+ * preference and drawing an option both cost O(log n).
+ * Everything is recomputed (O(n)) only when the temperature changes, when a weight gets too large or the total too
+ * small for the current shift (we then shift by the new max), when a weight much larger than what is left has been
+ * subtracted (its rounding errors would swamp the small weights sharing its tree nodes) and once every n updates to
+ * wash away the rounding errors of adding and subtracting weights.
+ * Non finite preferences get probability 0.
+ */
+public class FenwickBoltzmannSampler {
+
+
+    /**
+     * weights are kept below exp(MAXIMUM_EXPONENT) so that the sum can't overflow
+     */
+    private static final double MAXIMUM_EXPONENT = 300;
+
+    /**
+     * below this total we lose too much precision and re-shift
+     */
+    private static final double MINIMUM_TOTAL = 1e-200;
+
+    /**
+     * rebuild once the largest weight that went through the tree is this many times the current total
+     */
+    private static final double MAXIMUM_CANCELLATION = 1e8;
+
+    private final double[] preferences;
+
+    /**
+     * exp(preference/temperature - shift), as currently stored in the tree
+     */
+    private final double[] weights;
+
+    /**
+     * 1-indexed Fenwick tree of the weights
+     */
+    private final double[] tree;
+
+    /**
+     * the largest power of 2 not above n, where the tree descent starts
+     */
+    private final int highestBit;
+
+    private double temperature;
+
+    /**
+     * subtracted from every normalized preference before exponentiating
+     */
+    private double shift;
+
+    /**
+     * updates since the last full rebuild
+     */
+    private int updatesSinceRebuild = 0;
+
+    /**
+     * largest weight added to the tree since the last rebuild; the rounding error left in the nodes is proportional to it
+     */
+    private double largestWeight = 0;
+
+    private boolean stale = true;
+
+
+    /**
+     * all preferences start at 0
+     * @param numberOfOptions number of options
+     * @param temperature initial temperature
+     */
+    public FenwickBoltzmannSampler(int numberOfOptions, double temperature) {
+        Preconditions.checkArgument(numberOfOptions>0, "Given no options!");
+        Preconditions.checkArgument(temperature>0, "temperature must be positive");
+        this.preferences = new double[numberOfOptions];
+        this.weights = new double[numberOfOptions];
+        this.tree = new double[numberOfOptions+1];
+        this.temperature = temperature;
+        int bit = 1;
+        while(bit*2 <= numberOfOptions)
+            bit*=2;
+        this.highestBit = bit;
+    }
+
+
+    /**
+     * change the preference for one option, O(log n)
+     * @param option the option
+     * @param preference its new preference
+     */
+    public void setPreference(int option, double preference){
+        preferences[option] = preference;
+        if(stale)
+            return;
+
+        double exponent = preference / temperature - shift;
+        if(exponent > MAXIMUM_EXPONENT || ++updatesSinceRebuild > preferences.length)
+        {
+            stale = true;
+            return;
+        }
+        double weight = Double.isFinite(exponent) ? Math.exp(exponent) : 0;
+        double delta = weight - weights[option];
+        weights[option] = weight;
+        for(int node = option+1; node < tree.length; node += node & (-node))
+            tree[node] += delta;
+
+        if(weight > largestWeight)
+            largestWeight = weight;
+        else if(delta < 0 && largestWeight > MAXIMUM_CANCELLATION * getTotal())
+            stale = true;
+    }
+
+
+    /**
+     * changing the temperature means recomputing every weight (next time we sample)
+     * @param temperature the new temperature
+     */
+    public void setTemperature(double temperature){
+        Preconditions.checkArgument(temperature>0, "temperature must be positive");
+        if(temperature != this.temperature)
+        {
+            this.temperature = temperature;
+            stale = true;
+        }
+    }
+
+
+    /**
+     * draw an option with probability proportional to exp(preference/temperature)
+     * @param uniform a random number in [0,1)
+     * @return the option drawn or -1 if no preference is finite
+     */
+    public int sample(double uniform){
+        if(stale)
+            rebuild();
+        double total = getTotal();
+        if(!(total >= MINIMUM_TOTAL))
+        {
+            //underflow or drift: re-shift and try again
+            rebuild();
+            total = getTotal();
+            if(total <= 0)
+                return -1;
+        }
+
+        //descend the tree looking for the first option whose prefix sum is above the target
+        double target = uniform * total;
+        int position = 0;
+        for(int bit = highestBit; bit > 0; bit >>= 1)
+        {
+            int next = position + bit;
+            if(next < tree.length && tree[next] <= target)
+            {
+                position = next;
+                target -= tree[next];
+            }
+        }
+        return Math.min(position, preferences.length-1);
+    }
+
+
+    /**
+     * recompute shift, weights and tree from scratch: O(n)
+     */
+    private void rebuild(){
+        double max = Double.NEGATIVE_INFINITY;
+        for (double preference : preferences) {
+            double normalized = preference / temperature;
+            if (Double.isFinite(normalized) && normalized > max)
+                max = normalized;
+        }
+        shift = max == Double.NEGATIVE_INFINITY ? 0 : max;
+
+        largestWeight = 0;
+        for(int i=0; i<preferences.length; i++)
+        {
+            double exponent = preferences[i] / temperature - shift;
+            weights[i] = Double.isFinite(exponent) ? Math.exp(exponent) : 0;
+            tree[i+1] = weights[i];
+            largestWeight = Math.max(largestWeight, weights[i]);
+        }
+        //O(n) construction: push each node into its parent
+        for(int node = 1; node < tree.length; node++)
+        {
+            int parent = node + (node & (-node));
+            if(parent < tree.length)
+                tree[parent] += tree[node];
+        }
+        updatesSinceRebuild = 0;
+        stale = false;
+    }
+
+    /**
+     * @return sum of all weights
+     */
+    private double getTotal(){
+        double sum = 0;
+        for(int node = preferences.length; node > 0; node -= node & (-node))
+            sum += tree[node];
+        return sum;
+    }
+
+    public double getPreference(int option){
+        return preferences[option];
+    }
+
+    /**
+     * Getter for property 'temperature'.
+     *
+     * @return Value for property 'temperature'.
+     */
+    public double getTemperature() {
+        return temperature;
+    }
+
+    public int getNumberOfOptions(){
+        return preferences.length;
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.carrknight.utils;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * a binary max-heap over the indices 0,...,n-1 where each index has a double key that can be changed at any time
+ * in O(log n). Everything is stored in primitive arrays allocated once; keys must never be NaN
+ * (use -infinity for "never best")
+ */
+public class IndexedMaxHeap {
+
+
+    /**
+     * heap[0] is the index with the highest key; children of position p are 2p+1 and 2p+2
+     */
+    private final int[] heap;
+
+    /**
+     * where each index currently sits in the heap
+     */
+    private final int[] position;
+
+    private final double[] keys;
+
+    /**
+     * scratch stack used to visit the heap without recursion
+     */
+    private final int[] stack;
+
+
+    /**
+     * creates a heap where all the indices have key -infinity
+     * @param size number of indices
+     */
+    public IndexedMaxHeap(int size) {
+        Preconditions.checkArgument(size>0, "Given no options!");
+        heap = new int[size];
+        position = new int[size];
+        keys = new double[size];
+        stack = new int[size];
+        for(int i=0; i<size; i++)
+        {
+            heap[i] = i;
+            position[i] = i;
+            keys[i] = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+
+    /**
+     * change the key of an index and restore the heap order
+     * @param index index whose key changes
+     * @param key new key
+     */
+    public void update(int index, double key){
+        assert !Double.isNaN(key);
+        double old = keys[index];
+        keys[index] = key;
+        if(key>old)
+            siftUp(position[index]);
+        else if(key<old)
+            siftDown(position[index]);
+    }
+
+
+    /**
+     * @return the index with the highest key (any of them, if tied)
+     */
+    public int peek(){
+        return heap[0];
+    }
+
+    public double getKey(int index){
+        return keys[index];
+    }
+
+    public int getSize(){
+        return heap.length;
+    }
+
+
+    /**
+     * write in output all the indices whose key is at least threshold; only the part of the heap above the threshold
+     * is visited so this costs O(number of indices found)
+     * @param threshold minimum key
+     * @param output where to store the indices (must be as large as the heap)
+     * @return how many indices were written
+     */
+    public int collectAtLeast(double threshold, int[] output){
+        int found = 0;
+        int stackSize = 0;
+        if(keys[heap[0]] >= threshold)
+            stack[stackSize++] = 0;
+        while(stackSize>0)
+        {
+            int node = stack[--stackSize];
+            output[found++] = heap[node];
+            int child = 2*node+1;
+            if(child < heap.length && keys[heap[child]] >= threshold)
+                stack[stackSize++] = child;
+            child++;
+            if(child < heap.length && keys[heap[child]] >= threshold)
+                stack[stackSize++] = child;
+        }
+        return found;
+    }
+
+
+    private void siftUp(int node){
+        int index = heap[node];
+        double key = keys[index];
+        while(node>0)
+        {
+            int parent = (node-1)/2;
+            if(keys[heap[parent]] >= key)
+                break;
+            place(heap[parent], node);
+            node = parent;
+        }
+        place(index, node);
+    }
+
+    private void siftDown(int node){
+        int index = heap[node];
+        double key = keys[index];
+        while(true)
+        {
+            int child = 2*node+1;
+            if(child >= heap.length)
+                break;
+            if(child+1 < heap.length && keys[heap[child+1]] > keys[heap[child]])
+                child++;
+            if(keys[heap[child]] <= key)
+                break;
+            place(heap[child], node);
+            node = child;
+        }
+        place(index, node);
+    }
+
+    private void place(int index, int node){
+        heap[node] = index;
+        position[index] = node;
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.carrknight.utils;
+
+import java.util.SplittableRandom;
+
+/**
+ * draws from the few continuous distributions we need, straight from a SplittableRandom
+ * (which in Java 8 has no nextGaussian) and without allocating or keeping state
+ */
+public class RandomVariates {
+
+    private RandomVariates()
+    {
+
+    }
+
+
+    /**
+     * a standard normal draw by Marsaglia's polar method: no trigonometry, one log and one square root per draw.
+     * The second normal the method produces is thrown away so that nothing needs to be cached between calls
+     * @param randomizer randomizer
+     * @return a draw from N(0,1)
+     */
+    public static double nextGaussian(SplittableRandom randomizer){
+        double x;
+        double y;
+        double squaredRadius;
+        do {
+            x = 2 * randomizer.nextDouble() - 1;
+            y = 2 * randomizer.nextDouble() - 1;
+            squaredRadius = x * x + y * y;
+        }
+        while (squaredRadius >= 1 || squaredRadius == 0);
+        return x * Math.sqrt(-2 * Math.log(squaredRadius) / squaredRadius);
+    }
+
+
+    /**
+     * a gamma(shape,1) draw by Marsaglia and Tsang's squeeze method
+     * @param shape shape parameter, positive
+     * @param randomizer randomizer
+     * @return a draw from Gamma(shape,1)
+     */
+    public static double nextGamma(double shape, SplittableRandom randomizer){
+        assert shape > 0;
+        //for shape below 1 draw with shape+1 and scale it down (U^(1/shape) trick)
+        if(shape < 1)
+            return nextGamma(shape + 1, randomizer) *
+                    Math.pow(1d - randomizer.nextDouble(), 1d / shape);
+
+        double d = shape - 1d/3d;
+        double c = 1d / Math.sqrt(9 * d);
+        while (true)
+        {
+            double x;
+            double v;
+            do {
+                x = nextGaussian(randomizer);
+                v = 1 + c * x;
+            }
+            while (v <= 0);
+            v = v * v * v;
+            double u = randomizer.nextDouble();
+            if (u < 1 - 0.0331 * x * x * x * x)
+                return d * v;
+            if (Math.log(u) < 0.5 * x * x + d * (1 - v + Math.log(v)))
+                return d * v;
+        }
+    }
+
+
+    /**
+     * a beta(alpha,beta) draw as the ratio of two gamma draws
+     * @param alpha first shape parameter, positive
+     * @param beta second shape parameter, positive
+     * @param randomizer randomizer
+     * @return a draw from Beta(alpha,beta)
+     */
+    public static double nextBeta(double alpha, double beta, SplittableRandom randomizer){
+        double x = nextGamma(alpha, randomizer);
+        double y = nextGamma(beta, randomizer);
+        return x / (x + y);
+    }
+}
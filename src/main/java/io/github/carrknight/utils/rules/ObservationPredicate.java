@@ -1,6 +1,7 @@
 package io.github.carrknight.utils.rules;
 
 import io.github.carrknight.Observation;
+import io.github.carrknight.ObservationSlice;
 import io.github.carrknight.utils.RewardFunction;
 
 import java.util.SplittableRandom;
@@ -30,4 +31,20 @@ public interface ObservationPredicate<O,R,C>
             SplittableRandom random,
             Observation<O,R,C>... additionalObservations
     );
+
+
+    /**
+     * same as the other shouldExplore but reading additional observations from a slice; the default copies them
+     * into an array, implementations should override it to avoid that
+     */
+    default boolean shouldExplore(
+            Observation<O,R,C> lastObservation,
+            O currentChoice,
+            RewardFunction<O,R,C> rewardFunction,
+            SplittableRandom random,
+            ObservationSlice<O,R,C> additionalObservations
+    ){
+        return shouldExplore(lastObservation, currentChoice, rewardFunction, random,
+                             additionalObservations.toArray());
+    }
 }
@@ -1,6 +1,7 @@
 package io.github.carrknight.utils.rules;
 
 import io.github.carrknight.Observation;
+import io.github.carrknight.ObservationSlice;
 import io.github.carrknight.utils.RewardFunction;
 
 import java.util.SplittableRandom;
@@ -36,4 +37,15 @@ public class StochasticObservationPredicate<O,R,C> implements ObservationPredica
     ) {
         return random.nextDouble()<explorationProbability;
     }
+
+    /**
+     * additional observations are ignored anyway
+     */
+    @Override
+    public boolean shouldExplore(
+            Observation<O, R, C> lastObservation, O currentChoice, RewardFunction<O, R, C> rewardFunction,
+            SplittableRandom random,
+            ObservationSlice<O, R, C> additionalObservations) {
+        return random.nextDouble()<explorationProbability;
+    }
 }
@@ -0,0 +1,72 @@
+package io.github.carrknight.bandits;
+
+import io.github.carrknight.ContextBatch;
+import io.github.carrknight.ObservationBatch;
+import io.github.carrknight.utils.SimpleObservation;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BatchChooserTest {
+
+
+    //learn from a batch, then every greedy decision should go to the two tied best arms, both of them
+    @Test
+    public void greedyBatch() {
+
+        SimpleEpsilonGreedyBandit bandit = new SimpleEpsilonGreedyBandit(10, 0, 0);
+        //a belief that needs scanning: the batch should scan only once but still split ties
+        bandit.resetSimilarityIndex((option, other, context) -> option.equals(other) ? 1 : 0);
+
+        ObservationBatch<Integer,Double,Object> observations = new ObservationBatch<>(2);
+        for(int arm=0; arm<10; arm++)
+            observations.add(new SimpleObservation(arm, arm == 3 || arm == 7 ? 10d : arm));
+        observations.add(null);
+        ContextBatch<Object> contexts = new ContextBatch<>();
+        contexts.add(null, 1000);
+
+        int[] choices = new int[1000];
+        bandit.updateAndChooseBatch(observations, contexts, choices);
+        assertEquals(10, bandit.getNumberOfObservations());
+
+        int threes = 0;
+        for (int choice : choices) {
+            assertTrue(choice == 3 || choice == 7);
+            if (choice == 3)
+                threes++;
+        }
+        assertEquals(500, threes, 60);
+        assertEquals(choices[999], (int) bandit.getLastChoice());
+
+    }
+
+
+    //batches of softmax and UCB decisions should still end up playing the best arm the most
+    @Test
+    public void learnInBatches() {
+
+        AbstractBanditAlgorithm[] bandits = new AbstractBanditAlgorithm[]{
+                new SimpleUCBBanditAlgorithm(10, 0, 0, 10),
+                new SimpleSoftmaxBanditAlgorithm(10, 0, 100, 100, .9)
+        };
+        for (AbstractBanditAlgorithm bandit : bandits) {
+            Random random = new Random(0);
+            ObservationBatch<Integer,Double,Object> observations = new ObservationBatch<>();
+            ContextBatch<Object> contexts = new ContextBatch<>();
+            contexts.add(null, 20);
+            int[] choices = new int[20];
+            for(int step=0; step<300; step++)
+            {
+                bandit.updateAndChooseBatch(observations, contexts, choices);
+                observations.clear();
+                for (int choice : choices)
+                    observations.add(new SimpleObservation(choice, random.nextGaussian() / 2 + choice));
+            }
+            for(int i=0; i<9; i++)
+                assertTrue(bandit.getNumberOfTimesPlayed(9) > bandit.getNumberOfTimesPlayed(i));
+        }
+
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.carrknight.bandits;
+
+import io.github.carrknight.utils.SimpleObservation;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IntBanditTest {
+
+
+    //10 int arms, the last is the best; all the int bandits should find it
+    @Test
+    public void tenArms() {
+
+        IntBandit[] bandits = new IntBandit[]{
+                new IntEpsilonGreedyBandit(10, 0, .2),
+                new IntUCBBandit(10, 0, 0, 10),
+                new IntSoftmaxBandit(10, 0, 100),
+                new IntThompsonSamplingBandit(10, 0, 0, 100)
+        };
+
+        for (IntBandit bandit : bandits) {
+            Random random = new Random(0);
+            int arm = bandit.getLastChoice();
+            for (int i = 0; i < 1000; i++)
+                arm = bandit.updateAndChoose(arm, random.nextGaussian() / 2 + arm);
+
+            for(int i=0; i<9; i++)
+                assertTrue(bandit.getState().predict(9) > bandit.getState().predict(i));
+            assertEquals(1000, bandit.getNumberOfObservations());
+        }
+
+    }
+
+
+    //generic bandits are adapters: same seed, same choices
+    @Test
+    public void adapterMatchesDelegate() {
+
+        IntEpsilonGreedyBandit primitive = new IntEpsilonGreedyBandit(10, 42, .2);
+        SimpleEpsilonGreedyBandit generic = new SimpleEpsilonGreedyBandit(10, 42, .2);
+
+        assertEquals(primitive.getLastChoice(), (int) generic.getLastChoice());
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            int arm = primitive.getLastChoice();
+            double reward = random.nextGaussian() / 2 + arm;
+            int primitiveChoice = primitive.updateAndChoose(arm, reward);
+            int genericChoice = generic.updateAndChoose(new SimpleObservation(arm, reward));
+            assertEquals(primitiveChoice, genericChoice);
+        }
+
+    }
+
+    //no observation means no learning
+    @Test
+    public void noObservation() {
+        IntUCBBandit bandit = new IntUCBBandit(5, 0, 0, 1);
+        bandit.updateAndChoose(IntBandit.NO_OBSERVATION, Double.NaN);
+        assertEquals(0, bandit.getNumberOfObservations());
+    }
+
+
+    //lazy UCB should always pick an arm with the top upper confidence bound, without evaluating them all
+    @Test
+    public void lazyUCB() {
+
+        int numberOfArms = 2000;
+        IntUCBBandit bandit = new IntUCBBandit(numberOfArms, 0, 0, 1);
+        assertTrue(bandit.isLazyEvaluation());
+        Random random = new Random(0);
+        long evaluations = 0;
+        for (int i = 0; i < 20000; i++) {
+            int arm = bandit.getLastChoice();
+            int choice = bandit.updateAndChoose(arm, random.nextDouble() * arm / numberOfArms);
+            if(i < numberOfArms)
+                continue;
+            evaluations += bandit.getArmsEvaluatedLastStep();
+
+            double logOfObservations = Math.log(bandit.getNumberOfObservations());
+            double max = Double.NEGATIVE_INFINITY;
+            for (int j = 0; j < numberOfArms; j++)
+                max = Math.max(max, bandit.getState().predict(j) +
+                        Math.sqrt(2 * logOfObservations / bandit.getNumberOfTimesPlayed(j)));
+            assertEquals(max,
+                         bandit.getState().predict(choice) +
+                                 Math.sqrt(2 * logOfObservations / bandit.getNumberOfTimesPlayed(choice)),
+                         1e-9);
+        }
+        //much fewer than a full scan each step
+        assertTrue(evaluations < 18000L * numberOfArms / 10);
+
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.carrknight.bandits;
+
+import io.github.carrknight.heatmaps.regression.BetaBernoulliFilter;
+import io.github.carrknight.heatmaps.regression.IndexedFilterSpace;
+import io.github.carrknight.utils.SimpleObservation;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class ThompsonSamplingBanditTest {
+
+
+    //10 options, the last is the best; normal posteriors should find it
+    @Test
+    public void tenOptions() {
+
+        ThompsonSamplingBandit<Integer,Double,Object> bandit =
+                new ThompsonSamplingBandit<>(
+                        (optionTaken, experimentResult, contextObject) -> experimentResult,
+                        SimpleEpsilonGreedyBandit.buildOptionsArray(10),
+                        0,
+                        100,
+                        new SplittableRandom(0)
+                );
+
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            int arm = bandit.getLastChoice();
+            double reward = random.nextGaussian() / 2 + arm;
+            bandit.updateAndChoose(new SimpleObservation(arm, reward));
+        }
+
+        for(int i=0; i<9; i++)
+            assertTrue(bandit.getNumberOfTimesPlayed(9) > bandit.getNumberOfTimesPlayed(i));
+        assertTrue(bandit.getNumberOfTimesPlayed(9) > 800);
+
+    }
+
+
+    //coin flips with different odds, beta posteriors should end up flipping the best coin
+    @Test
+    public void bernoulliArms() {
+
+        double[] odds = new double[]{.1, .3, .5, .55, .7};
+        IntThompsonSamplingBandit bandit = new IntThompsonSamplingBandit(
+                new IndexedFilterSpace(odds.length, BetaBernoulliFilter::new),
+                new SplittableRandom(0));
+
+        Random random = new Random(0);
+        for (int i = 0; i < 5000; i++) {
+            int arm = bandit.getLastChoice();
+            bandit.updateAndChoose(arm, random.nextDouble() < odds[arm] ? 1 : 0);
+        }
+
+        for(int i=0; i<4; i++)
+            assertTrue(bandit.getNumberOfTimesPlayed(4) > bandit.getNumberOfTimesPlayed(i));
+        assertEquals(.7, bandit.getState().predict(4), .05);
+
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.carrknight.bandits.population;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BanditPopulationTest {
+
+
+    //100 agents, 10 arms each, the last arm is the best for everybody; populations should find it
+    @Test
+    public void tenArms() {
+
+        int agents = 100;
+        BanditPopulation[] populations = new BanditPopulation[]{
+                new EpsilonGreedyBanditPopulation(agents, 10, 0, .2),
+                new UCBBanditPopulation(agents, 10, 0, 0, 10),
+                new SoftmaxBanditPopulation(agents, 10, 0, 100)
+        };
+
+        for (BanditPopulation population : populations) {
+            Random random = new Random(0);
+            int[] choices = new int[agents];
+            double[] rewards = new double[agents];
+            population.chooseAll(choices);
+            for (int step = 0; step < 1000; step++) {
+                for (int agent = 0; agent < agents; agent++)
+                    rewards[agent] = random.nextGaussian() / 2 + choices[agent];
+                population.stepAll(choices, rewards, choices);
+            }
+
+            int correct = 0;
+            for (int agent = 0; agent < agents; agent++) {
+                assertEquals(1000, population.getNumberOfObservations(agent));
+                boolean bestIsNine = true;
+                for (int arm = 0; arm < 9; arm++)
+                    bestIsNine &= population.predict(agent, 9) > population.predict(agent, arm);
+                if (bestIsNine)
+                    correct++;
+            }
+            assertTrue(population.getClass().getSimpleName() + " " + correct, correct > 90);
+        }
+    }
+
+    //agents with no observation don't learn
+    @Test
+    public void noObservation() {
+        EpsilonGreedyBanditPopulation population = new EpsilonGreedyBanditPopulation(3, 2, 0, .1);
+        int[] choices = new int[]{BanditPopulation.NO_OBSERVATION, 1, 0};
+        population.stepAll(choices, new double[]{1, Double.NaN, 2}, choices);
+        assertEquals(0, population.getNumberOfObservations(0));
+        assertEquals(0, population.getNumberOfObservations(1));
+        assertEquals(1, population.getNumberOfObservations(2));
+        assertEquals(2, population.predict(2, 0), .0001);
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.carrknight.heatmaps.regression;
+
+import io.github.carrknight.bandits.EpsilonGreedyBandit;
+import io.github.carrknight.utils.SimpleObservation;
+import io.github.carrknight.utils.averager.IterativeAverageFilter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentFilterSpaceTest {
+
+
+    //many threads writing and reading at once: no observation should get lost
+    @Test
+    public void noLostUpdates() throws InterruptedException {
+
+        Integer[] options = new Integer[]{0, 1, 2, 3, 4};
+        ConcurrentFilterSpace<Integer,Double,Object> space = new ConcurrentFilterSpace<>(
+                options,
+                //not thread safe at all on its own
+                () -> new OneDimensionalFilter() {
+                    private double observations = 0;
+
+                    @Override
+                    public double predict() {
+                        return observations;
+                    }
+
+                    @Override
+                    public void observe(double evidence, double weight) {
+                        observations++;
+                    }
+                },
+                (option, result, context) -> result,
+                null,
+                2
+        );
+
+        List<Thread> threads = new ArrayList<>();
+        for(int t=0; t<8; t++)
+        {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    space.observe(new SimpleObservation(i % options.length, 1d));
+                    //reads mixed in with the writes
+                    space.predict((i + 1) % options.length, null);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        for (Integer option : options)
+            assertEquals(8 * 20000 / options.length, space.predict(option, null), 0);
+
+    }
+
+
+    @Test
+    public void behavesLikeLocalFilterSpace() {
+
+        Integer[] options = new Integer[]{0, 1, 2};
+        ConcurrentFilterSpace<Integer,Double,Object> space = new ConcurrentFilterSpace<>(
+                options,
+                () -> new IterativeAverageFilter(0d),
+                (option, result, context) -> result,
+                (option, other, context) -> option.equals(other) ? 1 : .5
+        );
+        space.observe(new SimpleObservation(0, 10d));
+        space.observe(new SimpleObservation(1, 4d));
+        assertEquals(8, space.predict(0, null), .0001);
+        assertEquals(6, space.predict(1, null), .0001);
+        assertEquals(7, space.predict(2, null), .0001);
+        assertEquals(3, space.getNumberOfArms());
+
+    }
+
+
+    //a bandit can use a shared space as its state and reset it like it would a LocalFilterSpace
+    @Test
+    public void worksAsBanditState() {
+
+        Integer[] options = new Integer[]{0, 1, 2};
+        ConcurrentFilterSpace<Integer,Double,Object> space = new ConcurrentFilterSpace<>(
+                options,
+                () -> new IterativeAverageFilter(0d),
+                (option, result, context) -> result,
+                null
+        );
+        EpsilonGreedyBandit<Integer,Double,Object> bandit = new EpsilonGreedyBandit<>(
+                (option, result, context) -> result,
+                options,
+                0,
+                0
+        );
+        bandit.setBanditState(space);
+        assertEquals(2, (int) bandit.updateAndChoose(new SimpleObservation(2, 10d)));
+        assertEquals(10, space.predict(2, null), .0001);
+
+        bandit.resetStateUsingThisFilter(() -> new IterativeAverageFilter(0d));
+        bandit.resetSimilarityIndex((option, other, context) -> option.equals(other) ? 1 : .5);
+        assertEquals(0, space.predict(2, null), .0001);
+        assertNotNull(space.getOptionSimilarity());
+        assertEquals(1, (int) bandit.updateAndChoose(new SimpleObservation(1, 4d)));
+        //the similarity spreads the observation to options never tried
+        assertEquals(4, space.predict(0, null), .0001);
+
+    }
+}
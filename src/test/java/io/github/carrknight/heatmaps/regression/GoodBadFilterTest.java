@@ -23,4 +23,47 @@ public class GoodBadFilterTest {
         assertEquals(0.9820138,filter.getProbabilityBeingAGoodSpot(),.0001);
 
     }
-}
\ No newline at end of file
+
+
+    @Test
+    public void lazyDrift() {
+
+        GoodBadFilter eager = new GoodBadFilter(0, 100, 50, .05);
+        GoodBadFilter lazy = new GoodBadFilter(0, 100, 50, .05);
+        eager.observe(100, 1);
+        lazy.observe(100, 1);
+
+        for(int i=0; i<15; i++)
+            eager.drift();
+        lazy.drift(15);
+        assertEquals(eager.getProbabilityBeingAGoodSpot(), lazy.getProbabilityBeingAGoodSpot(), .00001);
+        assertTrue(lazy.getProbabilityBeingAGoodSpot() < .8);
+
+        DriftClock clock = new DriftClock();
+        lazy.setClock(clock);
+        clock.tick(1000);
+        assertEquals(.5, lazy.getProbabilityBeingAGoodSpot(), .00001);
+
+    }
+
+
+    //both likelihoods underflow here, but their ratio doesn't: evidence closer to good still means good,
+    //and the opposite evidence brings us exactly back
+    @Test
+    public void noUnderflow() {
+
+        GoodBadFilter filter = new GoodBadFilter(0, 1, .01, 0);
+
+        filter.observe(.6, 1);
+        assertEquals(1, filter.getProbabilityBeingAGoodSpot(), .0001);
+        assertEquals(1, filter.predict(), .0001);
+
+        filter.observe(.4, 1);
+        assertEquals(.5, filter.getProbabilityBeingAGoodSpot(), .0001);
+
+        filter.observe(-1000, 1);
+        assertEquals(0, filter.getProbabilityBeingAGoodSpot(), .0001);
+        assertFalse(Double.isNaN(filter.predict()));
+
+    }
+}
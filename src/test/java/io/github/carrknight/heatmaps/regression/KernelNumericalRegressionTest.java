@@ -0,0 +1,103 @@
+package io.github.carrknight.heatmaps.regression;
+
+import io.github.carrknight.heatmaps.regression.distance.EpanechinikovKernel;
+import io.github.carrknight.heatmaps.regression.distance.FeatureKernel;
+import io.github.carrknight.heatmaps.regression.distance.RBFKernel;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class KernelNumericalRegressionTest {
+
+
+    //the grid should give exactly the same predictions as scanning everything (a kernel wrapped in a lambda has
+    //no known support, so that regression has no grid)
+    @Test
+    public void gridSameAsFullScan() {
+
+        FeatureKernel first = new RBFKernel(4);
+        FeatureKernel second = new EpanechinikovKernel(9);
+        KernelNumericalRegression indexed = new KernelNumericalRegression(
+                new FeatureKernel[]{first, second}, 500);
+        KernelNumericalRegression scanned = new KernelNumericalRegression(
+                new FeatureKernel[]{first::similarity, second::similarity}, 500);
+
+        SplittableRandom random = new SplittableRandom(0);
+        for(int i=0; i<2000; i++)
+        {
+            double[] x = new double[]{random.nextDouble(-50, 50), random.nextDouble(-50, 50)};
+            double y = x[0] - x[1] + random.nextGaussian();
+            indexed.observe(x, y);
+            scanned.observe(x, y);
+
+            if(i % 10 == 0)
+                for(int query=0; query<20; query++)
+                {
+                    double[] where = new double[]{random.nextDouble(-60, 60), random.nextDouble(-60, 60)};
+                    double expected = scanned.predict(where);
+                    double actual = indexed.predict(where);
+                    if(Double.isNaN(expected))
+                        assertTrue(Double.isNaN(actual));
+                    else
+                        assertEquals(expected, actual, 0);
+                }
+            if(i == 1000)
+            {
+                //shrinking drops the oldest and moves everything around
+                indexed.setMaximumNumberOfObservationsToKeep(300);
+                scanned.setMaximumNumberOfObservationsToKeep(300);
+            }
+        }
+        assertEquals(300, indexed.getObservations().size());
+
+    }
+
+
+    //the running sums at the query points should match predicting each of them from scratch
+    @Test
+    public void queryPointsSameAsPredict() {
+
+        for(boolean finiteSupport : new boolean[]{true, false})
+        {
+            FeatureKernel first = new RBFKernel(4);
+            FeatureKernel second = new EpanechinikovKernel(9);
+            KernelNumericalRegression regression = new KernelNumericalRegression(
+                    finiteSupport ? new FeatureKernel[]{first, second} :
+                            new FeatureKernel[]{first::similarity, second::similarity}, 200);
+
+            double[][] heatmap = new double[121][];
+            for(int i=0; i<11; i++)
+                for(int j=0; j<11; j++)
+                    heatmap[i*11+j] = new double[]{i*10-50, j*10-50};
+            regression.setQueryPoints(heatmap);
+            assertEquals(121, regression.getNumberOfQueryPoints());
+
+            double[] predictions = new double[heatmap.length];
+            SplittableRandom random = new SplittableRandom(1);
+            for(int step=0; step<1000; step++)
+            {
+                double[] x = new double[]{random.nextDouble(-50, 50), random.nextDouble(-50, 50)};
+                regression.observe(x, x[0] + 2 * x[1] + random.nextGaussian());
+                if(step == 500)
+                    regression.setMaximumNumberOfObservationsToKeep(150);
+
+                if(step % 25 == 0)
+                {
+                    regression.predictAll(predictions);
+                    for(int q=0; q<heatmap.length; q++)
+                    {
+                        double expected = regression.predict(heatmap[q]);
+                        if(Double.isNaN(expected))
+                            assertTrue(Double.isNaN(predictions[q]));
+                        else
+                            assertEquals(expected, predictions[q], 1e-6);
+                        assertEquals(predictions[q], regression.predictQueryPoint(q), 0);
+                    }
+                }
+            }
+        }
+
+    }
+}
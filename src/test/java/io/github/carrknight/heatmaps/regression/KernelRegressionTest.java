@@ -7,6 +7,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.awt.geom.Point2D;
+import java.util.SplittableRandom;
 import java.util.function.Function;
 
 public class KernelRegressionTest {
@@ -85,6 +86,46 @@ public class KernelRegressionTest {
     }
 
 
+    //registered options are read from the cache but must predict what feature extraction predicts
+    @Test
+    public void registeredOptionsSameAsFeatures() {
+
+        FeatureExtractor<Point2D, Double>[] extractors = new FeatureExtractor[]{
+                (FeatureExtractor<Point2D, Double>) (option, context) -> option.getX(),
+                (FeatureExtractor<Point2D, Double>) (option, context) -> option.getY() + context
+        };
+        KernelRegression<Point2D, Double, Double> cached = new KernelRegression<>(
+                extractors, Observation::getResultObserved,
+                new FeatureKernel[]{new RBFKernel(5), new RBFKernel(5)}, 50);
+        KernelRegression<Point2D, Double, Double> plain = new KernelRegression<>(
+                extractors, Observation::getResultObserved,
+                new FeatureKernel[]{new RBFKernel(5), new RBFKernel(5)}, 50);
+
+        Point2D[] options = new Point2D[25];
+        for(int i=0; i<options.length; i++)
+            options[i] = new Point2D.Double(i % 5, i / 5);
+        cached.setOptions(options, 0d);
+
+        SplittableRandom random = new SplittableRandom(0);
+        double[] predictions = new double[options.length];
+        for(int step=0; step<200; step++)
+        {
+            Observation<Point2D, Double, Double> observation = new Observation<>(
+                    new Point2D.Double(random.nextDouble(0, 5), random.nextDouble(0, 5)),
+                    random.nextDouble(),
+                    0d);
+            cached.observe(observation);
+            plain.observe(observation);
+
+            cached.predictAll(predictions);
+            for(int i=0; i<options.length; i++)
+            {
+                Assert.assertEquals(plain.predict(options[i], 0d), cached.predict(options[i], 0d), .000001);
+                Assert.assertEquals(plain.predict(options[i], 0d), predictions[i], .000001);
+                //a different context changes the features: no cache
+                Assert.assertEquals(plain.predict(options[i], 1d), cached.predict(options[i], 1d), 0);
+            }
+        }
 
-
-}
\ No newline at end of file
+    }
+}
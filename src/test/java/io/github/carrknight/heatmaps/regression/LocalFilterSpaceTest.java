@@ -0,0 +1,165 @@
+package io.github.carrknight.heatmaps.regression;
+
+import io.github.carrknight.Observation;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class LocalFilterSpaceTest {
+
+
+    //feeding by index or by option object should learn the same thing
+    @Test
+    public void indexedSameAsObjects() {
+
+        String[] options = new String[]{"a", "b", "c", "d"};
+        LocalFilterSpace<String,Double,Object> byObject = new LocalFilterSpace<>(
+                options,
+                () -> new OneDimensionalKalmanFilter(1, 1, 100, 0, 0),
+                (option, result, context) -> result,
+                null
+        );
+        LocalFilterSpace<String,Double,Object> byIndex = new LocalFilterSpace<>(
+                options,
+                () -> new OneDimensionalKalmanFilter(1, 1, 100, 0, 0),
+                (option, result, context) -> result,
+                null
+        );
+
+        SplittableRandom random = new SplittableRandom(0);
+        for(int i=0; i<100; i++)
+        {
+            int arm = random.nextInt(options.length);
+            double reward = arm + random.nextGaussian();
+            byObject.observe(new Observation<>(options[arm], reward));
+            byIndex.observe(arm, reward, 1);
+        }
+
+        assertEquals(options.length, byIndex.getNumberOfArms());
+        for(int arm=0; arm<options.length; arm++)
+        {
+            assertEquals(byObject.predict(options[arm], null), byIndex.predict(arm), .00001);
+            assertEquals(options[arm], byIndex.getOption(arm));
+        }
+        assertEquals(3, byIndex.getBestArm(random));
+        assertEquals("d", byObject.getBestOption(random));
+
+    }
+
+
+    //filters given to the constructor can still be changed by whoever made them: the best option must follow
+    @Test
+    public void filtersChangedOutsideTheSpace() {
+
+        String[] options = new String[]{"a", "b", "c"};
+        OneDimensionalFilter[] filters = new OneDimensionalFilter[options.length];
+        for(int i=0; i<filters.length; i++)
+            filters[i] = new OneDimensionalKalmanFilter(1, 1, 100, i, 0);
+        LocalFilterSpace<String,Double,Object> space = new LocalFilterSpace<>(
+                options,
+                filters,
+                (option, result, context) -> result,
+                null
+        );
+        SplittableRandom random = new SplittableRandom(0);
+        assertEquals("c", space.getBestOption(random));
+        assertFalse(space.isBestArmIndexed());
+
+        //nobody tells the space
+        for(int i=0; i<10; i++)
+            filters[0].observe(100, 1);
+        assertEquals("a", space.getBestOption(random));
+        space.observe(1, 1000, 1);
+        assertEquals("b", space.getBestOption(random));
+
+        //once told, the index is on and has to be kept informed
+        space.filtersChanged();
+        assertTrue(space.isBestArmIndexed());
+        assertEquals("b", space.getBestOption(random));
+        for(int i=0; i<10; i++)
+            filters[2].observe(10000, 1);
+        space.filtersChanged();
+        assertEquals("c", space.getBestOption(random));
+
+    }
+
+
+    //filters drifting alike keep their order: ticking should not make the space read every filter again
+    @Test
+    public void tickingDoesNotRescan() {
+
+        int[] predictions = new int[1];
+        Integer[] options = new Integer[50];
+        for(int i=0; i<options.length; i++)
+            options[i] = i;
+        LocalFilterSpace<Integer,Double,Object> space = new LocalFilterSpace<>(
+                options,
+                () -> new GoodBadFilter(0, 10, 5, .05) {
+                    @Override
+                    public double predict() {
+                        predictions[0]++;
+                        return super.predict();
+                    }
+                },
+                (option, result, context) -> result,
+                null
+        );
+
+        SplittableRandom random = new SplittableRandom(0);
+        for(int i=0; i<200; i++)
+            space.observe(random.nextInt(options.length), random.nextDouble(0, 10), 1);
+        space.getBestArm(random);
+
+        predictions[0] = 0;
+        for(int tick=0; tick<100; tick++)
+        {
+            space.advanceClock();
+            space.observe(random.nextInt(options.length), random.nextDouble(0, 10), 1);
+            space.getBestArm(random);
+        }
+        //one prediction per observation, none per tick
+        assertEquals(100, predictions[0]);
+
+    }
+
+
+    //ranking in the clock frame must pick what scanning the predictions picks, long after the frame has moved
+    @Test
+    public void driftingFiltersStillRankedRight() {
+
+        checkBestAfterTicks(() -> new GoodBadFilter(0, 10, 5, .05));
+        checkBestAfterTicks(() -> new OneDimensionalKalmanFilter(.9, 1, 10, 0, .1));
+        checkBestAfterTicks(() -> new OneDimensionalKalmanFilter(1.05, 1, 10, 0, .1));
+        //filters drifting differently fall back to rebuilding at every tick
+        SplittableRandom random = new SplittableRandom(1);
+        checkBestAfterTicks(() -> new GoodBadFilter(0, 10, 5, random.nextDouble(.01, .1)));
+
+    }
+
+
+    private void checkBestAfterTicks(Supplier<OneDimensionalFilter> filterMaker){
+
+        Integer[] options = new Integer[20];
+        for(int i=0; i<options.length; i++)
+            options[i] = i;
+        LocalFilterSpace<Integer,Double,Object> space = new LocalFilterSpace<>(
+                options, filterMaker, (option, result, context) -> result, null);
+
+        SplittableRandom random = new SplittableRandom(0);
+        for(int tick=0; tick<5000; tick++)
+        {
+            space.advanceClock();
+            int arm = random.nextInt(options.length);
+            space.observe(arm, arm + random.nextDouble(0, 5), random.nextDouble(.5, 2));
+            int best = space.getBestArm(random);
+            double bestPrediction = Double.NEGATIVE_INFINITY;
+            for(int i=0; i<options.length; i++)
+                bestPrediction = Math.max(bestPrediction, space.predict(i));
+            assertEquals(bestPrediction, space.predict(best), Math.abs(bestPrediction) * 1e-9);
+        }
+
+    }
+}
@@ -0,0 +1,185 @@
+package io.github.carrknight.heatmaps.regression;
+
+import io.github.carrknight.heatmaps.regression.distance.CartesianFeatureDistance;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class NearestNeighborNumericalRegressionTest {
+
+
+    //with a FIFO window the prediction is the average of the k closest among the last maximumSize observations
+    @Test
+    public void fifoSameAsBruteForce() {
+
+        int window = 300;
+        int k = 5;
+        NearestNeighborNumericalRegression regression = new NearestNeighborNumericalRegression(
+                new double[]{1, 4},
+                new CartesianFeatureDistance(1),
+                k,
+                window,
+                NeighborEviction.fifo()
+        );
+
+        SplittableRandom random = new SplittableRandom(0);
+        double[][] xs = new double[5000][];
+        double[] ys = new double[5000];
+        for(int i=0; i<xs.length; i++)
+        {
+            xs[i] = new double[]{random.nextDouble(-100, 100), random.nextDouble(-100, 100)};
+            ys[i] = random.nextDouble();
+            regression.observe(xs[i], ys[i]);
+            assertEquals(Math.min(i + 1, window), regression.getNumberOfObservations());
+
+            if(i % 50 == 0)
+                for(int query=0; query<10; query++)
+                {
+                    double[] where = new double[]{random.nextDouble(-100, 100), random.nextDouble(-100, 100)};
+                    //brute force over the window
+                    int from = Math.max(0, i + 1 - window);
+                    double[] distances = new double[i + 1 - from];
+                    for(int j=from; j<=i; j++)
+                    {
+                        double first = where[0] - xs[j][0];
+                        double second = where[1] - xs[j][1];
+                        distances[j - from] = first * first + second * second / 4;
+                    }
+                    double[] sorted = distances.clone();
+                    Arrays.sort(sorted);
+                    double threshold = sorted[Math.min(k, sorted.length) - 1];
+                    double sum = 0;
+                    int count = 0;
+                    for(int j=from; j<=i; j++)
+                        if(distances[j - from] <= threshold) {
+                            sum += ys[j];
+                            count++;
+                        }
+                    assertEquals(Math.min(k, sorted.length), count); //no ties with random doubles
+                    assertEquals(sum / count, regression.predict(where), 1e-9);
+                }
+        }
+
+    }
+
+
+    @Test
+    public void reservoirStaysBounded() {
+
+        NearestNeighborNumericalRegression regression = new NearestNeighborNumericalRegression(
+                new double[]{1},
+                new CartesianFeatureDistance(1),
+                10,
+                100,
+                NeighborEviction.reservoir(new SplittableRandom(0))
+        );
+        //first half of the observations are 0, the second half 1: a uniform sample should be about half and half
+        for(int i=0; i<100000; i++)
+            regression.observe(new double[]{0}, i < 50000 ? 0d : 1d);
+        assertEquals(100, regression.getNumberOfObservations());
+
+        NearestNeighborNumericalRegression all = new NearestNeighborNumericalRegression(
+                new double[]{1},
+                new CartesianFeatureDistance(1),
+                100,
+                100,
+                NeighborEviction.reservoir(new SplittableRandom(0))
+        );
+        for(int i=0; i<100000; i++)
+            all.observe(new double[]{0}, i < 50000 ? 0d : 1d);
+        assertEquals(.5, all.predict(new double[]{0}), .15);
+
+    }
+
+
+    @Test
+    public void timeDecayForgets() {
+
+        NearestNeighborNumericalRegression regression = new NearestNeighborNumericalRegression(
+                new double[]{1},
+                new CartesianFeatureDistance(1),
+                2,
+                1000,
+                NeighborEviction.timeDecay(.5)
+        );
+        regression.observe(new double[]{0}, 10d);
+        regression.observe(new double[]{0}, 20d);
+        //the older one weighs half as much
+        assertEquals((10 * .5 + 20) / 1.5, regression.predict(new double[]{0}), 1e-9);
+
+        //far away observations push the first two beyond the age that counts
+        for(int i=0; i<100; i++)
+            regression.observe(new double[]{1000}, 0d);
+        assertEquals(0, regression.predict(new double[]{0}), 1e-9);
+
+    }
+
+
+    //predictions from many threads at once should be what a single thread gets
+    @Test
+    public void concurrentPredictions() {
+
+        NearestNeighborNumericalRegression regression = new NearestNeighborNumericalRegression(
+                new double[]{1, 10, 100},
+                new CartesianFeatureDistance(1),
+                7,
+                2000,
+                NeighborEviction.fifo()
+        );
+        SplittableRandom random = new SplittableRandom(0);
+        for(int i=0; i<5000; i++)
+            regression.observe(new double[]{random.nextDouble(), random.nextDouble(), random.nextDouble()},
+                               random.nextDouble());
+
+        double[][] queries = new double[2000][];
+        double[] expected = new double[queries.length];
+        for(int q=0; q<queries.length; q++)
+        {
+            queries[q] = new double[]{random.nextDouble(), random.nextDouble(), random.nextDouble()};
+            expected[q] = regression.predict(queries[q]);
+        }
+        double[] parallel = IntStream.range(0, queries.length).parallel().
+                mapToDouble(q -> regression.predict(queries[q])).toArray();
+        assertArrayEquals(expected, parallel, 0);
+
+        //each thread with its own buffer
+        ThreadLocal<NearestNeighborNumericalRegression.QueryBuffer> buffers =
+                ThreadLocal.withInitial(NearestNeighborNumericalRegression.QueryBuffer::new);
+        double[] buffered = IntStream.range(0, queries.length).parallel().
+                mapToDouble(q -> regression.predict(queries[q], buffers.get())).toArray();
+        assertArrayEquals(expected, buffered, 0);
+
+    }
+
+
+    @Test
+    public void predictAllSameAsPredict() {
+
+        NearestNeighborNumericalRegression regression = new NearestNeighborNumericalRegression(
+                new double[]{1, 3},
+                new CartesianFeatureDistance(1),
+                4,
+                1000,
+                NeighborEviction.timeDecay(.999)
+        );
+        SplittableRandom random = new SplittableRandom(0);
+        for(int i=0; i<3000; i++)
+            regression.observe(new double[]{random.nextDouble(-10, 10), random.nextDouble(-10, 10)},
+                               random.nextDouble());
+
+        double[][] queries = new double[777][];
+        for(int q=0; q<queries.length; q++)
+            queries[q] = new double[]{random.nextDouble(-12, 12), random.nextDouble(-12, 12)};
+        queries[5] = new double[]{Double.NaN, 1};
+        double[] predictions = new double[queries.length];
+        regression.predictAll(queries, predictions);
+        for(int q=0; q<queries.length; q++)
+            assertEquals(regression.predict(queries[q]), predictions[q], 0);
+        assertTrue(Double.isNaN(predictions[5]));
+
+    }
+}
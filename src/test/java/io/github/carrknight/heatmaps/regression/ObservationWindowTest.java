@@ -0,0 +1,43 @@
+package io.github.carrknight.heatmaps.regression;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ObservationWindowTest {
+
+
+    //grows, wraps around and shrinks, always keeping the newest observations oldest first
+    @Test
+    public void keepsNewestInOrder() {
+
+        ObservationWindow window = new ObservationWindow(2, 40);
+        for(int i=0; i<100; i++)
+            window.append(new double[]{i, -i}, i * 10);
+
+        assertEquals(40, window.size());
+        assertTrue(window.isFull());
+        for(int i=0; i<40; i++)
+        {
+            assertEquals(60 + i, window.getX(i, 0), .0001);
+            assertEquals(-60 - i, window.getX(i, 1), .0001);
+            assertEquals((60 + i) * 10, window.getY(i), .0001);
+        }
+
+        window.setCapacity(5);
+        assertEquals(5, window.size());
+        assertEquals(95, window.getX(0, 0), .0001);
+        window.append(new double[]{100, -100}, 1000);
+        assertEquals(96, window.getX(0, 0), .0001);
+        assertEquals(100, window.getX(4, 0), .0001);
+
+        window.setCapacity(50);
+        assertFalse(window.isFull());
+        for(int i=101; i<120; i++)
+            window.append(new double[]{i, -i}, i * 10);
+        assertEquals(24, window.size());
+        assertEquals(96, window.getX(0, 0), .0001);
+        assertEquals(1190, window.getY(23), .0001);
+
+    }
+}
@@ -42,4 +42,30 @@ public class OneDimensionalKalmanFilterTest {
         assertEquals(kalmanFilter.getStateEstimate(),30,1);
 
     }
-}
\ No newline at end of file
+
+
+    //a clock ticking n times should do what n eager drifts do
+    @Test
+    public void lazyDrift() {
+
+        OneDimensionalKalmanFilter eager = new OneDimensionalKalmanFilter(.9, 1, 10, 30, 2);
+        OneDimensionalKalmanFilter lazy = new OneDimensionalKalmanFilter(.9, 1, 10, 30, 2);
+        DriftClock clock = new DriftClock();
+        lazy.setClock(clock);
+
+        for(int i=0; i<7; i++)
+        {
+            eager.drift();
+            clock.tick();
+        }
+        eager.observe(10, 1);
+        lazy.observe(10, 1);
+        for(int i=0; i<20; i++)
+            eager.drift();
+        clock.tick(20);
+
+        assertEquals(eager.getStateEstimate(), lazy.getStateEstimate(), .00001);
+        assertEquals(eager.getUncertainty(), lazy.getUncertainty(), .00001);
+
+    }
+}
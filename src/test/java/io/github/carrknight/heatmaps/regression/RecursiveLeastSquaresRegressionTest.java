@@ -7,6 +7,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
+import java.util.SplittableRandom;
 
 import static org.junit.Assert.*;
 
@@ -45,4 +46,148 @@ public class RecursiveLeastSquaresRegressionTest {
     }
 
 
-}
\ No newline at end of file
+    //the packed, scaled update should follow the textbook dense one (P as a full matrix, divided at every step)
+    @Test
+    public void sameAsDenseUpdate() {
+
+        int dimension = 4;
+        double forgetting = .97;
+        RecursiveLeastSquaresRegression regression =
+                new RecursiveLeastSquaresRegression(0, 100, dimension, forgetting);
+
+        double[][] p = new double[dimension][dimension];
+        double[] beta = new double[dimension];
+        for(int i=0; i<dimension; i++)
+            p[i][i] = 100;
+
+        SplittableRandom random = new SplittableRandom(0);
+        for(int step=0; step<2000; step++)
+        {
+            double[] x = new double[]{1, random.nextGaussian(), random.nextGaussian(), random.nextDouble()};
+            double y = 2 + x[1] - 3 * x[2] + random.nextGaussian();
+            double weight = random.nextDouble(.1, 2);
+            regression.observe(x, y, weight);
+
+            double[] pi = new double[dimension];
+            for(int column=0; column<dimension; column++)
+                for(int row=0; row<dimension; row++)
+                    pi[column] += x[row] * p[row][column];
+            double gamma = forgetting / weight;
+            for(int row=0; row<dimension; row++)
+                gamma += x[row] * pi[row];
+            double error = y;
+            for(int i=0; i<dimension; i++)
+                error -= x[i] * beta[i];
+            for(int i=0; i<dimension; i++)
+                beta[i] += error * pi[i] / gamma;
+            for(int row=0; row<dimension; row++)
+                for(int column=0; column<dimension; column++)
+                    p[row][column] = (p[row][column] - pi[row] * pi[column] / gamma) / forgetting;
+        }
+
+        for(int i=0; i<dimension; i++)
+        {
+            assertEquals(beta[i], regression.getBeta()[i], 1e-8);
+            for(int j=0; j<dimension; j++)
+                assertEquals(p[i][j], regression.getUncertainty(i, j), 1e-8 * Math.abs(p[i][j]) + 1e-12);
+        }
+        //forgetting fast, so only roughly right
+        assertEquals(-3, regression.getBeta()[2], 1);
+
+    }
+
+
+    //a block of observations should end up where observing them one by one does
+    @Test
+    public void batchSameAsSequential() {
+
+        int dimension = 3;
+        RecursiveLeastSquaresRegression sequential =
+                new RecursiveLeastSquaresRegression(0, 1000, dimension, .95);
+        RecursiveLeastSquaresRegression batch =
+                new RecursiveLeastSquaresRegression(0, 1000, dimension, .95);
+        //small enough to go row by row otherwise
+        batch.alwaysBlock = true;
+
+        SplittableRandom random = new SplittableRandom(0);
+        for(int round=0; round<50; round++)
+        {
+            int size = 1 + random.nextInt(30);
+            double[][] x = new double[size][];
+            double[] y = new double[size];
+            double[] weight = new double[size];
+            for(int t=0; t<size; t++)
+            {
+                x[t] = new double[]{1, random.nextGaussian(), random.nextGaussian()};
+                y[t] = 1 - x[t][1] + 2 * x[t][2] + random.nextGaussian();
+                weight[t] = random.nextInt(10) == 0 ? 0 : random.nextDouble(.1, 3);
+            }
+            //an invalid observation in the middle is skipped by both
+            if(size > 2)
+                y[1] = Double.NaN;
+
+            batch.observe(x, y, weight);
+            for(int t=0; t<size; t++)
+                sequential.observe(x[t], y[t], weight[t]);
+
+            for(int i=0; i<dimension; i++)
+            {
+                assertEquals(sequential.getBeta()[i], batch.getBeta()[i], 1e-7);
+                for(int j=0; j<dimension; j++)
+                {
+                    double expected = sequential.getUncertainty(i, j);
+                    assertEquals(expected, batch.getUncertainty(i, j), 1e-7 * Math.abs(expected) + 1e-10);
+                }
+            }
+        }
+        assertEquals(2, batch.getBeta()[2], .5);
+
+    }
+
+
+    //negative weights remove information: the block must do what observing one by one does
+    @Test
+    public void batchNegativeWeightsSameAsSequential() {
+
+        int dimension = 2;
+        RecursiveLeastSquaresRegression sequential =
+                new RecursiveLeastSquaresRegression(0, 1000, dimension, .99);
+        RecursiveLeastSquaresRegression batch =
+                new RecursiveLeastSquaresRegression(0, 1000, dimension, .99);
+        //small enough to go row by row otherwise
+        batch.alwaysBlock = true;
+
+        SplittableRandom random = new SplittableRandom(0);
+        for(int round=0; round<30; round++)
+        {
+            int size = 10;
+            double[][] x = new double[size][];
+            double[] y = new double[size];
+            double[] weight = new double[size];
+            for(int t=0; t<size; t++)
+            {
+                x[t] = new double[]{1, random.nextGaussian()};
+                y[t] = 3 * x[t][1] + random.nextGaussian();
+                weight[t] = 1;
+            }
+            //after the first round take back a little of what was learned
+            if(round > 0)
+                weight[size - 1] = -.1;
+
+            batch.observe(x, y, weight);
+            for(int t=0; t<size; t++)
+                sequential.observe(x[t], y[t], weight[t]);
+
+            for(int i=0; i<dimension; i++)
+            {
+                assertEquals(sequential.getBeta()[i], batch.getBeta()[i], 1e-7);
+                for(int j=0; j<dimension; j++)
+                {
+                    double expected = sequential.getUncertainty(i, j);
+                    assertEquals(expected, batch.getUncertainty(i, j), 1e-7 * Math.abs(expected) + 1e-10);
+                }
+            }
+        }
+
+    }
+}
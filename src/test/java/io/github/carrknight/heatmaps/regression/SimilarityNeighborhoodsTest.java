@@ -0,0 +1,127 @@
+package io.github.carrknight.heatmaps.regression;
+
+import io.github.carrknight.heatmaps.regression.distance.Similarity;
+import io.github.carrknight.utils.SimpleObservation;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class SimilarityNeighborhoodsTest {
+
+
+    private static final Similarity<Integer,Object> LINE =
+            (first, second, context) -> Math.abs(first - second) <= 2 ? Math.exp(-Math.abs(first - second)) : 0;
+
+
+    @Test
+    public void keepsTheClosest() {
+
+        Integer[] options = new Integer[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+        SimilarityNeighborhoods top = SimilarityNeighborhoods.topK(options, LINE, null, 3);
+        //option 5: itself, 4 and 6, in index order
+        assertEquals(3, top.getRowEnd(5) - top.getRowStart(5));
+        assertEquals(4, top.getNeighbor(top.getRowStart(5)));
+        assertEquals(5, top.getNeighbor(top.getRowStart(5)+1));
+        assertEquals(6, top.getNeighbor(top.getRowStart(5)+2));
+        assertEquals(1, top.getWeight(top.getRowStart(5)+1), .0001);
+
+        //everything with positive weight: 5 neighbors in the middle, 3 at the edges
+        SimilarityNeighborhoods all = SimilarityNeighborhoods.aboveThreshold(options, LINE, null, 0);
+        assertEquals(5, all.getRowEnd(5) - all.getRowStart(5));
+        assertEquals(3, all.getRowEnd(0) - all.getRowStart(0));
+        assertEquals(3, all.getRowEnd(9) - all.getRowStart(9));
+        assertEquals(5*6+3*2+4*2, all.getNumberOfEntries());
+
+    }
+
+
+    //when nothing is pruned the sparse space should learn exactly what the dense one learns
+    @Test
+    public void sameAsDense() {
+
+        Integer[] options = new Integer[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        //weight 0 leaves a kalman filter untouched, so dropping those similarities changes nothing
+        LocalFilterSpace<Integer,Double,Object> dense = new LocalFilterSpace<>(
+                options,
+                () -> new OneDimensionalKalmanFilter(1, 1, 100, 0, 0),
+                (option, result, context) -> result,
+                LINE
+        );
+        LocalFilterSpace<Integer,Double,Object> sparse = new LocalFilterSpace<>(
+                options,
+                () -> new OneDimensionalKalmanFilter(1, 1, 100, 0, 0),
+                (option, result, context) -> result,
+                LINE
+        );
+        SimilarityNeighborhoods shared = sparse.precomputeNeighborhoods(null, options.length, 0);
+        assertEquals(44, shared.getNumberOfEntries());
+
+        SplittableRandom random = new SplittableRandom(0);
+        for(int i=0; i<500; i++)
+        {
+            int arm = random.nextInt(options.length);
+            SimpleObservation observation = new SimpleObservation(arm, arm + random.nextGaussian());
+            dense.observe(observation);
+            sparse.observe(observation);
+        }
+        for (Integer option : options)
+            assertEquals(dense.predict(option, null), sparse.predict(option, null), .00001);
+        assertEquals(dense.getBestOption(random), sparse.getBestOption(random));
+
+    }
+
+
+    //neighborhoods come from the old similarity: replacing it must drop them too
+    @Test
+    public void newSimilarityDropsNeighborhoods() {
+
+        Integer[] options = new Integer[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        LocalFilterSpace<Integer,Double,Object> space = new LocalFilterSpace<>(
+                options,
+                () -> new OneDimensionalKalmanFilter(1, 1, 100, 0, 0),
+                (option, result, context) -> result,
+                LINE
+        );
+        space.precomputeNeighborhoods(null, options.length, 0);
+        space.setOptionSimilarity(null);
+        assertNull(space.getNeighborhoods());
+
+        space.observe(new SimpleObservation(5, 10d));
+        assertTrue(space.predict(5, null) > 0);
+        //observations no longer spread to the neighbors
+        assertEquals(0, space.predict(4, null), .00001);
+        assertEquals(0, space.predict(6, null), .00001);
+
+    }
+
+
+    //keeping everything skips the ranking; with room to spare the ranked build must store exactly the same rows
+    @Test
+    public void rankedSameAsKeepAll() {
+
+        Integer[] options = new Integer[300];
+        for(int i=0; i<options.length; i++)
+            options[i] = i;
+        Similarity<Integer,Object> wide =
+                (first, second, context) -> Math.abs(first - second) <= 20 ? 1d / (1 + Math.abs(first - second)) : 0;
+
+        SimilarityNeighborhoods all = SimilarityNeighborhoods.aboveThreshold(options, wide, null, 0);
+        SimilarityNeighborhoods ranked = SimilarityNeighborhoods.build(options, wide, null, 50, 0);
+        assertEquals(all.getNumberOfEntries(), ranked.getNumberOfEntries());
+        for(int option=0; option<options.length; option++)
+        {
+            assertEquals(all.getRowStart(option), ranked.getRowStart(option));
+            assertEquals(all.getRowEnd(option), ranked.getRowEnd(option));
+        }
+        for(int position=0; position<all.getNumberOfEntries(); position++)
+        {
+            assertEquals(all.getNeighbor(position), ranked.getNeighbor(position));
+            assertEquals(all.getWeight(position), ranked.getWeight(position), 0);
+        }
+        assertEquals(41, all.getRowEnd(150) - all.getRowStart(150));
+
+    }
+}
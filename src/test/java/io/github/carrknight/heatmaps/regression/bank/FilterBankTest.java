@@ -0,0 +1,112 @@
+package io.github.carrknight.heatmaps.regression.bank;
+
+import io.github.carrknight.heatmaps.regression.GoodBadFilter;
+import io.github.carrknight.heatmaps.regression.KernelFilter;
+import io.github.carrknight.heatmaps.regression.OneDimensionalFilter;
+import io.github.carrknight.heatmaps.regression.OneDimensionalKalmanFilter;
+import io.github.carrknight.utils.averager.ExponentialMovingAverageFilter;
+import io.github.carrknight.utils.averager.IterativeAverageFilter;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class FilterBankTest {
+
+
+    private static final int CELLS = 6;
+
+
+    //each bank should predict exactly what a filter object per cell predicts
+    @Test
+    public void sameAsFilterObjects() {
+
+        checkSame(new IterativeAverageFilterBank(CELLS, 0), () -> new IterativeAverageFilter(0));
+        checkSame(new ExponentialMovingAverageFilterBank(CELLS, .2), () -> new ExponentialMovingAverageFilter(.2));
+        checkSame(new KernelFilterBank(CELLS, .9), () -> new KernelFilter(.9));
+        checkSame(new KalmanFilterBank(CELLS, 1, 1, 10, 0, .1),
+                  () -> new OneDimensionalKalmanFilter(1, 1, 10, 0, .1));
+        checkSame(new GoodBadFilterBank(CELLS, 0, 10, 5, .01),
+                  () -> new GoodBadFilter(0, 10, 5, .01));
+
+    }
+
+
+    private void checkSame(FilterBank bank, Supplier<OneDimensionalFilter> filterMaker){
+
+        OneDimensionalFilter[] filters = new OneDimensionalFilter[CELLS];
+        for(int i=0; i<CELLS; i++)
+            filters[i] = filterMaker.get();
+
+        SplittableRandom random = new SplittableRandom(0);
+        int[] cells = new int[20];
+        double[] evidence = new double[20];
+        double[] weights = new double[20];
+        for(int step=0; step<50; step++)
+        {
+            for(int i=0; i<cells.length; i++)
+            {
+                cells[i] = random.nextInt(CELLS);
+                evidence[i] = cells[i] + random.nextGaussian();
+                weights[i] = random.nextDouble(.1, 1);
+                filters[cells[i]].observe(evidence[i], weights[i]);
+            }
+            bank.observe(cells, evidence, weights);
+        }
+
+        double[] predictions = new double[CELLS];
+        bank.predictAll(predictions);
+        for(int i=0; i<CELLS; i++)
+        {
+            assertEquals(filters[i].predict(), predictions[i], .000001);
+            assertEquals(filters[i].predict(), bank.getFilter(i).predict(), .000001);
+        }
+
+    }
+
+
+    //one driftAll of the bank should do what one drift() per filter object does
+    @Test
+    public void driftAllSameAsDrift() {
+
+        KalmanFilterBank kalmanBank = new KalmanFilterBank(CELLS, .9, 1, 10, 0, .1);
+        GoodBadFilterBank goodBadBank = new GoodBadFilterBank(CELLS, 0, 10, 5, .01);
+        OneDimensionalKalmanFilter[] kalmans = new OneDimensionalKalmanFilter[CELLS];
+        GoodBadFilter[] goodBads = new GoodBadFilter[CELLS];
+        for(int i=0; i<CELLS; i++)
+        {
+            kalmans[i] = new OneDimensionalKalmanFilter(.9, 1, 10, 0, .1);
+            goodBads[i] = new GoodBadFilter(0, 10, 5, .01);
+        }
+
+        SplittableRandom random = new SplittableRandom(0);
+        for(int step=0; step<100; step++)
+        {
+            int cell = random.nextInt(CELLS);
+            double evidence = random.nextDouble(0, 10);
+            kalmanBank.observe(cell, evidence, 1);
+            kalmans[cell].observe(evidence, 1);
+            goodBadBank.observe(cell, evidence, 1);
+            goodBads[cell].observe(evidence, 1);
+
+            kalmanBank.driftAll();
+            goodBadBank.driftAll();
+            for(int i=0; i<CELLS; i++)
+            {
+                kalmans[i].drift();
+                goodBads[i].drift();
+            }
+
+            for(int i=0; i<CELLS; i++)
+            {
+                assertEquals(kalmans[i].getStateEstimate(), kalmanBank.getStateEstimate(i), .000001);
+                assertEquals(kalmans[i].getUncertainty(), kalmanBank.getUncertainty(i), .000001);
+                assertEquals(goodBads[i].getProbabilityBeingAGoodSpot(),
+                             goodBadBank.getProbabilityBeingAGoodSpot(i), .000001);
+            }
+        }
+
+    }
+}
@@ -140,6 +140,48 @@ public class ParticleSwarmTest {
 
 
 
+    }
+
+    //nothing in memory and a friend reporting -infinity: there is nobody to follow
+    @Test
+    public void infiniteFriendIsIgnored() {
+
+        Double[] options = new Double[50];
+        for(int i=0; i<options.length; i++)
+            options[i] = (double) i;
+        FeatureExtractor<Double,Object>[] extractors =
+                new FeatureExtractor[]{(FeatureExtractor<Double, Object>) (option, context) -> option};
+        BeliefState<Double,Double,Object> emptyMemory = new BeliefState<Double, Double, Object>() {
+            @Override
+            public double predict(Double whereToPredict, Object predictionContext) {
+                return Double.NaN;
+            }
+
+            @Override
+            public void observe(Observation<Double, Double, Object> observation) {
+            }
+        };
+        ParticleSwarm<Double,Double,Object> swarm = new ParticleSwarm<>(
+                extractors,
+                position -> options[(int) Math.min(Math.max(0, position[0]), 49d)],
+                1d,
+                1d,
+                0,
+                5,
+                emptyMemory,
+                (optionTaken, experimentResult, contextObject) -> experimentResult,
+                options,
+                new SplittableRandom(0),
+                null
+        );
+        double start = swarm.getCurrentPosition()[0];
+
+        swarm.updateAndChoose(null, new Observation<>(start < 25 ? 49d : 0d, Double.NEGATIVE_INFINITY, null));
+
+        //no inertia and nobody to follow: the particle stays put
+        assertEquals(start, swarm.getCurrentPosition()[0], .0001);
+        assertEquals(0, swarm.getCurrentVelocity()[0], .0001);
+
     }
 
     /**
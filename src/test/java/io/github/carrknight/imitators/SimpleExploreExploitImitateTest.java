@@ -1,9 +1,12 @@
 package io.github.carrknight.imitators;
 
 import io.github.carrknight.Chooser;
+import io.github.carrknight.ObservationSlice;
 import io.github.carrknight.utils.SimpleObservation;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 import static org.junit.Assert.*;
@@ -74,6 +77,37 @@ public class SimpleExploreExploitImitateTest {
 
 
 
+    }
+
+    @Test
+    public void imitatesFromSlice(){
+
+        //same as above, but the friends come as the middle of somebody else's list: the observations outside the
+        //slice must be invisible
+
+        SimpleExploreExploitImitate eei =
+                new SimpleExploreExploitImitate(
+                        1000,
+                        0, //no exploration
+                        1, //100% imitation chance!
+                        System.currentTimeMillis()
+                );
+
+        List<SimpleObservation> everybody = Arrays.asList(
+                new SimpleObservation(999,999999d),
+                new SimpleObservation(1000,99999d),
+                new SimpleObservation(1,1d),
+                new SimpleObservation(998,999999d)
+        );
+        ObservationSlice<Integer,Double,Object> slice = new ObservationSlice<>();
+        eei.updateAndChoose(
+                new SimpleObservation(eei.getLastChoice(), (double) eei.getLastChoice()),
+                slice.set(everybody, 1, 2)
+        );
+
+        assertEquals(1000,(int)eei.getLastChoice());
+        assertEquals(eei.getLastAction(),ExploreExploitImitateAction.IMITATING);
+
     }
 
     @Test
@@ -0,0 +1,89 @@
+package io.github.carrknight.population;
+
+import io.github.carrknight.Observation;
+import io.github.carrknight.bandits.BelieveAllBanditImitationPolicy;
+import io.github.carrknight.bandits.SimpleEpsilonGreedyBandit;
+import io.github.carrknight.bandits.SoftmaxBanditAlgorithm;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class PopulationRunnerTest {
+
+
+    //same seed, same results: whatever the number of threads
+    @Test
+    public void bitIdenticalForAnyThreadCount() {
+
+        double[][] results = new double[3][];
+        int[] threads = new int[]{1, 3, 8};
+        for(int run=0; run<threads.length; run++)
+        {
+            ForkJoinPool pool = new ForkJoinPool(threads[run]);
+            PopulationRunner<Integer,Double,Object> runner = buildRunner(pool);
+            runner.step(30);
+            pool.shutdown();
+
+            results[run] = new double[2*runner.getNumberOfAgents()];
+            for(int agent=0; agent<runner.getNumberOfAgents(); agent++)
+            {
+                results[run][2*agent] = runner.getAgent(agent).getLastChoice();
+                results[run][2*agent+1] = runner.getLastObservation(agent).getResultObserved();
+            }
+        }
+        assertArrayEquals(results[0], results[1], 0);
+        assertArrayEquals(results[0], results[2], 0);
+
+    }
+
+    //ring of imitating softmax agents: they should mostly end up on the best option
+    @Test
+    public void populationLearns() {
+
+        PopulationRunner<Integer,Double,Object> runner = buildRunner(ForkJoinPool.commonPool());
+        runner.step(200);
+        int best = 0;
+        for(int agent=0; agent<runner.getNumberOfAgents(); agent++)
+            if(runner.getAgent(agent).getLastChoice() == 9)
+                best++;
+        assertTrue(best > runner.getNumberOfAgents() / 2);
+
+    }
+
+
+    private PopulationRunner<Integer,Double,Object> buildRunner(ForkJoinPool pool) {
+        int numberOfAgents = 500;
+        return new PopulationRunner<>(
+                numberOfAgents,
+                (agent, randomizer) -> {
+                    SoftmaxBanditAlgorithm<Integer,Double,Object> bandit = new SoftmaxBanditAlgorithm<>(
+                            (option, result, context) -> result,
+                            SimpleEpsilonGreedyBandit.buildOptionsArray(10),
+                            0,
+                            randomizer,
+                            10,
+                            temperature -> Math.max(temperature * .95, 1)
+                    );
+                    bandit.setImitationPolicy(new BelieveAllBanditImitationPolicy<>());
+                    return bandit;
+                },
+                (agent, choice, randomizer) -> new Observation<>(choice, choice + randomizer.nextDouble(-2, 2)),
+                new Neighbors() {
+                    @Override
+                    public int getNumberOfNeighbors(int agent) {
+                        return 2;
+                    }
+
+                    @Override
+                    public int getNeighbor(int agent, int neighbor) {
+                        return neighbor == 0 ? (agent + 1) % numberOfAgents : (agent + numberOfAgents - 1) % numberOfAgents;
+                    }
+                },
+                new SplittableRandom(0),
+                pool
+        );
+    }
+}
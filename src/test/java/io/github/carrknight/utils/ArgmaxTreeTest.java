@@ -0,0 +1,62 @@
+package io.github.carrknight.utils;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class ArgmaxTreeTest {
+
+
+    //random updates, the tree should always agree with a full scan
+    @Test
+    public void matchesScan() {
+
+        SplittableRandom random = new SplittableRandom(0);
+        double[] values = new double[37];
+        ArgmaxTree tree = new ArgmaxTree(values.length);
+        tree.rebuild(i -> values[i]);
+        for(int step=0; step<5000; step++)
+        {
+            int index = random.nextInt(values.length);
+            //few distinct values so that ties happen all the time
+            values[index] = step % 50 == 0 ? Double.NaN : random.nextInt(10);
+            tree.update(index, values[index]);
+
+            double max = Double.NEGATIVE_INFINITY;
+            int ties = 0;
+            for (double value : values) {
+                if (value > max) {
+                    max = value;
+                    ties = 1;
+                } else if (value == max)
+                    ties++;
+            }
+            assertEquals(max, tree.getMaximum(), 0);
+            assertEquals(ties, tree.getNumberOfTies());
+            assertEquals(max, values[tree.sampleBest(random)], 0);
+        }
+
+    }
+
+
+    @Test
+    public void tiesAreUniform() {
+
+        ArgmaxTree tree = new ArgmaxTree(5);
+        tree.rebuild(i -> i == 0 || i == 3 || i == 4 ? 2 : 1);
+        SplittableRandom random = new SplittableRandom(0);
+        int[] counts = new int[5];
+        for(int i=0; i<30000; i++)
+            counts[tree.sampleBest(random)]++;
+        assertEquals(10000, counts[0], 500);
+        assertEquals(0, counts[1]);
+        assertEquals(0, counts[2]);
+        assertEquals(10000, counts[3], 500);
+        assertEquals(10000, counts[4], 500);
+
+        tree.rebuild(i -> Double.NaN);
+        assertEquals(-1, tree.sampleBest(random));
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.carrknight.utils;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class BoltzmannSamplerTest {
+
+
+    //both the inverse CDF and the gumbel-max draws should follow the same probabilities as BoltzmannDistribution
+    @Test
+    public void sameProbabilitiesAsBoltzmannDistribution() {
+
+        double[] preferences = new double[]{1, 3, Double.NaN, 2, 0};
+        double[] finitePreferences = new double[]{1, 3, Double.NEGATIVE_INFINITY, 2, 0};
+        double[] expected = new BoltzmannDistribution(finitePreferences, 2).getProbabilities();
+
+        BoltzmannSampler sampler = new BoltzmannSampler(preferences.length);
+        SplittableRandom random = new SplittableRandom(0);
+        int[] inverseCDF = new int[preferences.length];
+        int[] gumbel = new int[preferences.length];
+        int draws = 100000;
+        for(int i=0; i<draws; i++)
+        {
+            inverseCDF[sampler.sample(preferences, 0, 2, random.nextDouble())]++;
+            gumbel[sampler.sampleGumbel(arm -> preferences[arm], 2, random)]++;
+        }
+
+        for(int i=0; i<preferences.length; i++)
+        {
+            assertEquals(expected[i], inverseCDF[i] / (double) draws, .01);
+            assertEquals(expected[i], gumbel[i] / (double) draws, .01);
+        }
+        assertEquals(0, inverseCDF[2]);
+        assertEquals(0, gumbel[2]);
+
+    }
+
+    @Test
+    public void nothingToDraw() {
+        BoltzmannSampler sampler = new BoltzmannSampler(3);
+        assertEquals(-1, sampler.sample(arm -> Double.NaN, 1, .5));
+        assertEquals(-1, sampler.sampleGumbel(arm -> Double.NaN, 1, new SplittableRandom(0)));
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.carrknight.utils;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class DiscreteChoosersUtilitiesTest {
+
+
+    //three options tied at the top, each should be picked about a third of the time
+    @Test
+    public void tiesAreUniform() {
+
+        double[] values = new double[]{1, 5, 5, Double.NaN, 5, 2};
+        SplittableRandom random = new SplittableRandom(0);
+        int[] counts = new int[values.length];
+        for(int i=0; i<30000; i++)
+            counts[DiscreteChoosersUtilities.getBestIndex(values, 0, values.length, random, Double.NEGATIVE_INFINITY)]++;
+
+        assertEquals(0, counts[0]);
+        assertEquals(0, counts[3]);
+        assertEquals(0, counts[5]);
+        assertEquals(10000, counts[1], 500);
+        assertEquals(10000, counts[2], 500);
+        assertEquals(10000, counts[4], 500);
+
+    }
+
+    //nothing above the threshold, nothing returned
+    @Test
+    public void belowMinimum() {
+
+        String[] options = new String[]{"a", "b", "c"};
+        assertEquals(-1,
+                     DiscreteChoosersUtilities.getBestIndex(options, o -> 1, new SplittableRandom(0), 2));
+        assertEquals(-1,
+                     DiscreteChoosersUtilities.getBestIndex(options, o -> Double.NaN, new SplittableRandom(0),
+                                                            Double.NEGATIVE_INFINITY));
+        assertEquals(1,
+                     DiscreteChoosersUtilities.getBestIndex(options, o -> o.equals("b") ? 3 : 1,
+                                                            new SplittableRandom(0), 2));
+
+    }
+
+    //-infinity "ties" with a -infinity minimum, but it is not finite and should never be returned
+    @Test
+    public void infinityIsNotATie() {
+
+        double[] values = new double[]{Double.NEGATIVE_INFINITY, Double.NaN, Double.NEGATIVE_INFINITY};
+        assertEquals(-1,
+                     DiscreteChoosersUtilities.getBestIndex(values, 0, values.length, new SplittableRandom(0),
+                                                            Double.NEGATIVE_INFINITY));
+        values[1] = 3;
+        assertEquals(1,
+                     DiscreteChoosersUtilities.getBestIndex(values, 0, values.length, new SplittableRandom(0),
+                                                            Double.NEGATIVE_INFINITY));
+
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.carrknight.utils;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class FenwickBoltzmannSamplerTest {
+
+
+    //after many single updates the draws should still follow the softmax of the current preferences
+    @Test
+    public void followsCurrentPreferences() {
+
+        SplittableRandom random = new SplittableRandom(0);
+        double[] preferences = new double[7];
+        FenwickBoltzmannSampler sampler = new FenwickBoltzmannSampler(preferences.length, 3);
+        for(int i=0; i<1000; i++)
+        {
+            int option = random.nextInt(preferences.length);
+            preferences[option] = random.nextDouble(-5, 5);
+            sampler.setPreference(option, preferences[option]);
+            sampler.sample(random.nextDouble());
+        }
+
+        double[] expected = new BoltzmannDistribution(preferences, 3).getProbabilities();
+        int[] counts = new int[preferences.length];
+        int draws = 100000;
+        for(int i=0; i<draws; i++)
+            counts[sampler.sample(random.nextDouble())]++;
+        for(int i=0; i<preferences.length; i++)
+            assertEquals(expected[i], counts[i] / (double) draws, .01);
+
+    }
+
+
+    //preferences far above (and then far below) the shift shouldn't overflow or underflow
+    @Test
+    public void hugePreferences() {
+
+        FenwickBoltzmannSampler sampler = new FenwickBoltzmannSampler(3, 1);
+        SplittableRandom random = new SplittableRandom(0);
+        sampler.sample(random.nextDouble());
+        sampler.setPreference(2, 10000);
+        for(int i=0; i<100; i++)
+            assertEquals(2, sampler.sample(random.nextDouble()));
+        sampler.setPreference(2, -10000);
+        sampler.setPreference(1, -9000);
+        for(int i=0; i<100; i++)
+            assertEquals(0, sampler.sample(random.nextDouble()));
+        sampler.setPreference(0, Double.NaN);
+        for(int i=0; i<100; i++)
+            assertEquals(1, sampler.sample(random.nextDouble()));
+        sampler.setPreference(1, Double.NaN);
+        sampler.setPreference(2, Double.NaN);
+        assertEquals(-1, sampler.sample(random.nextDouble()));
+
+    }
+
+
+    //raising one preference a lot and lowering it again shouldn't leave its rounding errors in the tree
+    @Test
+    public void noCancellationAfterBigSwing() {
+
+        SplittableRandom random = new SplittableRandom(0);
+        for(int peak = 37; peak <= 41; peak++)
+        {
+            double[] preferences = new double[64];
+            FenwickBoltzmannSampler sampler = new FenwickBoltzmannSampler(preferences.length, 1);
+            for(int option=0; option<preferences.length; option++)
+            {
+                preferences[option] = random.nextDouble(-1, 1);
+                sampler.setPreference(option, preferences[option]);
+            }
+            sampler.sample(random.nextDouble());
+            sampler.setPreference(10, peak);
+            assertEquals(10, sampler.sample(random.nextDouble()));
+            sampler.setPreference(10, preferences[10]);
+
+            double[] expected = new BoltzmannDistribution(preferences, 1).getProbabilities();
+            int[] counts = new int[preferences.length];
+            int draws = 100000;
+            for(int i=0; i<draws; i++)
+                counts[sampler.sample(random.nextDouble())]++;
+            for(int i=0; i<preferences.length; i++)
+                assertEquals(expected[i], counts[i] / (double) draws, .005);
+        }
+
+    }
+}